@@ -36,9 +36,17 @@ public class AgentContext {
     private static final ConcurrentMap<String, InvocationListener[]> LISTENERS_BY_KEY = new ConcurrentHashMap<String, InvocationListener[]>();
     private static final ConcurrentMap<String, Counter.Key> KEYS_CACHE = new ConcurrentHashMap<String, Counter.Key>();
 
+    // contexts are reused per thread (a stack since instrumented methods are nested) to not allocate them per invocation
+    private static final ThreadLocal<ContextStack> STACKS = new ThreadLocal<ContextStack>() {
+        @Override
+        protected ContextStack initialValue() {
+            return new ContextStack();
+        }
+    };
+
     // called by agent
     public static AgentContext startOn(final String key, final Object that) {
-        return new AgentContext(key, that, listeners(key));
+        return STACKS.get().push(key, that, listeners(key));
     }
 
     // helper to init keys in javaagent
@@ -110,21 +118,41 @@ public class AgentContext {
         return listeners.toArray(new InvocationListener[listeners.size()]);
     }
 
-    private final String key;
-    private final Object reference;
-    private final InvocationListener[] listeners;
-    private final Map<Integer, Object> context = new HashMap<Integer, Object>();
+    private final ContextStack stack;
+    private final int depth;
+    private String key;
+    private Object reference;
+    private InvocationListener[] listeners;
+    private Object[] context = new Object[4]; // indexed by listener id
+    private long[] primitives = new long[1];
     private Method method = null;
 
     public AgentContext(final String key, final Object that, final InvocationListener[] listeners) {
+        this(null, -1);
+        init(key, that, listeners);
+    }
+
+    private AgentContext(final ContextStack stack, final int depth) {
+        this.stack = stack;
+        this.depth = depth;
+    }
+
+    private void init(final String key, final Object that, final InvocationListener[] listeners) {
         this.key = key;
         this.reference = that;
         this.listeners = listeners;
+        this.method = null;
         for (final InvocationListener listener : this.listeners) {
             listener.before(this);
         }
     }
 
+    // key and reference stay readable after stop() until the context is reused
+    private void release() {
+        Arrays.fill(context, null);
+        stack.size = depth;
+    }
+
     public Object getReference() {
         return reference;
     }
@@ -163,12 +191,33 @@ public class AgentContext {
         return contextClassLoader;
     }
 
-    public <T> T get(final Integer key, final Class<T> clazz) {
-        return clazz.cast(context.get(key));
+    public <T> T get(final int key, final Class<T> clazz) {
+        if (key >= context.length) {
+            return null;
+        }
+        return clazz.cast(context[key]);
     }
 
     public void put(final int key, Object data) {
-        context.put(key, data);
+        if (key >= context.length) {
+            context = Arrays.copyOf(context, key + 1);
+        }
+        context[key] = data;
+    }
+
+    // same as get/put but without boxing
+    public long getLong(final int key) {
+        if (key >= primitives.length) {
+            return 0;
+        }
+        return primitives[key];
+    }
+
+    public void putLong(final int key, final long data) {
+        if (key >= primitives.length) {
+            primitives = Arrays.copyOf(primitives, key + 1);
+        }
+        primitives[key] = data;
     }
 
     public void stop(final Object result) {
@@ -180,8 +229,43 @@ public class AgentContext {
     }
 
     private void stopListeners(final Object result, final Throwable error) {
-        for (final InvocationListener listener : listeners) {
-            listener.after(this, result, error);
+        try {
+            for (final InvocationListener listener : listeners) {
+                listener.after(this, result, error);
+            }
+        } finally {
+            if (stack != null) {
+                release();
+            }
+        }
+    }
+
+    private static class ContextStack {
+        private AgentContext[] contexts = new AgentContext[8];
+        private int size = 0;
+
+        public AgentContext push(final String key, final Object that, final InvocationListener[] listeners) {
+            if (size == contexts.length) {
+                contexts = Arrays.copyOf(contexts, size * 2);
+            }
+
+            AgentContext context = contexts[size];
+            if (context == null) {
+                context = new AgentContext(this, size);
+                contexts[size] = context;
+            }
+            size++; // before init() since listeners can call instrumented code
+
+            boolean started = false;
+            try {
+                context.init(key, that, listeners);
+                started = true;
+            } finally {
+                if (!started) { // stop() will not be called
+                    context.release();
+                }
+            }
+            return context;
         }
     }
 
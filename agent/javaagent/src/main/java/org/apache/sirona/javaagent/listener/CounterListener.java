@@ -23,6 +23,7 @@ import org.apache.sirona.counters.Counter;
 import org.apache.sirona.javaagent.AgentContext;
 import org.apache.sirona.javaagent.spi.InvocationListener;
 import org.apache.sirona.javaagent.spi.Order;
+import org.apache.sirona.repositories.Repository;
 
 @Order(0)
 @AutoSet
@@ -50,17 +51,26 @@ public class CounterListener extends AbstractPerformanceInterceptor<String> impl
     @Override
     public void before(final AgentContext ctx) {
         final String key = ctx.getKey();
-        ctx.put(KEY, new CounterListener().before(key, key));
+        final ActivationContext activationContext = doFindContext(key);
+        if (activationContext.shouldExecute()) { // primitive API + context slots to not allocate anything
+            final Counter counter = handle(getKey(key, key)).get();
+            ctx.put(KEY, counter);
+            ctx.putLong(KEY, Repository.INSTANCE.startTimer(counter));
+        }
     }
 
     @Override
     public void after(final AgentContext context, final Object result, final Throwable error) {
-        final Context perfCtx = context.get(KEY, Context.class);
-        if (error == null) {
-            perfCtx.stop();
-        } else {
-            perfCtx.stopWithException(error);
+        final Counter counter = context.get(KEY, Counter.class);
+        if (counter == null) {
+            return;
+        }
+
+        final long elapsedTime = Repository.INSTANCE.stopTimer(counter, context.getLong(KEY));
+        if (error != null) {
+            monitorFailure(error, elapsedTime);
         }
+        doFindContext(context.getKey()).elapsedTime(elapsedTime);
     }
 
     @Override
@@ -22,7 +22,12 @@ import org.apache.sirona.javaagent.AgentContext;
 import org.apache.sirona.repositories.Repository;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 public class AgentPerfInterceptorAgentContractTest {
     @Test
@@ -51,4 +56,29 @@ public class AgentPerfInterceptorAgentContractTest {
         assertEquals(key, context.getKey());
         assertEquals(1, Repository.INSTANCE.getCounter(AgentContext.key(key)).getHits());
     }
+
+    @Test
+    public void noAllocation() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(com.sun.management.ThreadMXBean.class.isInstance(threadMXBean));
+        final com.sun.management.ThreadMXBean allocations = com.sun.management.ThreadMXBean.class.cast(threadMXBean);
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        final String key = "noAllocation";
+        for (int i = 0; i < 20000; i++) { // warm up
+            AgentContext.startOn(key, null).stop(null);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            final AgentContext outer = AgentContext.startOn(key, null);
+            AgentContext.startOn(key, null).stop(null); // nested
+            outer.stop(null);
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(40000, Repository.INSTANCE.getCounter(AgentContext.key(key)).getHits());
+        assertTrue("allocated " + allocated + " bytes", allocated < 10000);
+    }
 }
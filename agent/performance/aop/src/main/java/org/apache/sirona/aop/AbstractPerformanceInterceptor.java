@@ -21,11 +21,11 @@ import org.apache.sirona.Role;
 import org.apache.sirona.SironaException;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
 import org.apache.sirona.repositories.Repository;
 import org.apache.sirona.stopwatches.StopWatch;
+import org.apache.sirona.util.ExceptionFingerprints;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.Locale;
@@ -45,9 +45,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class AbstractPerformanceInterceptor<T> implements Serializable {
     // static for performances reasons, all these values are read through getXXX so it is overridable
     private static final boolean ADAPTIVE = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "performance.adaptive", false);
+    private static final boolean SAMPLING = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "performance.sampling", false);
     private static final long FORCED_ITERATION = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "performance.forced-iteration", 0);
     private static final long THRESHOLD = duration(Configuration.getProperty(Configuration.CONFIG_PROPERTY_PREFIX + "performance.threshold", null));
     private static final ActivationContext ALWAYS_ACTIVE_CONTEXT = new ActivationContext(true, 0, 0);
+    private static final int MAX_CACHED_KEYS = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "performance.max-cached-keys", 10000);
+    private static final ConcurrentMap<Role, ConcurrentMap<String, Counter.Key>> KEYS = new ConcurrentHashMap<Role, ConcurrentMap<String, Counter.Key>>();
+    private static final ConcurrentMap<Counter.Key, CounterHandle> HANDLES = new ConcurrentHashMap<Counter.Key, CounterHandle>();
+    // shared by the interceptors of a proxy factory (one per proxied object) as long as they name counters the same way
+    private static final ConcurrentMap<HandleScope, ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>>> METHOD_HANDLES =
+        new ConcurrentHashMap<HandleScope, ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>>>();
+    private static final AtomicInteger CACHED_METHOD_HANDLES = new AtomicInteger();
 
     protected static final ConcurrentMap<Object, ActivationContext> CONTEXTS = new ConcurrentHashMap<Object, ActivationContext>();
 
@@ -65,21 +73,32 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
     }
 
     protected MonitorNameExtractor monitorNameExtractor;
+    private transient volatile ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> methodHandles = null;
 
     public AbstractPerformanceInterceptor() {
         setMonitorNameExtractor(DefaultMonitorNameExtractor.INSTANCE);
     }
 
     /**
-     * API neutral method invocation
+     * API neutral method invocation, it doesn't allocate anything itself once the counter exists
      */
     protected Object doInvoke(final T invocation) throws Throwable {
-        final String name = getCounterName(invocation);
-        if (name == null) {
+        final CounterHandle handle = findHandle(invocation);
+        if (handle == null) {
+            return proceed(invocation);
+        }
+
+        final ActivationContext context = doFindContext(invocation);
+        if (!context.shouldExecute()) {
             return proceed(invocation);
         }
 
-        final Context ctx = before(invocation, name);
+        final Counter monitor = handle.get();
+        if (isSampling()) {
+            return doSampledInvoke(invocation, monitor, context);
+        }
+
+        final long start = Repository.INSTANCE.startTimer(monitor);
         Throwable error = null;
         try {
             return proceed(invocation);
@@ -87,21 +106,55 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
             error = t;
             throw t;
         } finally {
-            if (error == null) {
-                ctx.stop();
-            } else {
-                ctx.stopWithException(error);
+            final long elapsedTime = Repository.INSTANCE.stopTimer(monitor, start);
+            if (error != null) {
+                monitorFailure(error, elapsedTime);
+            }
+            context.elapsedTime(elapsedTime);
+        }
+    }
+
+    // measures only the invocations the sampler selects with the weight it gives
+    private Object doSampledInvoke(final T invocation, final Counter monitor, final ActivationContext context) throws Throwable {
+        final OverheadBudgetSampler sampler = OverheadBudgetSampler.INSTANCE;
+        final OverheadBudgetSampler.Rate rate = sampler.rate(monitor.getKey());
+        final int weight = rate.sample();
+        if (weight == 0) {
+            return proceed(invocation);
+        }
+
+        // overhead is measured with System.nanoTime() only, the role clock can be coarse
+        final long before = System.nanoTime();
+        final long start = Repository.INSTANCE.startTimer(monitor);
+        final long proceedStart = System.nanoTime();
+        Throwable error = null;
+        try {
+            return proceed(invocation);
+        } catch (final Throwable t) {
+            error = t;
+            throw t;
+        } finally {
+            final long proceedEnd = System.nanoTime();
+            final long elapsedTime = Repository.INSTANCE.stopTimer(monitor, start, weight);
+            if (error != null) {
+                monitorFailure(error, elapsedTime, weight);
             }
+            context.elapsedTime(elapsedTime);
+            final long after = System.nanoTime();
+            sampler.measured(rate, after - before - (proceedEnd - proceedStart), after);
         }
     }
 
     protected Context before(final T invocation, final String name) {
+        return before(invocation, handle(getKey(invocation, name)));
+    }
+
+    protected Context before(final T invocation, final CounterHandle handle) {
         final ActivationContext context = doFindContext(invocation);
 
         final StopWatch stopwatch;
         if (context.shouldExecute()) {
-            final Counter monitor = Repository.INSTANCE.getCounter(getKey(invocation, name));
-            stopwatch = Repository.INSTANCE.start(monitor);
+            stopwatch = Repository.INSTANCE.start(handle.get());
         } else {
             stopwatch = null;
         }
@@ -113,14 +166,131 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
         return new Context(context, stopwatch);
     }
 
+    /**
+     * @return the handle of the counter to use or null if the invocation shouldn't be monitored.
+     */
+    protected CounterHandle findHandle(final T invocation) {
+        final String name = getCounterName(invocation);
+        if (name == null) {
+            return null;
+        }
+        return handle(getKey(invocation, name));
+    }
+
+    /**
+     * Resolves the counter once per class and method for all the interceptors of the same type, role and name extractor,
+     * the counter name shouldn't depend on the instance state.
+     */
+    protected CounterHandle findHandle(final Object instance, final Method method) {
+        ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> handlesByMethod = methodHandles;
+        if (handlesByMethod == null) { // lazy since transient
+            handlesByMethod = methodHandles(new HandleScope(getClass(), getRole(), monitorNameExtractor));
+            methodHandles = handlesByMethod;
+        }
+
+        ConcurrentMap<Class<?>, CounterHandle> handles = handlesByMethod.get(method);
+        if (handles == null) {
+            handles = new ConcurrentHashMap<Class<?>, CounterHandle>();
+            final ConcurrentMap<Class<?>, CounterHandle> existing = handlesByMethod.putIfAbsent(method, handles);
+            if (existing != null) {
+                handles = existing;
+            }
+        }
+
+        final Class<?> clazz = instance == null ? method.getDeclaringClass() : instance.getClass();
+        CounterHandle handle = handles.get(clazz);
+        if (handle == null) {
+            final String name = getCounterName(instance, method);
+            if (name == null) {
+                return null;
+            }
+
+            handle = handle(key(getRole(), name));
+            if (CACHED_METHOD_HANDLES.get() < MAX_CACHED_KEYS) { // generated classes could make it grow forever
+                final CounterHandle existing = handles.putIfAbsent(clazz, handle);
+                if (existing != null) {
+                    handle = existing;
+                } else {
+                    CACHED_METHOD_HANDLES.incrementAndGet();
+                }
+            }
+        }
+        return handle;
+    }
+
+    private static ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> methodHandles(final HandleScope scope) {
+        final ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> handles = METHOD_HANDLES.get(scope);
+        if (handles != null) {
+            return handles;
+        }
+
+        final ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> newHandles = new ConcurrentHashMap<Method, ConcurrentMap<Class<?>, CounterHandle>>();
+        final ConcurrentMap<Method, ConcurrentMap<Class<?>, CounterHandle>> existing = METHOD_HANDLES.putIfAbsent(scope, newHandles);
+        if (existing != null) {
+            return existing;
+        }
+        return newHandles;
+    }
+
     protected Counter.Key getKey(final T invocation, final String name) {
-        return new Counter.Key(getRole(), name);
+        return key(getRole(), name);
+    }
+
+    protected static CounterHandle handle(final Counter.Key key) {
+        CounterHandle handle = HANDLES.get(key);
+        if (handle == null) {
+            handle = Repository.INSTANCE.handle(key);
+            if (HANDLES.size() < MAX_CACHED_KEYS) {
+                final CounterHandle existing = HANDLES.putIfAbsent(key, handle);
+                if (existing != null) {
+                    handle = existing;
+                }
+            }
+        }
+        return handle;
+    }
+
+    // cached to avoid to allocate a key per invocation
+    protected static Counter.Key key(final Role role, final String name) {
+        ConcurrentMap<String, Counter.Key> keys = KEYS.get(role);
+        if (keys == null) {
+            keys = new ConcurrentHashMap<String, Counter.Key>();
+            final ConcurrentMap<String, Counter.Key> existing = KEYS.putIfAbsent(role, keys);
+            if (existing != null) {
+                keys = existing;
+            }
+        }
+
+        Counter.Key key = keys.get(name);
+        if (key == null) {
+            key = new Counter.Key(role, name);
+            if (keys.size() < MAX_CACHED_KEYS) { // don't keep unbounded names (urls with ids...) forever
+                final Counter.Key existing = keys.putIfAbsent(name, key);
+                if (existing != null) {
+                    key = existing;
+                }
+            }
+        }
+        return key;
+    }
+
+    protected static void monitorFailure(final Throwable error, final long elapsedTime) {
+        monitorFailure(error, elapsedTime, 1);
+    }
+
+    protected static void monitorFailure(final Throwable error, final long elapsedTime, final long weight) {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.FAILURES, ExceptionFingerprints.record(error)));
+        Repository.INSTANCE.add(counter, elapsedTime, weight);
     }
 
     protected boolean isAdaptive() {
         return ADAPTIVE;
     }
 
+    protected boolean isSampling() {
+        return SAMPLING;
+    }
+
     protected Object extractContextKey(final T invocation) {
         return null;
     }
@@ -180,6 +350,7 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
 
     public void setMonitorNameExtractor(final MonitorNameExtractor monitorNameExtractor) {
         this.monitorNameExtractor = monitorNameExtractor;
+        this.methodHandles = null; // names can change
     }
 
     /**
@@ -208,9 +379,7 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
                 final long elapsedTime = stopWatch.getElapsedTime();
 
                 if (error != null) {
-                    final ByteArrayOutputStream writer = new ByteArrayOutputStream();
-                    error.printStackTrace(new PrintStream(writer));
-                    Repository.INSTANCE.getCounter(new Counter.Key(Role.FAILURES, writer.toString())).add(elapsedTime);
+                    monitorFailure(error, elapsedTime);
                 }
 
                 activationContext.elapsedTime(elapsedTime);
@@ -277,6 +446,45 @@ public abstract class AbstractPerformanceInterceptor<T> implements Serializable
         }
     }
 
+    // what counter names depend on besides the method and the class
+    private static class HandleScope {
+        private final Class<?> type;
+        private final Role role;
+        private final MonitorNameExtractor extractor;
+        private final int hashCode;
+
+        private HandleScope(final Class<?> type, final Role role, final MonitorNameExtractor extractor) {
+            this.type = type;
+            this.role = role;
+            this.extractor = extractor;
+
+            int result = type.hashCode();
+            result = 31 * result + (role != null ? role.hashCode() : 0);
+            result = 31 * result + (extractor != null ? extractor.hashCode() : 0);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final HandleScope that = HandleScope.class.cast(o);
+            return type == that.type
+                && (role != null ? role.equals(that.role) : that.role == null)
+                && (extractor != null ? extractor.equals(that.extractor) : that.extractor == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /**
      * This class contains the activation/deactivation logic.
      */
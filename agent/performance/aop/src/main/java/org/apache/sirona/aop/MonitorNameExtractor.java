@@ -19,6 +19,9 @@ package org.apache.sirona.aop;
 
 import java.lang.reflect.Method;
 
+/**
+ * Interceptors resolve the counter once per class and method so the name shouldn't depend on the instance state.
+ */
 public interface MonitorNameExtractor {
     String getMonitorName(Object instance, Method method);
 }
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.aop;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.counters.Counter;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures one invocation out of N per counter and adjusts N each period so the time spent
+ * measuring stays under performance.sampling.budget percent of the available cpu time.
+ *
+ * The budget is shared between counters: cheap ones are fully measured and what they don't use
+ * is given to the others. A measure stands for N invocations so counter totals stay unbiased.
+ */
+public class OverheadBudgetSampler implements OverheadBudgetSamplerMXBean {
+    private static final Logger LOGGER = Logger.getLogger(OverheadBudgetSampler.class.getName());
+
+    public static final String OBJECT_NAME = Configuration.CONFIG_PROPERTY_PREFIX + "performance:type=sampling";
+
+    public static final OverheadBudgetSampler INSTANCE = new OverheadBudgetSampler(
+        Double.parseDouble(Configuration.getProperty(Configuration.CONFIG_PROPERTY_PREFIX + "performance.sampling.budget", "1")),
+        TimeUnit.MILLISECONDS.toNanos(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "performance.sampling.period", 1000)),
+        Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "performance.sampling.max-interval", 10000),
+        Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "performance.sampling.max-rates", 10000));
+
+    private static final Comparator<Rate> BY_COST = new Comparator<Rate>() {
+        @Override
+        public int compare(final Rate o1, final Rate o2) {
+            return Double.compare(o1.fullCost, o2.fullCost);
+        }
+    };
+
+    private final double budget;
+    private final long period;
+    private final int maxInterval;
+    private final int maxRates;
+    private final int cpus = Runtime.getRuntime().availableProcessors();
+    private final ConcurrentMap<Counter.Key, Rate> rates = new ConcurrentHashMap<Counter.Key, Rate>();
+    private final Rate overflow = new Rate(); // shared by the keys over max-rates
+    private final AtomicBoolean registered = new AtomicBoolean(false);
+    private final AtomicLong periodStart = new AtomicLong(System.nanoTime());
+    private volatile double overhead = 0;
+
+    public OverheadBudgetSampler(final double budget, final long period, final int maxInterval) {
+        this(budget, period, maxInterval, 10000);
+    }
+
+    public OverheadBudgetSampler(final double budget, final long period, final int maxInterval, final int maxRates) {
+        this.budget = budget;
+        this.period = period;
+        this.maxInterval = Math.max(1, maxInterval);
+        this.maxRates = Math.max(1, maxRates);
+    }
+
+    public Rate rate(final Counter.Key key) {
+        Rate rate = rates.get(key);
+        if (rate == null) {
+            if (rates.size() >= maxRates) { // don't keep unbounded names forever, idle rates are removed by adjust()
+                return overflow;
+            }
+
+            rate = new Rate();
+            final Rate existing = rates.putIfAbsent(key, rate);
+            if (existing != null) {
+                rate = existing;
+            } else if (this == INSTANCE && registered.compareAndSet(false, true)) {
+                register();
+            }
+        }
+        return rate;
+    }
+
+    /**
+     * @param cost time spent measuring the invocation in ns.
+     * @param now current System.nanoTime().
+     */
+    public void measured(final Rate rate, final long cost, final long now) {
+        rate.overhead.addAndGet(cost);
+
+        final long start = periodStart.get();
+        final long elapsed = now - start;
+        if (elapsed >= period && periodStart.compareAndSet(start, now)) { // only one thread adjusts rates
+            adjust(elapsed);
+        }
+    }
+
+    protected void adjust(final long elapsed) {
+        final double available = elapsed * (double) cpus;
+        double remaining = available * budget / 100.;
+
+        long total = 0;
+        final List<Rate> measured = new ArrayList<Rate>(rates.size() + 1);
+        final Iterator<Rate> it = rates.values().iterator();
+        while (it.hasNext()) {
+            final Rate rate = it.next();
+            if (!adjust(rate, measured)) {
+                it.remove(); // idle and fully measured, a new rate would be the same
+            }
+        }
+        adjust(overflow, measured);
+        for (final Rate rate : measured) {
+            total += rate.cost;
+        }
+        overhead = total * 100. / available;
+
+        // give each counter its share, what cheap counters don't use goes to the next ones
+        Collections.sort(measured, BY_COST);
+        for (int i = 0; i < measured.size(); i++) {
+            final Rate rate = measured.get(i);
+            final double share = remaining / (measured.size() - i);
+            if (rate.fullCost <= share) {
+                rate.interval = 1;
+                remaining -= rate.fullCost;
+            } else {
+                rate.interval = (int) Math.min(maxInterval, Math.ceil(rate.fullCost / Math.max(share, 1.)));
+                remaining -= rate.fullCost / rate.interval;
+            }
+        }
+    }
+
+    // false if the rate is idle
+    private boolean adjust(final Rate rate, final List<Rate> measured) {
+        final long cost = rate.overhead.getAndSet(0);
+        rate.cost = cost;
+        if (cost > 0) {
+            rate.fullCost = cost * (double) rate.interval; // what it would cost to measure each invocation
+            measured.add(rate);
+            return true;
+        }
+        if (rate.interval > 1) { // not measured at all, let it come back progressively
+            rate.interval = Math.max(1, rate.interval / 2);
+            return true;
+        }
+        return false;
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (final Exception e) {
+            LOGGER.log(Level.WARNING, "Can't register sampling MBean: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public double getBudget() {
+        return budget;
+    }
+
+    @Override
+    public double getOverhead() {
+        return overhead;
+    }
+
+    @Override
+    public Map<String, Double> getRates() {
+        final Map<String, Double> result = new TreeMap<String, Double>();
+        for (final Map.Entry<Counter.Key, Rate> entry : rates.entrySet()) {
+            result.put(entry.getKey().getName(), 1. / entry.getValue().interval);
+        }
+        return result;
+    }
+
+    public static class Rate {
+        private final AtomicLong calls = new AtomicLong(0);
+        private final AtomicLong overhead = new AtomicLong(0); // ns spent measuring during current period
+        private volatile int interval = 1;
+        private long cost = 0; // only used by adjust()
+        private double fullCost = 0; // only used by adjust()
+
+        /**
+         * @return 0 if this invocation shouldn't be measured else the number of invocations the measure stands for.
+         */
+        public int sample() {
+            final int current = interval;
+            if (current == 1) {
+                return 1;
+            }
+            if (calls.incrementAndGet() % current == 0) {
+                return current;
+            }
+            return 0;
+        }
+
+        public int getInterval() {
+            return interval;
+        }
+    }
+}
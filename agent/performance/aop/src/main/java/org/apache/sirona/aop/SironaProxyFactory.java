@@ -20,6 +20,7 @@ import org.apache.commons.proxy.Invoker;
 import org.apache.commons.proxy.ProxyFactory;
 import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.util.ClassLoaders;
+import org.apache.sirona.counters.CounterHandle;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -61,6 +62,11 @@ public final class SironaProxyFactory {
             return getCounterName(invocation.target, invocation.method);
         }
 
+        @Override
+        protected CounterHandle findHandle(final Invocation invocation) {
+            return findHandle(invocation.target, invocation.method);
+        }
+
         @Override
         protected Object extractContextKey(final Invocation invocation) {
             return new SerializableMethod(invocation.method);
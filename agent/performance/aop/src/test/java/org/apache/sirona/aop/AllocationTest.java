@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.aop;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class AllocationTest {
+    private static final int WARM_UP = 20000;
+    private static final int ITERATIONS = 10000;
+    private static final Long INVOCATION = 0L;
+
+    @Before
+    @After
+    public void reset() {
+        Repository.INSTANCE.clearCounters();
+    }
+
+    @Test
+    public void noAllocationPerInvocation() throws Throwable {
+        final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        final NoOpInterceptor interceptor = new NoOpInterceptor();
+        for (int i = 0; i < WARM_UP; i++) {
+            interceptor.invoke();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            interceptor.invoke();
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(WARM_UP + ITERATIONS, Repository.INSTANCE.counters().iterator().next().getHits());
+        assertTrue("allocated " + allocated + " bytes for " + ITERATIONS + " invocations", allocated < ITERATIONS); // < 1 byte per invocation
+    }
+
+    @Test
+    public void noAllocationPerTimer() {
+        final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        final Counter counter = Repository.INSTANCE.getCounter(AbstractPerformanceInterceptor.key(Role.PERFORMANCES, "timer"));
+        for (int i = 0; i < WARM_UP; i++) {
+            Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(WARM_UP + ITERATIONS, counter.getHits());
+        assertEquals(0, counter.currentConcurrency().get());
+        assertTrue("allocated " + allocated + " bytes for " + ITERATIONS + " timers", allocated < ITERATIONS);
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(com.sun.management.ThreadMXBean.class.isInstance(threadMXBean));
+
+        final com.sun.management.ThreadMXBean sunThreadMXBean = com.sun.management.ThreadMXBean.class.cast(threadMXBean);
+        assumeTrue(sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled());
+        return sunThreadMXBean;
+    }
+
+    public static class NoOpInterceptor extends AbstractPerformanceInterceptor<Long> {
+        public void invoke() throws Throwable {
+            doInvoke(INVOCATION);
+        }
+
+        @Override
+        protected Object proceed(final Long invocation) throws Throwable {
+            return invocation;
+        }
+
+        @Override
+        protected String getCounterName(final Long invocation) {
+            return "no-allocation";
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.aop;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.CounterHandle;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MethodHandlesTest {
+    private static final AtomicInteger NAMED = new AtomicInteger();
+
+    @Before
+    @After
+    public void reset() {
+        Repository.INSTANCE.clearCounters();
+        NAMED.set(0);
+    }
+
+    @Test
+    public void sharedByInterceptors() throws Exception {
+        final Method method = Object.class.getMethod("toString");
+        final Object target = new Object();
+
+        // a proxy factory creates one interceptor per proxied instance
+        final CounterHandle handle = new NamingInterceptor(Role.PERFORMANCES).findHandle(target, method);
+        for (int i = 0; i < 10; i++) {
+            assertSame(handle, new NamingInterceptor(Role.PERFORMANCES).findHandle(target, method));
+        }
+        assertEquals(1, NAMED.get());
+
+        // another role is another counter
+        final CounterHandle other = new NamingInterceptor(new Role("method-handles-test", Unit.Time.NANOSECOND)).findHandle(target, method);
+        assertEquals(2, NAMED.get());
+        assertEquals("method-handles-test", other.getKey().getRole().getName());
+    }
+
+    public static class NamingInterceptor extends AbstractPerformanceInterceptor<Object> {
+        private final Role role;
+
+        public NamingInterceptor(final Role role) {
+            this.role = role;
+        }
+
+        @Override
+        protected Object proceed(final Object invocation) throws Throwable {
+            return invocation;
+        }
+
+        @Override
+        protected String getCounterName(final Object invocation) {
+            return null;
+        }
+
+        @Override
+        protected String getCounterName(final Object instance, final Method method) {
+            NAMED.incrementAndGet();
+            return super.getCounterName(instance, method);
+        }
+
+        @Override
+        protected Role getRole() {
+            return role;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.aop;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OverheadBudgetSamplerTest {
+    @Test
+    public void budgetIsShared() {
+        final long period = TimeUnit.SECONDS.toNanos(1);
+        final OverheadBudgetSampler sampler = new OverheadBudgetSampler(1, period, 1000);
+        final OverheadBudgetSampler.Rate cheap = sampler.rate(new Counter.Key(Role.PERFORMANCES, "cheap"));
+        final OverheadBudgetSampler.Rate expensive = sampler.rate(new Counter.Key(Role.PERFORMANCES, "expensive"));
+
+        final long budget = (long) (period * Runtime.getRuntime().availableProcessors() / 100.);
+        sampler.measured(cheap, budget / 10, 0);
+        sampler.measured(expensive, budget * 10, 0);
+        sampler.adjust(period);
+
+        assertEquals(1, cheap.getInterval());
+        assertTrue(expensive.getInterval() > 10);
+        assertEquals(1., sampler.getRates().get("cheap"), 0.);
+        assertTrue(sampler.getOverhead() > 1);
+
+        // measures are weighted by the interval
+        int weights = 0;
+        for (int i = 0; i < expensive.getInterval() * 3; i++) {
+            weights += expensive.sample();
+        }
+        assertEquals(expensive.getInterval() * 3, weights);
+    }
+
+    @Test
+    public void ratesAreBounded() {
+        final OverheadBudgetSampler sampler = new OverheadBudgetSampler(1, TimeUnit.SECONDS.toNanos(1), 1000, 2);
+        final OverheadBudgetSampler.Rate first = sampler.rate(new Counter.Key(Role.PERFORMANCES, "first"));
+        sampler.rate(new Counter.Key(Role.PERFORMANCES, "second"));
+
+        final OverheadBudgetSampler.Rate overflow = sampler.rate(new Counter.Key(Role.PERFORMANCES, "third"));
+        assertSame(overflow, sampler.rate(new Counter.Key(Role.PERFORMANCES, "fourth")));
+        assertEquals(2, sampler.getRates().size());
+
+        // idle rates are released
+        sampler.measured(first, 10, 0);
+        sampler.adjust(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, sampler.getRates().size());
+        assertNotSame(overflow, sampler.rate(new Counter.Key(Role.PERFORMANCES, "third")));
+    }
+}
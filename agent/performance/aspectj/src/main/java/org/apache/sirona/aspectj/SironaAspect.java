@@ -17,6 +17,7 @@
 package org.apache.sirona.aspectj;
 
 import org.apache.sirona.aop.AbstractPerformanceInterceptor;
+import org.apache.sirona.counters.CounterHandle;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
@@ -49,6 +50,18 @@ public abstract class SironaAspect extends AbstractPerformanceInterceptor<Procee
         return invocation.getSignature().toLongString();
     }
 
+    @Override
+    protected CounterHandle findHandle(final ProceedingJoinPoint invocation) {
+        final Method method = findMethod(invocation.getSignature());
+        if (method != null) {
+            final CounterHandle handle = findHandle(invocation.getTarget(), method);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        return super.findHandle(invocation);
+    }
+
     @Override
     protected Object extractContextKey(final ProceedingJoinPoint invocation) {
         return new SerializableMethod(findMethod(invocation.getSignature()));
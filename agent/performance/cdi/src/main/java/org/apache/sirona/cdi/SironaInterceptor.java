@@ -17,6 +17,7 @@
 package org.apache.sirona.cdi;
 
 import org.apache.sirona.aop.AbstractPerformanceInterceptor;
+import org.apache.sirona.counters.CounterHandle;
 
 import javax.interceptor.AroundInvoke;
 import javax.interceptor.AroundTimeout;
@@ -42,6 +43,11 @@ public class SironaInterceptor extends AbstractPerformanceInterceptor<Invocation
         return getCounterName(invocation.getTarget(), invocation.getMethod());
     }
 
+    @Override
+    protected CounterHandle findHandle(final InvocationContext invocation) {
+        return findHandle(invocation.getTarget(), invocation.getMethod());
+    }
+
     @Override
     protected Object extractContextKey(final InvocationContext invocation) {
         return new SerializableMethod(invocation.getMethod());
@@ -18,6 +18,7 @@ package org.apache.sirona.agent.jaxrs.jaxrs2;
 
 import org.apache.sirona.Role;
 import org.apache.sirona.aop.AbstractPerformanceInterceptor;
+import org.apache.sirona.counters.CounterHandle;
 
 import javax.ws.rs.Path;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -44,7 +45,7 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
 
     @Override
     public void filter(final ContainerRequestContext context) throws IOException {
-        context.setProperty(SIRONA_PERFORMANCE_PROP, before(context, getCounterName(context)));
+        context.setProperty(SIRONA_PERFORMANCE_PROP, before(context, findHandle(context)));
     }
 
     @Override
@@ -55,6 +56,15 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
         }
     }
 
+    @Override
+    protected CounterHandle findHandle(final ContainerRequestContext context) {
+        final Method rm = info.getResourceMethod();
+        if (rm == null) {
+            return super.findHandle(context);
+        }
+        return mapping(context, rm).handle(context.getUriInfo().getBaseUri().getPath());
+    }
+
     @Override
     protected String getCounterName(final ContainerRequestContext context) {
         final String base = context.getUriInfo().getBaseUri().getPath();
@@ -62,7 +72,10 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
         if (rm == null) {
             return base + "?";
         }
+        return mapping(context, rm).map(base);
+    }
 
+    private Mapping mapping(final ContainerRequestContext context, final Method rm) {
         Mapping mapping = mappings.get(rm);
 
         if (mapping == null) {
@@ -86,10 +99,12 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
             }
 
             mapping = new Mapping(method, builder.toString());
-            mappings.putIfAbsent(rm, mapping);
+            final Mapping existing = mappings.putIfAbsent(rm, mapping);
+            if (existing != null) {
+                mapping = existing;
+            }
         }
-
-        return mapping.map(base);
+        return mapping;
     }
 
     @Override
@@ -105,6 +120,7 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
     protected static class Mapping {
         protected final String method;
         protected final String path;
+        protected final ConcurrentMap<String, CounterHandle> handles = new ConcurrentHashMap<String, CounterHandle>(); // by base
 
         protected Mapping(final String method, final String path) {
             this.method = method + '-';
@@ -114,5 +130,17 @@ public class PerformanceServerFilter extends AbstractPerformanceInterceptor<Cont
         public String map(final String base) {
             return method + base + path;
         }
+
+        public CounterHandle handle(final String base) {
+            CounterHandle handle = handles.get(base);
+            if (handle == null) {
+                handle = AbstractPerformanceInterceptor.handle(key(ROLE, map(base)));
+                final CounterHandle existing = handles.putIfAbsent(base, handle);
+                if (existing != null) {
+                    handle = existing;
+                }
+            }
+            return handle;
+        }
     }
 }
@@ -18,8 +18,8 @@ package org.apache.sirona.jdbc;
 
 import org.apache.sirona.Role;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
 import org.apache.sirona.repositories.Repository;
-import org.apache.sirona.stopwatches.StopWatch;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -30,25 +30,26 @@ import java.sql.PreparedStatement;
  */
 public class MonitoredPreparedStatement extends MonitoredStatement {
     private final PreparedStatement statement;
-    private final String sql;
+    private final CounterHandle handle; // resolved once per statement
 
     public MonitoredPreparedStatement(final PreparedStatement statement, final String sql) {
         super(statement);
         this.statement = statement;
-        this.sql = sql;
+        this.handle = Repository.INSTANCE.handle(new Counter.Key(Role.JDBC, sql));
     }
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
         final String name = method.getName();
         if ((args == null || args.length == 0) && name.startsWith("execute")) {
-            final StopWatch stopWatch = Repository.INSTANCE.start(Repository.INSTANCE.getCounter(new Counter.Key(Role.JDBC, sql)));
+            final Counter counter = handle.get();
+            final long start = Repository.INSTANCE.startTimer(counter);
             try {
                 return method.invoke(statement, args);
             } catch (final InvocationTargetException e) {
                 throw extractSQLException(e);
             } finally {
-                stopWatch.stop();
+                Repository.INSTANCE.stopTimer(counter, start);
             }
         }
         return super.invoke(proxy, method, args);
@@ -19,8 +19,8 @@ package org.apache.sirona.jdbc;
 
 import org.apache.sirona.Role;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
 import org.apache.sirona.repositories.Repository;
-import org.apache.sirona.stopwatches.StopWatch;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
@@ -29,6 +29,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 public class MonitoredStatement implements InvocationHandler {
+    private static final CounterHandle BATCH = Repository.INSTANCE.handle(new Counter.Key(Role.JDBC, "batch"));
+
     private final Statement statement;
 
     public MonitoredStatement(final Statement statement) {
@@ -45,19 +47,20 @@ public class MonitoredStatement implements InvocationHandler {
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
         final String name = method.getName();
         if (name.startsWith("execute")) {
-            final StopWatch stopWatch;
+            final Counter counter;
             if (name.endsWith("Batch") && (args == null || args.length == 0)) {
-                stopWatch = Repository.INSTANCE.start(Repository.INSTANCE.getCounter(new Counter.Key(Role.JDBC, "batch")));
+                counter = BATCH.get();
             } else {
-                stopWatch = Repository.INSTANCE.start(Repository.INSTANCE.getCounter(new Counter.Key(Role.JDBC, (String) args[0])));
+                counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.JDBC, (String) args[0]));
             }
 
+            final long start = Repository.INSTANCE.startTimer(counter);
             try {
                 return doInvoke(method, args);
             } catch (final InvocationTargetException e) {
                 throw extractSQLException(e);
             } finally {
-                stopWatch.stop();
+                Repository.INSTANCE.stopTimer(counter, start);
             }
         }
         return doInvoke(method, args);
@@ -19,6 +19,7 @@ package org.apache.sirona.jpa;
 import org.apache.sirona.Role;
 import org.apache.sirona.aop.AbstractPerformanceInterceptor;
 import org.apache.sirona.util.ClassLoaders;
+import org.apache.sirona.counters.CounterHandle;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
@@ -76,6 +77,11 @@ public final class JPAProxyFactory {
             return getCounterName(invocation.target, invocation.method);
         }
 
+        @Override
+        protected CounterHandle findHandle(final Invocation invocation) {
+            return findHandle(invocation.target, invocation.method);
+        }
+
         @Override
         protected Role getRole() {
             return role;
@@ -21,6 +21,7 @@ import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.counters.Unit;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.gauges.GaugeFactory;
+import org.apache.sirona.gauges.PeriodicGauge;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -43,7 +44,7 @@ public class JTAGauges implements GaugeFactory {
         };
     }
 
-    protected static class JTAGauge implements Gauge {
+    protected static class JTAGauge implements PeriodicGauge {
         private final Role role;
         private final long period;
         protected final AtomicLong counter;
@@ -63,6 +64,11 @@ public class JTAGauges implements GaugeFactory {
         public double value() {
             return counter.getAndSet(0);
         }
+
+        @Override
+        public long period() {
+            return period;
+        }
     }
 
     protected static class JTAActiveGauge extends JTAGauge {
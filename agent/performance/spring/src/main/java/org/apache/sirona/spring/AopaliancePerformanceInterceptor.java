@@ -20,6 +20,7 @@ package org.apache.sirona.spring;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.apache.sirona.aop.AbstractPerformanceInterceptor;
+import org.apache.sirona.counters.CounterHandle;
 
 /**
  * Spring-aop implementation of PerformanceInterceptor.
@@ -37,6 +38,11 @@ public class AopaliancePerformanceInterceptor extends AbstractPerformanceInterce
         return getCounterName(invocation.getThis(), invocation.getMethod());
     }
 
+    @Override
+    protected CounterHandle findHandle(final MethodInvocation invocation) {
+        return findHandle(invocation.getThis(), invocation.getMethod());
+    }
+
     @Override
     protected Object proceed(final MethodInvocation invocation) throws Throwable {
         return invocation.proceed();
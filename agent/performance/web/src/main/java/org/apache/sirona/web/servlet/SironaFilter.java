@@ -38,7 +38,7 @@ public class SironaFilter extends AbstractPerformanceInterceptor<SironaFilter.In
     public static final String IGNORED_URLS = Configuration.CONFIG_PROPERTY_PREFIX + "web.ignored-urls";
 
     private String[] ignored = new String[0];
-    private Map<Integer, StatusGauge> statusGauges = null;
+    private StatusGauge[] statusGauges = null; // indexed by status to avoid to box it
 
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException {
@@ -53,7 +53,19 @@ public class SironaFilter extends AbstractPerformanceInterceptor<SironaFilter.In
             throw new SironaException("To monitor status activate " + GaugeDiscoveryListener.class.getName());
         }
 
-        statusGauges = (Map<Integer, StatusGauge>) filterConfig.getServletContext().getAttribute(GaugeDiscoveryListener.STATUS_GAUGES_ATTRIBUTE);
+        final Map<Integer, StatusGauge> gauges = (Map<Integer, StatusGauge>) filterConfig.getServletContext().getAttribute(GaugeDiscoveryListener.STATUS_GAUGES_ATTRIBUTE);
+        if (gauges != null) {
+            int max = 0;
+            for (final Integer status : gauges.keySet()) {
+                max = Math.max(max, status);
+            }
+            statusGauges = new StatusGauge[max + 1];
+            for (final Map.Entry<Integer, StatusGauge> gauge : gauges.entrySet()) {
+                if (gauge.getKey() >= 0) {
+                    statusGauges[gauge.getKey()] = gauge.getValue();
+                }
+            }
+        }
     }
 
     @Override
@@ -61,17 +73,21 @@ public class SironaFilter extends AbstractPerformanceInterceptor<SironaFilter.In
         if (HttpServletRequest.class.isInstance(request)) {
             final HttpServletRequest httpRequest = HttpServletRequest.class.cast(request);
 
-            final String uri = getRequestedUri(httpRequest);
-            for (final String ignorable : ignored) {
-                if (uri.startsWith(ignorable)) {
-                    chain.doFilter(request, response);
-                    return;
+            if (ignored.length > 0) {
+                final String uri = getRequestedUri(httpRequest);
+                for (final String ignorable : ignored) {
+                    if (uri.startsWith(ignorable)) {
+                        chain.doFilter(request, response);
+                        return;
+                    }
                 }
             }
 
             final HttpServletResponse httpResponse = HttpServletResponse.class.cast(response);
+            // not reused per thread: a thread local would keep the webapp loader of pooled threads after a redeploy
+            final Invocation invocation = new Invocation(httpRequest, httpResponse, chain);
             try {
-                doInvoke(new Invocation(httpRequest, httpResponse, chain));
+                doInvoke(invocation);
             } catch (final Throwable throwable) {
                 if (IOException.class.isInstance(throwable)) {
                     throw IOException.class.cast(throwable);
@@ -83,9 +99,11 @@ public class SironaFilter extends AbstractPerformanceInterceptor<SironaFilter.In
             } finally {
                 if (statusGauges != null) {
                     final int status = httpResponse.getStatus();
-                    final StatusGauge statusGauge = statusGauges.get(status);
-                    if (statusGauge != null) {
-                        statusGauge.incr();
+                    if (status >= 0 && status < statusGauges.length) {
+                        final StatusGauge statusGauge = statusGauges[status];
+                        if (statusGauge != null) {
+                            statusGauge.incr();
+                        }
                     }
                 }
             }
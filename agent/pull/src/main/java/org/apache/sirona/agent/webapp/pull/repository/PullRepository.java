@@ -16,13 +16,18 @@
  */
 package org.apache.sirona.agent.webapp.pull.repository;
 
+import org.apache.sirona.Role;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.cube.BinaryEventStream;
 import org.apache.sirona.cube.Cube;
 import org.apache.sirona.cube.CubeBuilder;
 import org.apache.sirona.cube.MapBuilder;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.WindowedCounter;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.gauges.GaugeDataStoreAdapter;
+import org.apache.sirona.gauges.GaugeSampler;
 import org.apache.sirona.repositories.DefaultRepository;
 import org.apache.sirona.repositories.Repository;
 import org.apache.sirona.status.NodeStatus;
@@ -32,17 +37,23 @@ import org.apache.sirona.store.status.EmptyStatuses;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 
 public class PullRepository extends DefaultRepository {
     private static final String REGISTRATION_TYPE = "registration";
 
     private final Cube cube;
     private final boolean clearAfterCollect;
+    private final long window;
+    private final GaugeSampler sampler;
 
     public PullRepository() {
         super(new InMemoryCounterDataStore(), new GaugeDataStoreAdapter(), new EmptyStatuses());
         cube = IoCs.findOrCreateInstance(CubeBuilder.class).build();
         clearAfterCollect = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "pull.counter.clearOnCollect", false);
+        window = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "pull.counter.window", 0);
+        sampler = IoCs.findOrCreateInstance(GaugeSampler.class);
     }
 
     public Collection<Gauge> getGauges() {
@@ -52,31 +63,35 @@ public class PullRepository extends DefaultRepository {
         return GaugeDataStoreAdapter.class.cast(gaugeDataStore).getGauges();
     }
 
+    // a slow or failing gauge doesn't delay the pull, missing values are skipped
+    private Map<Role, Double> sampleGauges() {
+        final Map<Role, Double> values = sampler.sample(getGauges());
+        final Iterator<Double> it = values.values().iterator();
+        while (it.hasNext()) {
+            if (Double.isNaN(it.next())) {
+                it.remove();
+            }
+        }
+        return values;
+    }
+
     public String snapshot() {
         final long time = System.currentTimeMillis();
 
         final StringBuilder answer = cube.newEventStream();
 
         // counters
-        answer.append(cube.counterSnapshot(Repository.INSTANCE.counters()));
+        answer.append(cube.counterSnapshot(CounterSnapshot.of(WindowedCounter.window(Repository.INSTANCE.counters(), window), clearAfterCollect)));
 
         // gauges
-        for (final Gauge g : getGauges()) {
-            try {
-                cube.gaugeSnapshot(answer, time, g.role(), g.value());
-            } catch (final Exception e) {
-                // no-op: ignore
-            }
+        for (final Map.Entry<Role, Double> gauge : sampleGauges().entrySet()) {
+            cube.gaugeSnapshot(answer, time, gauge.getKey(), gauge.getValue());
         }
 
         // status
         final NodeStatus status = new NodeStatusReporter().computeStatus();
         answer.append(cube.statusSnapshot(time, status));
 
-        if (clearAfterCollect) {
-            clearCounters();
-        }
-
         // remove last ','
         if (answer.length() == 0) {
             return null;
@@ -85,6 +100,19 @@ public class PullRepository extends DefaultRepository {
         return cube.globalPayload(answer);
     }
 
+    // same as snapshot() but in the compact format, see BinaryEventStream
+    public byte[] binarySnapshot() {
+        final long time = System.currentTimeMillis();
+
+        final BinaryEventStream answer = cube.newBinaryEventStream();
+        cube.counterSnapshot(answer, CounterSnapshot.of(WindowedCounter.window(Repository.INSTANCE.counters(), window), clearAfterCollect));
+        for (final Map.Entry<Role, Double> gauge : sampleGauges().entrySet()) {
+            cube.gaugeSnapshot(answer, time, gauge.getKey(), gauge.getValue());
+        }
+        cube.statusSnapshot(answer, time, new NodeStatusReporter().computeStatus());
+        return answer.toByteArray();
+    }
+
     public void register(final String registrationUrl) {
         if (registrationUrl != null) {
             cube.post(cube.buildEvent(cube.newEventStream(), REGISTRATION_TYPE, 0, new MapBuilder().add("url", registrationUrl).map()));
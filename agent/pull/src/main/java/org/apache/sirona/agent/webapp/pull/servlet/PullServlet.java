@@ -20,6 +20,8 @@ package org.apache.sirona.agent.webapp.pull.servlet;
 
 import org.apache.sirona.agent.webapp.pull.repository.PullRepository;
 import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.cube.BinaryEventStream;
+import org.apache.sirona.cube.ContentEncodings;
 import org.apache.sirona.repositories.Repository;
 
 import javax.servlet.ServletConfig;
@@ -31,13 +33,18 @@ import java.io.IOException;
 
 public class PullServlet extends HttpServlet {
     private static final String APPLICATION_JSON = "application/json";
+    private static final String UTF_8 = "UTF-8";
 
     private PullRepository repository;
+    private boolean compression;
+    private int compressionThreshold;
 
     @Override
     public void init(final ServletConfig config) throws ServletException {
         super.init(config);
         repository = PullRepository.class.cast(Repository.INSTANCE);
+        compression = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "pull.compression", true); // if the collector accepts it
+        compressionThreshold = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "pull.compression.threshold", 1024);
 
         final String registration = config.getInitParameter(Configuration.CONFIG_PROPERTY_PREFIX + "pull.url");
         if (registration != null) { // needs to have configured org.apache.sirona.cube.CubeBuilder in sirona.properties
@@ -47,7 +54,27 @@ public class PullServlet extends HttpServlet {
 
     @Override
     protected void service(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
-        resp.setContentType(APPLICATION_JSON);
-        resp.getWriter().write(repository.snapshot());
+        final byte[] payload;
+        final String accept = req.getHeader("Accept");
+        if (accept != null && accept.contains(BinaryEventStream.CONTENT_TYPE)) { // collector supports it
+            payload = repository.binarySnapshot();
+            resp.setContentType(BinaryEventStream.CONTENT_TYPE);
+        } else {
+            final String snapshot = repository.snapshot();
+            payload = (snapshot != null ? snapshot : "[]").getBytes(UTF_8);
+            resp.setContentType(APPLICATION_JSON);
+            resp.setCharacterEncoding(UTF_8);
+        }
+
+        byte[] body = payload;
+        if (compression && payload.length >= compressionThreshold) {
+            final String encoding = ContentEncodings.negotiate(req.getHeader(ContentEncodings.ACCEPT_ENCODING));
+            if (encoding != null) {
+                body = ContentEncodings.encode(payload, encoding);
+                resp.setHeader(ContentEncodings.CONTENT_ENCODING, encoding);
+            }
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
     }
 }
@@ -30,6 +30,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
 public class PullAnswerTest {
@@ -71,6 +72,26 @@ public class PullAnswerTest {
         assertTrue(validations.contains("refake"));
     }
 
+    @Test
+    public void failingGaugeIsSkipped() {
+        final PullRepository repo = createRepo();
+        repo.addGauge(new Gauge() {
+            @Override
+            public Role role() {
+                return new Role("brokenrole", Unit.UNARY);
+            }
+
+            @Override
+            public double value() {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        final String snapshot = repo.snapshot();
+        assertTrue(snapshot.contains("gaugerole"));
+        assertFalse(snapshot.contains("brokenrole"));
+    }
+
     private static PullRepository createRepo() {
         final PullRepository repo = new PullRepository();
         for (int i = 0; i < 3; i++) {
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.cube;
+
+import org.apache.sirona.Role;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact alternative to the JSON event stream, sent with the application/x-sirona-events content type:
+ *
+ * payload    := 'S' 'E' version marker:string event*
+ * event      := type:byte time:zigzag-varlong (seconds, delta with the previous event) body
+ * counter    := role name:string concurrency:varint hits:varlong
+ *               mean variance max min sum m2:double histogram:string concurrencyDistribution:string
+ * gauge      := role value:double
+ * validation := name:string status:string message:string
+ * status     := date:varlong (ms)
+ * role       := id:varint, 0 defines the next id of the payload: name:string unit:string
+ * string     := varint (utf-8 length + 1) bytes, 0 being null
+ *
+ * Doubles are raw IEEE 754 bits (big endian). Times have the precision of the JSON dates (second).
+ */
+public class BinaryEventStream {
+    public static final String CONTENT_TYPE = "application/x-sirona-events";
+
+    public static final byte VERSION = 1;
+    public static final byte COUNTER = 1;
+    public static final byte GAUGE = 2;
+    public static final byte VALIDATION = 3;
+    public static final byte STATUS = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Integer> roles = new HashMap<String, Integer>();
+    private byte[] buffer = new byte[256];
+    private int size = 0;
+    private int events = 0;
+    private long lastTime = 0;
+
+    public BinaryEventStream(final String marker) {
+        writeByte('S');
+        writeByte('E');
+        writeByte(VERSION);
+        writeString(marker);
+    }
+
+    public BinaryEventStream counter(final long time, final Role role, final String name, final int concurrency,
+                                     final double mean, final double variance, final long hits,
+                                     final double max, final double min, final double sum, final double m2,
+                                     final String histogram, final String concurrencyDistribution) {
+        header(COUNTER, time);
+        writeRole(role);
+        writeString(name);
+        writeVarLong(concurrency);
+        writeVarLong(hits);
+        writeDouble(mean);
+        writeDouble(variance);
+        writeDouble(max);
+        writeDouble(min);
+        writeDouble(sum);
+        writeDouble(m2);
+        writeString(histogram);
+        writeString(concurrencyDistribution);
+        return this;
+    }
+
+    public BinaryEventStream gauge(final long time, final Role role, final double value) {
+        header(GAUGE, time);
+        writeRole(role);
+        writeDouble(value);
+        return this;
+    }
+
+    public BinaryEventStream validation(final long time, final String name, final String status, final String message) {
+        header(VALIDATION, time);
+        writeString(name);
+        writeString(status);
+        writeString(message);
+        return this;
+    }
+
+    public BinaryEventStream status(final long time, final long date) {
+        header(STATUS, time);
+        writeVarLong(date);
+        return this;
+    }
+
+    public int events() {
+        return events;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, size);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void header(final byte type, final long time) {
+        final long seconds = time / 1000;
+        writeByte(type);
+        writeVarLong(zigzag(seconds - lastTime));
+        lastTime = seconds;
+        events++;
+    }
+
+    private void writeRole(final Role role) {
+        final Integer id = roles.get(role.getName());
+        if (id != null) {
+            writeVarLong(id);
+            return;
+        }
+
+        writeVarLong(0);
+        writeString(role.getName());
+        writeString(role.getUnit().getName());
+        roles.put(role.getName(), roles.size() + 1);
+    }
+
+    private void writeString(final String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(bytes.length + 1);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeDouble(final double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    // unsigned LEB128
+    private void writeVarLong(final long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[size++] = (byte) remaining;
+    }
+
+    private void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(final int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.cube;
+
+import org.apache.sirona.SironaException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// HTTP compression of the payloads exchanged with the collector, gzip or deflate (zlib)
+public final class ContentEncodings {
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * @param acceptEncoding the Accept-Encoding header.
+     * @return gzip or deflate if accepted (gzip is preferred), null otherwise.
+     */
+    public static String negotiate(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        boolean deflate = false;
+        for (final String value : acceptEncoding.split(",")) {
+            final String[] parts = value.split(";");
+            final String name = parts[0].trim();
+            if (isRefused(parts)) {
+                continue;
+            }
+
+            if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+                return GZIP;
+            }
+            if (DEFLATE.equalsIgnoreCase(name)) {
+                deflate = true;
+            }
+        }
+        if (deflate) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    // null, empty or none means no compression
+    public static String normalize(final String encoding) {
+        if (encoding == null || encoding.trim().isEmpty() || "none".equalsIgnoreCase(encoding.trim())) {
+            return null;
+        }
+        if (GZIP.equalsIgnoreCase(encoding.trim())) {
+            return GZIP;
+        }
+        if (DEFLATE.equalsIgnoreCase(encoding.trim())) {
+            return DEFLATE;
+        }
+        throw new SironaException("Unsupported compression '" + encoding + "', use gzip, deflate or none");
+    }
+
+    public static byte[] encode(final byte[] payload, final String encoding) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(payload.length / 4 + 64);
+        try {
+            final OutputStream out;
+            if (GZIP.equals(encoding)) {
+                out = new GZIPOutputStream(baos);
+            } else if (DEFLATE.equals(encoding)) {
+                out = new DeflaterOutputStream(baos);
+            } else {
+                throw new IllegalArgumentException("Unsupported encoding " + encoding);
+            }
+            try {
+                out.write(payload);
+            } finally {
+                out.close();
+            }
+        } catch (final IOException e) { // can't happen in memory
+            throw new SironaException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static boolean isRefused(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim()) <= 0;
+                } catch (final NumberFormatException nfe) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ContentEncodings() {
+        // no-op
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.sirona.Role;
 import org.apache.sirona.counters.Counter;
 import org.apache.sirona.status.NodeStatus;
 import org.apache.sirona.status.ValidationResult;
+import org.apache.sirona.util.SelfMonitoring;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
@@ -59,6 +60,8 @@ public class Cube {
     private static final String MIN = "min";
     private static final String SUM = "sum";
     private static final String M_2 = "m2";
+    private static final String HISTOGRAM = "histogram";
+    private static final String CONCURRENCY_DISTRIBUTION = "concurrencyDistribution";
 
     private static final String JSON_BASE = "{" +
         "\"type\": \"%s\"," +
@@ -107,11 +110,27 @@ public class Cube {
 
     public void post(final StringBuilder payload) {
         if (payload.length() > 0) {
-            doPost(globalPayload(payload));
+            doPost(globalPayload(payload).getBytes(), APPLICATION_JSON);
         }
     }
 
-    private void doPost(final String payload) {
+    public boolean isBinary() {
+        return config.isBinary();
+    }
+
+    public BinaryEventStream newBinaryEventStream() {
+        return new BinaryEventStream(config.getMarker());
+    }
+
+    public void post(final BinaryEventStream payload) {
+        if (payload.events() > 0) {
+            doPost(payload.toByteArray(), BinaryEventStream.CONTENT_TYPE);
+        }
+    }
+
+    private void doPost(final byte[] payload, final String contentType) {
+        final long start = System.nanoTime();
+        byte[] body = payload;
         try {
             final URL url = new URL(config.getCollector());
 
@@ -128,8 +147,13 @@ public class Cube {
             }
 
             connection.setRequestMethod(POST);
-            connection.setRequestProperty(CONTENT_TYPE, APPLICATION_JSON);
-            connection.setRequestProperty(CONTENT_LENGTH, Long.toString(payload.length()));
+            final String compression = config.getCompression();
+            if (compression != null && payload.length >= config.getCompressionThreshold()) {
+                body = ContentEncodings.encode(payload, compression);
+                connection.setRequestProperty(ContentEncodings.CONTENT_ENCODING, compression);
+            }
+            connection.setRequestProperty(CONTENT_TYPE, contentType);
+            connection.setRequestProperty(CONTENT_LENGTH, Long.toString(body.length));
             connection.setUseCaches(false);
             connection.setDoInput(true);
             connection.setDoOutput(true);
@@ -137,7 +161,7 @@ public class Cube {
             try {
                 final OutputStream output = connection.getOutputStream();
                 try {
-                    output.write(payload.getBytes());
+                    output.write(body);
                     output.flush();
 
                     final int status = connection.getResponseCode();
@@ -156,6 +180,9 @@ public class Cube {
             }
         } catch (final Exception e) {
             LOGGER.log(Level.WARNING, "Can't post data to collector", e);
+        } finally {
+            SelfMonitoring.record(SelfMonitoring.DURATION, "cube-post", System.nanoTime() - start);
+            SelfMonitoring.record(SelfMonitoring.PAYLOAD, "cube-post", body.length);
         }
     }
 
@@ -211,7 +238,8 @@ public class Cube {
     public StringBuilder counterSnapshot(final Collection<Counter> instances) {
         final long ts = System.currentTimeMillis();
         final StringBuilder events = newEventStream();
-        for (final Counter counter : instances) {
+        for (final Counter instance : instances) {
+            final Counter counter = instance.snapshot();
             buildEvent(events, COUNTER_TYPE, ts, new MapBuilder()
                 .add(NAME, counter.getKey().getName())
                 .add(ROLE, counter.getKey().getRole().getName())
@@ -225,11 +253,26 @@ public class Cube {
                 .add(MIN, counter.getMin())
                 .add(SUM, counter.getSum())
                 .add(M_2, counter.getSecondMoment())
+                .add(HISTOGRAM, counter.getHistogram().toCompactString())
+                .add(CONCURRENCY_DISTRIBUTION, counter.getConcurrencyDistribution().toCompactString())
                 .map());
         }
         return events;
     }
 
+    public BinaryEventStream counterSnapshot(final BinaryEventStream events, final Collection<Counter> instances) {
+        final long ts = System.currentTimeMillis();
+        for (final Counter instance : instances) {
+            final Counter counter = instance.snapshot();
+            events.counter(ts, counter.getKey().getRole(), counter.getKey().getName(),
+                counter.currentConcurrency().intValue(),
+                counter.getMean(), counter.getVariance(), counter.getHits(),
+                counter.getMax(), counter.getMin(), counter.getSum(), counter.getSecondMoment(),
+                counter.getHistogram().toCompactString(), counter.getConcurrencyDistribution().toCompactString());
+        }
+        return events;
+    }
+
     public StringBuilder gaugeSnapshot(final StringBuilder base, final long time, final Role role, final double value) {
         return buildEvent(base, GAUGE_TYPE, time,
             new MapBuilder()
@@ -255,4 +298,18 @@ public class Cube {
         }
         return events;
     }
+
+    public BinaryEventStream gaugeSnapshot(final BinaryEventStream events, final long time, final Role role, final double value) {
+        return events.gauge(time, role, value);
+    }
+
+    public BinaryEventStream statusSnapshot(final BinaryEventStream events, final long ts, final NodeStatus nodeStatus) {
+        for (final ValidationResult result : nodeStatus.getResults()) {
+            events.validation(ts, result.getName(), result.getStatus().name(), result.getMessage());
+        }
+        if (nodeStatus.getDate() != null) {
+            events.status(ts, nodeStatus.getDate().getTime());
+        }
+        return events;
+    }
 }
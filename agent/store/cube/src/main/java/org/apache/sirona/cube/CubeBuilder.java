@@ -37,6 +37,9 @@ public class CubeBuilder {
     private String collector;
     private String marker;
     private SSLSocketFactory socketFactory;
+    private String format = "json"; // or binary, see BinaryEventStream
+    private String compression; // gzip or deflate, none by default
+    private int compressionThreshold = 1024; // smaller payloads are sent as they are
 
     // ssl config
     private String sslTrustStore;
@@ -68,6 +71,8 @@ public class CubeBuilder {
             socketFactory = null;
         }
 
+        compression = ContentEncodings.normalize(compression);
+
         if (basicHeader != null) { // compute it
             basicHeader = "Basic " + DatatypeConverter.printBase64Binary(basicHeader.getBytes());
         }
@@ -99,6 +104,18 @@ public class CubeBuilder {
         return basicHeader;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public boolean isBinary() {
+        return "binary".equalsIgnoreCase(format);
+    }
+
     private TrustManager[] createTrustManager() {
         if (sslTrustStore == null) {
             return null;
@@ -27,6 +27,10 @@ public class CubeCounterDataStore extends BatchCounterDataStore {
 
     @Override
     protected synchronized void pushCountersByBatch(final Collection<Counter> instances) {
-        cube.post(cube.counterSnapshot(instances));
+        if (cube.isBinary()) {
+            cube.post(cube.counterSnapshot(cube.newBinaryEventStream(), instances));
+        } else {
+            cube.post(cube.counterSnapshot(instances));
+        }
     }
 }
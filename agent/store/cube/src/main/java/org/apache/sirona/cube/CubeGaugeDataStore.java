@@ -20,6 +20,7 @@ import org.apache.sirona.Role;
 import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.store.gauge.BatchGaugeDataStoreAdapter;
 
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,14 +31,26 @@ public class CubeGaugeDataStore extends BatchGaugeDataStoreAdapter {
     private final Cube cube = IoCs.findOrCreateInstance(CubeBuilder.class).build();
 
     @Override
-    protected void pushGauges(final Map<Role, Measure> gauges) {
+    protected void pushGauges(final Map<Role, List<Measure>> gauges) { // a single post whatever the number of measures is
+        if (cube.isBinary()) {
+            final BinaryEventStream events = cube.newBinaryEventStream();
+            for (final Map.Entry<Role, List<Measure>> entry : gauges.entrySet()) {
+                for (final Measure value : entry.getValue()) {
+                    cube.gaugeSnapshot(events, value.getTime(), entry.getKey(), value.getValue());
+                }
+            }
+            cube.post(events);
+            return;
+        }
+
         final StringBuilder events = cube.newEventStream();
-        for (final Map.Entry<Role, Measure> entry : gauges.entrySet()) {
-            try {
-                final Measure value = entry.getValue();
-                cube.gaugeSnapshot(events, value.getTime(), entry.getKey(), value.getValue());
-            } catch (final Exception e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        for (final Map.Entry<Role, List<Measure>> entry : gauges.entrySet()) {
+            for (final Measure value : entry.getValue()) {
+                try {
+                    cube.gaugeSnapshot(events, value.getTime(), entry.getKey(), value.getValue());
+                } catch (final Exception e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
             }
         }
         cube.post(events);
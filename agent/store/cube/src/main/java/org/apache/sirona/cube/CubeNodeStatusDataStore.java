@@ -25,6 +25,10 @@ public class CubeNodeStatusDataStore extends PeriodicNodeStatusDataStore {
 
     @Override
     protected void reportStatus(final NodeStatus nodeStatus) {
-        cube.post(cube.statusSnapshot(System.currentTimeMillis(), nodeStatus));
+        if (cube.isBinary()) {
+            cube.post(cube.statusSnapshot(cube.newBinaryEventStream(), System.currentTimeMillis(), nodeStatus));
+        } else {
+            cube.post(cube.statusSnapshot(System.currentTimeMillis(), nodeStatus));
+        }
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.cube;
+
+import org.apache.sirona.configuration.ioc.IoCs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CubeCompressionTest {
+    private CubeServer server;
+
+    @Before
+    public void startCube() {
+        server = new CubeServer("localhost", Integer.getInteger("collector.server.port", 1234)).start();
+    }
+
+    @After
+    public void stopCube() {
+        server.stop();
+    }
+
+    @Test
+    public void threshold() {
+        final Cube cube = IoCs.findOrCreateInstance(CubeBuilder.class).build();
+
+        final StringBuilder small = cube.newEventStream();
+        cube.buildEvent(small, "compression-test", 0, new MapBuilder().add("size", "small").map());
+        cube.post(small);
+
+        final StringBuilder big = cube.newEventStream();
+        for (int i = 0; i < 50; i++) {
+            cube.buildEvent(big, "compression-test", 0, new MapBuilder().add("size", "big").add("index", i).map());
+        }
+        cube.post(big);
+
+        // other data stores can push at the same time so only keep our messages
+        final List<String> encodings = new ArrayList<String>();
+        final Iterator<String> allEncodings = server.getEncodings().iterator();
+        for (final String message : server.getMessages()) {
+            final String encoding = allEncodings.next();
+            if (message.contains("compression-test")) {
+                encodings.add(encoding);
+                assertTrue(message.startsWith("[") && message.endsWith("]")); // decompressed by the server
+            }
+        }
+        assertEquals(2, encodings.size());
+        assertEquals("null", encodings.get(0));
+        assertEquals(ContentEncodings.GZIP, encodings.get(1));
+    }
+
+    @Test
+    public void negotiate() {
+        assertEquals(ContentEncodings.GZIP, ContentEncodings.negotiate("gzip, deflate"));
+        assertEquals(ContentEncodings.GZIP, ContentEncodings.negotiate("deflate, x-gzip"));
+        assertEquals(ContentEncodings.DEFLATE, ContentEncodings.negotiate("deflate, gzip;q=0"));
+        assertEquals(ContentEncodings.GZIP, ContentEncodings.negotiate("*"));
+        assertNull(ContentEncodings.negotiate("identity"));
+        assertNull(ContentEncodings.negotiate(null));
+    }
+}
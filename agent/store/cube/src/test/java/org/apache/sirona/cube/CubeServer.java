@@ -38,7 +38,10 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.stream.ChunkedWriteHandler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.ServerSocket;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -46,6 +49,8 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public class CubeServer {
     private static final Logger LOGGER = Logger.getLogger(CubeServer.class.getName());
@@ -55,6 +60,7 @@ public class CubeServer {
 
     private NioEventLoopGroup workerGroup;
     private final Collection<String> messages = new LinkedList<String>();
+    private final Collection<String> encodings = new LinkedList<String>(); // Content-Encoding of messages, "null" if not compressed
 
     public CubeServer(final String host, final int port) {
         this.host = host;
@@ -71,6 +77,12 @@ public class CubeServer {
         }
     }
 
+    public Collection<String> getEncodings() {
+        synchronized (messages) {
+            return new ArrayList<String>(encodings);
+        }
+    }
+
     public int getPort() {
         return port;
     }
@@ -105,7 +117,7 @@ public class CubeServer {
                 .option(ChannelOption.TCP_NODELAY, true)
                 .group(workerGroup)
                 .channel(NioServerSocketChannel.class)
-                .childHandler(new Initializer(messages))
+                .childHandler(new Initializer(messages, encodings))
                 .bind(host, port).addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(final ChannelFuture future) throws Exception {
@@ -132,9 +144,11 @@ public class CubeServer {
 
     private static class Initializer extends ChannelInitializer<SocketChannel> {
         private final Collection<String> messages;
+        private final Collection<String> encodings;
 
-        private Initializer(final Collection<String> messages) {
+        private Initializer(final Collection<String> messages, final Collection<String> encodings) {
             this.messages = messages;
+            this.encodings = encodings;
         }
 
         @Override
@@ -146,23 +160,45 @@ public class CubeServer {
                 .addLast("aggregator", new HttpObjectAggregator(Integer.MAX_VALUE))
                 .addLast("encoder", new HttpResponseEncoder())
                 .addLast("chunked-writer", new ChunkedWriteHandler())
-                .addLast("featured-mock-server", new RequestHandler(messages));
+                .addLast("featured-mock-server", new RequestHandler(messages, encodings));
         }
     }
 
     private static class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
         private final Collection<String> messages;
+        private final Collection<String> encodings;
 
-        private RequestHandler(final Collection<String> messages) {
+        private RequestHandler(final Collection<String> messages, final Collection<String> encodings) {
             this.messages = messages;
+            this.encodings = encodings;
         }
 
         @Override
         protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest fullHttpRequest) throws Exception {
             final ChannelFuture future;
             if (HttpMethod.POST.equals(fullHttpRequest.getMethod())) {
+                final byte[] content = new byte[fullHttpRequest.content().readableBytes()];
+                fullHttpRequest.content().readBytes(content);
+
+                final String encoding = fullHttpRequest.headers().get(ContentEncodings.CONTENT_ENCODING);
+                final InputStream decoded;
+                if (ContentEncodings.GZIP.equals(encoding)) {
+                    decoded = new GZIPInputStream(new ByteArrayInputStream(content));
+                } else if (ContentEncodings.DEFLATE.equals(encoding)) {
+                    decoded = new InflaterInputStream(new ByteArrayInputStream(content));
+                } else {
+                    decoded = new ByteArrayInputStream(content);
+                }
+                final ByteArrayOutputStream message = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[1024];
+                int read;
+                while ((read = decoded.read(buffer)) >= 0) {
+                    message.write(buffer, 0, read);
+                }
+
                 synchronized (messages) {
-                    messages.add(fullHttpRequest.content().toString(Charset.defaultCharset()));
+                    messages.add(new String(message.toByteArray(), Charset.defaultCharset()));
+                    encodings.add(String.valueOf(encoding));
                 }
                 final HttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
                 future = ctx.writeAndFlush(response);
@@ -41,7 +41,8 @@ public class GraphiteCounterDataStore extends BatchCounterDataStore {
 
             final long ts = System.currentTimeMillis();
 
-            for (final Counter counter : instances) {
+            for (final Counter instance : instances) {
+                final Counter counter = instance.snapshot();
                 final Counter.Key key = counter.getKey();
                 final String prefix = COUNTER_PREFIX + key.getRole().getName() + SEP + key.getName() + SEP;
 
@@ -35,6 +35,7 @@ public class Role implements Comparable<Role>, Serializable {
     public static final Role JDBC = new Role("jdbc", NANOSECOND);
     public static final Role PERFORMANCES = new Role("performances", NANOSECOND);
     public static final Role FAILURES = new Role("failures", Unit.UNARY);
+    public static final Role SIRONA = new Role("sirona", NANOSECOND); // self monitoring
 
     private final String name;
     private final Unit unit;
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Time (in ns) spent at each concurrency level over an interval, i.e. the time weighted
+ * concurrency distribution. Its average is the L of Little's law (L = throughput x mean duration).
+ *
+ * Levels higher than LEVELS - 1 are counted in the last level. Immutable.
+ */
+public class ConcurrencyDistribution implements Serializable {
+    public static final int LEVELS = 256;
+    public static final ConcurrencyDistribution EMPTY = new ConcurrencyDistribution(new long[0]);
+
+    private static final char ENTRY_SEPARATOR = ',';
+    private static final char TIME_SEPARATOR = ':';
+
+    private final long[] times;
+    private final long duration;
+
+    public ConcurrencyDistribution(final long[] times) {
+        this.times = times;
+
+        long total = 0;
+        for (final long time : times) {
+            total += time;
+        }
+        this.duration = total;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getTime(final int level) {
+        if (level < 0 || level >= times.length) {
+            return 0;
+        }
+        return times[level];
+    }
+
+    public double getAverage() {
+        if (duration == 0) {
+            return times.length == 0 ? Double.NaN : 0; // not tracked or just created
+        }
+
+        double weighted = 0;
+        for (int i = 1; i < times.length; i++) {
+            weighted += (double) i * times[i];
+        }
+        return weighted / duration;
+    }
+
+    /**
+     * @param percentile the percentile in [0, 100].
+     * @return the lowest level the concurrency didn't exceed percentile% of the time.
+     */
+    public double getPercentile(final double percentile) {
+        if (duration == 0) {
+            return times.length == 0 ? Double.NaN : 0;
+        }
+
+        final double target = Math.min(100., Math.max(0., percentile)) * duration / 100.;
+        long seen = 0;
+        for (int i = 0; i < times.length; i++) {
+            seen += times[i];
+            if (seen >= target && seen > 0) {
+                return i;
+            }
+        }
+        return times.length - 1;
+    }
+
+    /**
+     * Distribution of the sum of the concurrencies of several nodes over the same interval,
+     * assuming nodes are loaded together (percentiles add up), average is exact whatever the load is.
+     */
+    public static ConcurrencyDistribution sum(final Collection<ConcurrencyDistribution> distributions) {
+        int size = 0;
+        long duration = 0;
+        for (final ConcurrencyDistribution distribution : distributions) {
+            if (distribution != null && distribution.duration > 0) {
+                size++;
+                duration = Math.max(duration, distribution.duration);
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        final ConcurrencyDistribution[] parts = new ConcurrencyDistribution[size];
+        int p = 0;
+        for (final ConcurrencyDistribution distribution : distributions) {
+            if (distribution != null && distribution.duration > 0) {
+                parts[p++] = distribution;
+            }
+        }
+        if (size == 1) {
+            return parts[0];
+        }
+
+        // walk all quantile functions together, each step ends at the next level change of one of them
+        final int[] levels = new int[size];
+        final double[] remaining = new double[size]; // fraction of the time left at the current level
+        for (int i = 0; i < size; i++) {
+            levels[i] = -1;
+            remaining[i] = 0;
+        }
+
+        final long[] times = new long[LEVELS];
+        double done = 0;
+        while (done < 1.) {
+            double step = Double.MAX_VALUE;
+            int level = 0;
+            for (int i = 0; i < size; i++) {
+                while (remaining[i] <= 0 && levels[i] < parts[i].times.length - 1) {
+                    levels[i]++;
+                    remaining[i] = parts[i].times[levels[i]] / (double) parts[i].duration;
+                }
+                if (remaining[i] > 0) {
+                    step = Math.min(step, remaining[i]);
+                }
+                level += Math.max(0, levels[i]);
+            }
+            if (step == Double.MAX_VALUE) { // rounding
+                break;
+            }
+
+            times[Math.min(LEVELS - 1, level)] += Math.round(step * duration);
+            for (int i = 0; i < size; i++) {
+                remaining[i] -= step;
+            }
+            done += step;
+        }
+        return new ConcurrencyDistribution(times);
+    }
+
+    /**
+     * @return a sparse textual representation "level:time,level:time" used on the wire.
+     */
+    public String toCompactString() {
+        if (duration == 0) {
+            return "";
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] != 0) {
+                builder.append(i).append(TIME_SEPARATOR).append(times[i]).append(ENTRY_SEPARATOR);
+            }
+        }
+        builder.setLength(builder.length() - 1);
+        return builder.toString();
+    }
+
+    public static ConcurrencyDistribution fromCompactString(final String value) {
+        if (value == null || value.isEmpty()) {
+            return EMPTY;
+        }
+
+        final long[] times = new long[LEVELS];
+        for (final String entry : value.split(String.valueOf(ENTRY_SEPARATOR))) {
+            final int sep = entry.indexOf(TIME_SEPARATOR);
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Invalid concurrency entry: " + entry);
+            }
+
+            final int level = Integer.parseInt(entry.substring(0, sep).trim());
+            if (level < 0) {
+                throw new IllegalArgumentException("Invalid concurrency level: " + level);
+            }
+            times[Math.min(LEVELS - 1, level)] += Long.parseLong(entry.substring(sep + 1).trim());
+        }
+        return new ConcurrencyDistribution(times);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyDistribution{duration=" + duration + ", average=" + getAverage() + '}';
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.stopwatches.Clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates the time spent at each concurrency level of a counter.
+ *
+ * Stopwatches and timers give the new concurrency through track() when they start and stop. Each change costs a clock read, a CAS and an atomic add
+ * and each counter keeps an array of LEVELS longs so it is disabled by default (counter.concurrency.tracking).
+ */
+public class ConcurrencyTracker {
+    public static final boolean ACTIVE = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.concurrency.tracking", false);
+
+    private static final int LEVEL_SHIFT = 48;
+    private static final long TIME_MASK = (1L << LEVEL_SHIFT) - 1;
+    private static final int TIME_SHIFT = 10; // ~1us units so 48 bits cover years
+    private static final int MAX_LEVEL = (1 << (Long.SIZE - LEVEL_SHIFT - 1)) - 1;
+
+    private final Clock clock;
+    private final long origin;
+    private final AtomicLong state = new AtomicLong(0); // level << LEVEL_SHIFT | time of the last change
+    private final AtomicLongArray times = new AtomicLongArray(ConcurrencyDistribution.LEVELS);
+
+    public ConcurrencyTracker(final Clock clock) {
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+    }
+
+    public static void track(final Counter counter, final int concurrency) {
+        if (ACTIVE && ConcurrencyTracked.class.isInstance(counter)) {
+            ConcurrencyTracked.class.cast(counter).trackConcurrency(concurrency);
+        }
+    }
+
+    // levels are absolute so a change seen out of order is fixed by the next one
+    public void update(final int level) {
+        change(Math.min(MAX_LEVEL, Math.max(0, level)));
+    }
+
+    public ConcurrencyDistribution distribution() {
+        final AtomicLongArray current = times;
+        final long[] copy = new long[current.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = current.get(i);
+        }
+
+        // time spent at the current level since the last change
+        final long s = state.get();
+        final long elapsed = now() - (s & TIME_MASK);
+        if (elapsed > 0) {
+            copy[level(s)] += elapsed;
+        }
+        return new ConcurrencyDistribution(shift(copy));
+    }
+
+    // starts a new interval, in place: time added by a concurrent change after its level was read goes to the next interval
+    public ConcurrencyDistribution distributionAndReset() {
+        change(-1); // flushes the current level time
+        final long[] copy = new long[times.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = times.getAndSet(i, 0);
+        }
+        return new ConcurrencyDistribution(shift(copy));
+    }
+
+    private void change(final long level) { // -1 to keep the current level
+        final long now = now();
+        long s;
+        long last;
+        long newState;
+        do {
+            s = state.get();
+            last = s & TIME_MASK;
+            final long newLevel = level < 0 ? s >>> LEVEL_SHIFT : level;
+            newState = (newLevel << LEVEL_SHIFT) | Math.max(now, last);
+        } while (!state.compareAndSet(s, newState));
+
+        if (now > last) {
+            times.addAndGet(level(s), now - last);
+        }
+    }
+
+    private long now() {
+        return ((clock.nanoTime() - origin) >>> TIME_SHIFT) & TIME_MASK;
+    }
+
+    private static int level(final long s) {
+        return (int) Math.min(ConcurrencyDistribution.LEVELS - 1, s >>> LEVEL_SHIFT);
+    }
+
+    private static long[] shift(final long[] times) { // back to ns
+        for (int i = 0; i < times.length; i++) {
+            times[i] <<= TIME_SHIFT;
+        }
+        return times;
+    }
+}
@@ -60,6 +60,16 @@ public interface Counter {
 
     double getSecondMoment(); // here for aggregation etc but not (yet?) a human metric so not in MetricData
 
+    double getPercentile(double percentile); // percentile in [0, 100], estimated from the histogram
+
+    Histogram getHistogram(); // a copy, here for aggregation (percentiles are mergeable only through buckets)
+
+    ConcurrencyDistribution getConcurrencyDistribution(); // time weighted concurrency since the last reset
+
+    CounterSnapshot snapshot(); // all indicators read at once, exporters should use it instead of the getters
+
+    CounterSnapshot snapshotAndReset(); // same as snapshot() but statistics are cleared without losing concurrent adds
+
     public static class Key implements Serializable {
         private final String name;
         private final Role role;
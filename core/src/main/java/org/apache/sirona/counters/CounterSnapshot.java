@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read only view of a counter at a given time (or over a given period).
+ *
+ * Getters don't lock anything so it is the way to read several indicators
+ * of the same counter: they are consistent together.
+ */
+public class CounterSnapshot implements Counter, Serializable {
+    private final Key key;
+    private final OptimizedStatistics statistics;
+    private final Histogram histogram;
+    private final int concurrency;
+    private final int maxConcurrency;
+    private final ConcurrencyDistribution concurrencyDistribution;
+
+    public CounterSnapshot(final Key key, final OptimizedStatistics statistics, final Histogram histogram,
+                           final int concurrency, final int maxConcurrency) {
+        this(key, statistics, histogram, concurrency, maxConcurrency, ConcurrencyDistribution.EMPTY);
+    }
+
+    public CounterSnapshot(final Key key, final OptimizedStatistics statistics, final Histogram histogram,
+                           final int concurrency, final int maxConcurrency,
+                           final ConcurrencyDistribution concurrencyDistribution) {
+        this.key = key;
+        this.statistics = statistics;
+        this.histogram = histogram;
+        this.concurrency = concurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyDistribution = concurrencyDistribution;
+    }
+
+    @Override
+    public Key getKey() {
+        return key;
+    }
+
+    @Override
+    public void reset() {
+        throw new UnsupportedOperationException("a snapshot is read only");
+    }
+
+    @Override
+    public void add(final double delta) {
+        throw new UnsupportedOperationException("a snapshot is read only");
+    }
+
+    @Override
+    public void add(final double delta, final Unit unit) {
+        throw new UnsupportedOperationException("a snapshot is read only");
+    }
+
+    @Override
+    public AtomicInteger currentConcurrency() {
+        return new AtomicInteger(concurrency);
+    }
+
+    @Override
+    public void updateConcurrency(final int concurrency) {
+        throw new UnsupportedOperationException("a snapshot is read only");
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public double getMax() {
+        return statistics.getMax();
+    }
+
+    @Override
+    public double getMin() {
+        return statistics.getMin();
+    }
+
+    @Override
+    public long getHits() {
+        return statistics.getN();
+    }
+
+    @Override
+    public double getSum() {
+        return statistics.getSum();
+    }
+
+    @Override
+    public double getStandardDeviation() {
+        return statistics.getStandardDeviation();
+    }
+
+    @Override
+    public double getVariance() {
+        return statistics.getVariance();
+    }
+
+    @Override
+    public double getMean() {
+        return statistics.getMean();
+    }
+
+    @Override
+    public double getSecondMoment() {
+        return statistics.getSecondMoment();
+    }
+
+    @Override
+    public double getPercentile(final double percentile) {
+        return histogram.getPercentile(percentile, statistics.getMin(), statistics.getMax());
+    }
+
+    @Override
+    public Histogram getHistogram() {
+        return histogram.copy();
+    }
+
+    @Override
+    public ConcurrencyDistribution getConcurrencyDistribution() {
+        return concurrencyDistribution;
+    }
+
+    @Override
+    public CounterSnapshot snapshot() {
+        return this;
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() {
+        throw new UnsupportedOperationException("a snapshot is read only");
+    }
+
+    public OptimizedStatistics getStatistics() {
+        return statistics.copy();
+    }
+
+    /**
+     * @param counters the counters to read, snapshots are kept as they are.
+     * @param reset should counters be reset once read, counters not hit since the last reset are then skipped.
+     * @return a snapshot per counter.
+     */
+    public static Collection<Counter> of(final Collection<Counter> counters, final boolean reset) {
+        final Collection<Counter> snapshots = new ArrayList<Counter>(counters.size());
+        for (final Counter counter : counters) {
+            if (CounterSnapshot.class.isInstance(counter)) {
+                snapshots.add(counter);
+            } else if (reset) {
+                final CounterSnapshot snapshot = counter.snapshotAndReset();
+                if (snapshot.getHits() > 0) {
+                    snapshots.add(snapshot);
+                }
+            } else {
+                snapshots.add(counter.snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!Counter.class.isInstance(o)) {
+            return false;
+        }
+        return key.equals(Counter.class.cast(o).getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CounterSnapshot{key=" + key + ", hits=" + statistics.getN() + '}';
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.sirona.counters;
 
+import org.apache.sirona.stopwatches.Clocks;
 import org.apache.sirona.store.counter.CounterDataStore;
 
 import javax.management.ObjectName;
@@ -24,36 +25,89 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class DefaultCounter implements Counter {
+public class DefaultCounter implements Counter, ConcurrencyTracked {
     private final AtomicInteger concurrency = new AtomicInteger(0);
+    private final ConcurrencyTracker concurrencyTracker; // null if disabled
     private final Key key;
     private final CounterDataStore dataStore;
-    private volatile int maxConcurrency = 0;
-    protected final OptimizedStatistics statistics;
+    private final AtomicInteger maxConcurrency = new AtomicInteger(0);
+    protected final OptimizedStatistics statistics; // null if the subclass keeps its own statistics
+    protected final Histogram histogram; // null if disabled
     protected final ReadWriteLock lock = new ReentrantReadWriteLock();
     private ObjectName jmx = null;
+    private volatile long lastUpdate = System.currentTimeMillis(); // only maintained by stores evicting counters
+    private volatile boolean evicted = false;
 
     public DefaultCounter(final Key key, final CounterDataStore store) {
+        this(key, store, true);
+    }
+
+    // ownStatistics=false for subclasses overriding every statistics accessor, nothing is allocated for them
+    protected DefaultCounter(final Key key, final CounterDataStore store, final boolean ownStatistics) {
         this.key = key;
         this.dataStore = store;
+        if (ConcurrencyTracker.ACTIVE) {
+            this.concurrencyTracker = new ConcurrencyTracker(Clocks.of(key.getRole()));
+        } else {
+            this.concurrencyTracker = null;
+        }
 
-        this.statistics = new OptimizedStatistics();
+        this.statistics = ownStatistics ? new OptimizedStatistics() : null;
+        this.histogram = ownStatistics && Histogram.ACTIVE ? new Histogram() : null;
     }
 
     public void addInternal(final double delta) { // should be called from a thread safe environment
         statistics.addValue(delta);
+        if (histogram != null) {
+            histogram.addValue(delta);
+        }
+    }
+
+    public void addInternal(final double delta, final long weight) { // weight > 1 for sampled measures
+        statistics.addValue(delta, weight);
+        if (histogram != null) {
+            histogram.addValue(delta, weight);
+        }
     }
 
     @Override
     public void updateConcurrency(final int concurrency) {
-        if (concurrency > maxConcurrency) {
-            maxConcurrency = concurrency;
+        int max = maxConcurrency.get();
+        while (concurrency > max && !maxConcurrency.compareAndSet(max, concurrency)) {
+            max = maxConcurrency.get();
         }
     }
 
     @Override
     public int getMaxConcurrency() {
-        return maxConcurrency;
+        return maxConcurrency.get();
+    }
+
+    // next interval starts from the running invocations, returns the max of the previous one
+    protected int resetMaxConcurrency() {
+        return maxConcurrency.getAndSet(concurrency.get());
+    }
+
+    @Override
+    public void trackConcurrency(final int concurrency) {
+        if (concurrencyTracker != null) {
+            concurrencyTracker.update(concurrency);
+        }
+    }
+
+    @Override
+    public ConcurrencyDistribution getConcurrencyDistribution() {
+        if (concurrencyTracker != null) {
+            return concurrencyTracker.distribution();
+        }
+        return ConcurrencyDistribution.EMPTY;
+    }
+
+    protected ConcurrencyDistribution resetConcurrencyDistribution() {
+        if (concurrencyTracker != null) {
+            return concurrencyTracker.distributionAndReset();
+        }
+        return ConcurrencyDistribution.EMPTY;
     }
 
     @Override
@@ -68,8 +122,17 @@ public class DefaultCounter implements Counter {
 
     @Override
     public void reset() {
-        statistics.clear();
+        if (statistics != null) {
+            statistics.clear();
+        }
+        if (histogram != null) {
+            histogram.clear();
+        }
+        resetConcurrencyDistribution();
         concurrency.set(0);
+        if (concurrencyTracker != null) {
+            concurrencyTracker.update(0);
+        }
     }
 
     @Override
@@ -170,6 +233,65 @@ public class DefaultCounter implements Counter {
         }
     }
 
+    @Override
+    public double getPercentile(final double percentile) {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            if (histogram == null) {
+                return Double.NaN;
+            }
+            return histogram.getPercentile(percentile, statistics.getMin(), statistics.getMax());
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public Histogram getHistogram() {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            return histogramCopy();
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public CounterSnapshot snapshot() {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            return new CounterSnapshot(key, statistics.copy(), histogramCopy(), concurrency.get(), maxConcurrency.get(), getConcurrencyDistribution());
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() { // concurrency is kept since running invocations will decrement it
+        final Lock wl = lock.writeLock();
+        wl.lock();
+        try {
+            final CounterSnapshot snapshot = new CounterSnapshot(key, statistics.copy(), histogramCopy(), concurrency.get(), resetMaxConcurrency(), resetConcurrencyDistribution());
+            statistics.clear();
+            if (histogram != null) {
+                histogram.clear();
+            }
+            return snapshot;
+        } finally {
+            wl.unlock();
+        }
+    }
+
+    private Histogram histogramCopy() {
+        if (histogram == null) {
+            return new Histogram(); // empty, no bucket allocated
+        }
+        return histogram.copy();
+    }
+
     public OptimizedStatistics getStatistics() {
         final Lock rl = lock.readLock();
         rl.lock();
@@ -192,6 +314,26 @@ public class DefaultCounter implements Counter {
         return jmx;
     }
 
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public void setLastUpdate(final long lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    public CounterDataStore getDataStore() {
+        return dataStore;
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    public void setEvicted(final boolean evicted) {
+        this.evicted = evicted;
+    }
+
     @Override
     public String toString() {
         return "DefaultCounter{" +
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.configuration.Configuration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A log bucketed histogram: each power of two is split in 2^SUB_BUCKET_BITS linear buckets
+ * so the relative error of a percentile is bounded (~6% with 3 bits) whatever the magnitude is.
+ *
+ * Values lower than 1 share the first bucket. Histograms with the same layout can be merged
+ * by summing their buckets which is what the collector does with the ones sent by agents.
+ *
+ * Not thread safe, owner is responsible of the locking as for OptimizedStatistics.
+ *
+ * Buckets cost 4k once a value is added, counters don't keep one when counter.histogram is false.
+ */
+public class Histogram implements Serializable {
+    public static final boolean ACTIVE = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.histogram", true);
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+    private static final int MANTISSA_BITS = 52;
+    private static final int MAX_EXPONENT = 62;
+
+    public static final int BUCKETS = 1 + (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private static final char ENTRY_SEPARATOR = ',';
+    private static final char COUNT_SEPARATOR = ':';
+
+    private long[] counts = null; // lazily created since some counters are never hit
+    private long n = 0;
+
+    public void addValue(final double value) {
+        if (counts == null) {
+            counts = new long[BUCKETS];
+        }
+        counts[bucket(value)]++;
+        n++;
+    }
+
+    public void addValue(final double value, final long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        if (counts == null) {
+            counts = new long[BUCKETS];
+        }
+        counts[bucket(value)] += weight;
+        n += weight;
+    }
+
+    public void merge(final Histogram other) {
+        if (other == null || other.n == 0) {
+            return;
+        }
+        if (counts == null) {
+            counts = new long[BUCKETS];
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        n += other.n;
+    }
+
+    // raw bucket counts, used to merge buckets not stored as an Histogram (windows)
+    void addCounts(final long[] others) {
+        if (counts == null) {
+            counts = new long[BUCKETS];
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += others[i];
+            n += others[i];
+        }
+    }
+
+    // keeps the buckets, counters are reset for each snapshot
+    public void clear() {
+        if (n != 0) {
+            Arrays.fill(counts, 0);
+        }
+        n = 0;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * @param percentile the percentile in [0, 100].
+     * @param min the known minimum to bound the estimation, NaN if unknown.
+     * @param max the known maximum to bound the estimation, NaN if unknown.
+     * @return the estimated value or NaN if nothing was recorded.
+     */
+    public double getPercentile(final double percentile, final double min, final double max) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (percentile >= 100 && !Double.isNaN(max)) {
+            return max;
+        }
+        if (percentile <= 0 && !Double.isNaN(min)) {
+            return min;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100., Math.max(0., percentile)) * n / 100.));
+        long seen = 0;
+        int idx = 0;
+        for (; idx < BUCKETS; idx++) {
+            seen += counts[idx];
+            if (seen >= rank) {
+                break;
+            }
+        }
+
+        double value = bucketValue(Math.min(idx, BUCKETS - 1));
+        if (!Double.isNaN(max) && value > max) {
+            value = max;
+        }
+        if (!Double.isNaN(min) && value < min) {
+            value = min;
+        }
+        return value;
+    }
+
+    public Histogram copy() {
+        final Histogram copy = new Histogram();
+        if (n != 0) {
+            copy.counts = counts.clone();
+        }
+        copy.n = n;
+        return copy;
+    }
+
+    /**
+     * @return a sparse textual representation "bucket:count,bucket:count" used on the wire.
+     */
+    public String toCompactString() {
+        if (n == 0) {
+            return "";
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                builder.append(i).append(COUNT_SEPARATOR).append(counts[i]).append(ENTRY_SEPARATOR);
+            }
+        }
+        builder.setLength(builder.length() - 1);
+        return builder.toString();
+    }
+
+    public static Histogram fromCompactString(final String value) {
+        final Histogram histogram = new Histogram();
+        if (value == null || value.isEmpty()) {
+            return histogram;
+        }
+
+        histogram.counts = new long[BUCKETS];
+        for (final String entry : value.split(String.valueOf(ENTRY_SEPARATOR))) {
+            final int sep = entry.indexOf(COUNT_SEPARATOR);
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Invalid histogram entry: " + entry);
+            }
+
+            final int bucket = Integer.parseInt(entry.substring(0, sep).trim());
+            final long count = Long.parseLong(entry.substring(sep + 1).trim());
+            if (bucket < 0 || bucket >= BUCKETS) {
+                throw new IllegalArgumentException("Invalid histogram bucket: " + bucket);
+            }
+            histogram.counts[bucket] += count;
+            histogram.n += count;
+        }
+        return histogram;
+    }
+
+    protected static int bucket(final double value) {
+        if (!(value >= 1)) { // NaN, negative and [0, 1[
+            return 0;
+        }
+
+        final int exponent = Math.getExponent(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        final int sub = (int) ((Double.doubleToRawLongBits(value) >>> (MANTISSA_BITS - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK);
+        return 1 + (exponent << SUB_BUCKET_BITS) + sub;
+    }
+
+    // middle of the bucket
+    protected static double bucketValue(final int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+
+        final int exponent = (bucket - 1) >> SUB_BUCKET_BITS;
+        final int sub = (bucket - 1) & SUB_BUCKET_MASK;
+        return Math.scalb(1. + (sub + 0.5) / SUB_BUCKETS, exponent);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{n=" + n + '}';
+    }
+}
@@ -137,6 +137,94 @@ public enum MetricData {
             return counter.getMaxConcurrency();
         }
 
+        @Override
+        public boolean isTime() {
+            return false;
+        }
+    },
+    P50 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getPercentile(50);
+        }
+
+        @Override
+        public boolean isTime() {
+            return true;
+        }
+    },
+    P90 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getPercentile(90);
+        }
+
+        @Override
+        public boolean isTime() {
+            return true;
+        }
+    },
+    P99 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getPercentile(99);
+        }
+
+        @Override
+        public boolean isTime() {
+            return true;
+        }
+    },
+    P999 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getPercentile(99.9);
+        }
+
+        @Override
+        public boolean isTime() {
+            return true;
+        }
+    },
+    AverageConcurrency { // time weighted, L of Little's law
+        @Override
+        public double value(final Counter counter) {
+            return counter.getConcurrencyDistribution().getAverage();
+        }
+
+        @Override
+        public boolean isTime() {
+            return false;
+        }
+    },
+    ConcurrencyP50 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getConcurrencyDistribution().getPercentile(50);
+        }
+
+        @Override
+        public boolean isTime() {
+            return false;
+        }
+    },
+    ConcurrencyP90 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getConcurrencyDistribution().getPercentile(90);
+        }
+
+        @Override
+        public boolean isTime() {
+            return false;
+        }
+    },
+    ConcurrencyP99 {
+        @Override
+        public double value(final Counter counter) {
+            return counter.getConcurrencyDistribution().getPercentile(99);
+        }
+
         @Override
         public boolean isTime() {
             return false;
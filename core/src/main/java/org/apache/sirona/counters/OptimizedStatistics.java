@@ -75,6 +75,74 @@ public class OptimizedStatistics {
         m2 += dev * nDev * (n - 1);
     }
 
+    // weight identical values (sampled measures), same as merging statistics of weight values
+    public void addValue(final double value, final long weight) {
+        if (weight == 1) {
+            addValue(value);
+            return;
+        }
+        if (weight <= 0) {
+            return;
+        }
+
+        if (n == 0) {
+            n = weight;
+            sum = value * weight;
+            min = value;
+            max = value;
+            m1 = value;
+            m2 = 0.;
+            return;
+        }
+
+        if (value < min || Double.isNaN(min)) {
+            min = value;
+        }
+        if (value > max || Double.isNaN(max)) {
+            max = value;
+        }
+        sum += value * weight;
+
+        final double oldN = n;
+        n += weight;
+
+        final double meanDiff = value - m1;
+        m1 = sum / n;
+        m2 = m2 + meanDiff * meanDiff * oldN * weight / n;
+    }
+
+    // same parallel algorithm as org.apache.sirona.math.Aggregators
+    public void merge(final OptimizedStatistics other) {
+        if (other.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = other.n;
+            sum = other.sum;
+            min = other.min;
+            max = other.max;
+            m1 = other.m1;
+            m2 = other.m2;
+            return;
+        }
+
+        if (other.min < min || Double.isNaN(min)) {
+            min = other.min;
+        }
+        if (other.max > max || Double.isNaN(max)) {
+            max = other.max;
+        }
+        sum += other.sum;
+
+        final double oldN = n;
+        final double curN = other.n;
+        n += other.n;
+
+        final double meanDiff = other.m1 - m1;
+        m1 = sum / n;
+        m2 = m2 + other.m2 + meanDiff * meanDiff * oldN * curN / n;
+    }
+
     public void clear() {
         n = 0;
         sum = 0;
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.store.counter.CounterDataStore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock free counter spreading its statistics over several cells selected by thread
+ * to avoid the counter write lock on the hot path. Cells are merged on read.
+ *
+ * Each cell keeps hits, sum, min, max and the sum and sum of squares of the values shifted by the first value
+ * of the cell, all updated with CAS, cells share one histogram. Shifting keeps the variance accurate for values
+ * with a large mean and a small spread (nanosecond latencies) where raw squares cancel out.
+ * Fields are updated one by one so a read concurrent to adds can see an add partially (its value without its hit),
+ * no add is lost though and a reset can only move part of an add to the next interval.
+ */
+public class StripedCounter extends DefaultCounter {
+    private static final int CELLS = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.striped.cells",
+        2 * Runtime.getRuntime().availableProcessors());
+
+    // cell layout, 16 longs (128 bytes) per cell to limit false sharing between cells of the same counter
+    private static final int SUM = 0;
+    private static final int SHIFTED_SUM = 1;
+    private static final int SHIFTED_SUM_OF_SQUARES = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+    private static final int N = 5; // written last and reset first so a hit is never read before its value
+    private static final int SHIFT = 6; // set when the cell is created, never changes
+    private static final int CELL_SIZE = 16;
+
+    private static final long ZERO = Double.doubleToRawLongBits(0.);
+    private static final long NAN = Double.doubleToRawLongBits(Double.NaN);
+
+    private final AtomicReferenceArray<AtomicLongArray> cells;
+    private final AtomicReference<AtomicLongArray> histogram = new AtomicReference<AtomicLongArray>(); // lazy
+    private final int mask;
+
+    public StripedCounter(final Key key, final CounterDataStore store) {
+        this(key, store, CELLS);
+    }
+
+    public StripedCounter(final Key key, final CounterDataStore store, final int cellNumber) {
+        super(key, store, false);
+
+        int size = 1;
+        while (size < cellNumber) {
+            size <<= 1;
+        }
+        this.cells = new AtomicReferenceArray<AtomicLongArray>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void addInternal(final double delta) { // thread safe, doesn't need the counter lock
+        addInternal(delta, 1);
+    }
+
+    @Override
+    public void addInternal(final double delta, final long weight) {
+        if (weight <= 0) {
+            return;
+        }
+
+        final AtomicLongArray cell = cell(delta);
+        final double shifted = delta - Double.longBitsToDouble(cell.get(SHIFT));
+        add(cell, SUM, delta * weight);
+        add(cell, SHIFTED_SUM, shifted * weight);
+        add(cell, SHIFTED_SUM_OF_SQUARES, shifted * shifted * weight);
+        min(cell, delta);
+        max(cell, delta);
+        cell.addAndGet(N, weight);
+
+        if (Histogram.ACTIVE) {
+            AtomicLongArray counts = histogram.get();
+            if (counts == null) {
+                histogram.compareAndSet(null, new AtomicLongArray(Histogram.BUCKETS));
+                counts = histogram.get();
+            }
+            counts.addAndGet(Histogram.bucket(delta), weight);
+        }
+    }
+
+    private AtomicLongArray cell(final double value) {
+        final int idx = (int) (Thread.currentThread().getId() & mask);
+        final AtomicLongArray cell = cells.get(idx);
+        if (cell != null) {
+            return cell;
+        }
+
+        final AtomicLongArray newCell = new AtomicLongArray(CELL_SIZE);
+        newCell.set(SUM, ZERO);
+        newCell.set(SHIFTED_SUM, ZERO);
+        newCell.set(SHIFTED_SUM_OF_SQUARES, ZERO);
+        newCell.set(MIN, NAN);
+        newCell.set(MAX, NAN);
+        newCell.set(SHIFT, Double.isNaN(value) || Double.isInfinite(value) ? ZERO : Double.doubleToRawLongBits(value));
+        if (cells.compareAndSet(idx, null, newCell)) {
+            return newCell;
+        }
+        return cells.get(idx);
+    }
+
+    @Override
+    public void reset() {
+        snapshot(true);
+        super.reset();
+    }
+
+    @Override
+    public OptimizedStatistics getStatistics() {
+        final OptimizedStatistics merged = new OptimizedStatistics();
+        for (int i = 0; i < cells.length(); i++) {
+            final AtomicLongArray cell = cells.get(i);
+            if (cell != null) {
+                merge(merged, cell.get(N), cell.get(SUM), cell.get(SHIFTED_SUM), cell.get(SHIFTED_SUM_OF_SQUARES), cell.get(MIN), cell.get(MAX));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public Histogram getHistogram() {
+        return readHistogram(false);
+    }
+
+    @Override
+    public double getPercentile(final double percentile) {
+        return snapshot().getPercentile(percentile);
+    }
+
+    @Override
+    public CounterSnapshot snapshot() {
+        return snapshot(false);
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    private CounterSnapshot snapshot(final boolean reset) {
+        final OptimizedStatistics statistics;
+        if (!reset) {
+            statistics = getStatistics();
+        } else {
+            statistics = new OptimizedStatistics();
+            for (int i = 0; i < cells.length(); i++) {
+                final AtomicLongArray cell = cells.get(i);
+                if (cell == null) {
+                    continue;
+                }
+
+                final long n = cell.getAndSet(N, 0);
+                final long sum = cell.getAndSet(SUM, ZERO);
+                final long shiftedSum = cell.getAndSet(SHIFTED_SUM, ZERO);
+                final long shiftedSumOfSquares = cell.getAndSet(SHIFTED_SUM_OF_SQUARES, ZERO);
+                final long min = cell.getAndSet(MIN, NAN);
+                final long max = cell.getAndSet(MAX, NAN);
+                if (n > 0) {
+                    merge(statistics, n, sum, shiftedSum, shiftedSumOfSquares, min, max);
+                } else { // values of adds not counted yet, give them back to the next interval
+                    add(cell, SUM, Double.longBitsToDouble(sum));
+                    add(cell, SHIFTED_SUM, Double.longBitsToDouble(shiftedSum));
+                    add(cell, SHIFTED_SUM_OF_SQUARES, Double.longBitsToDouble(shiftedSumOfSquares));
+                    min(cell, Double.longBitsToDouble(min));
+                    max(cell, Double.longBitsToDouble(max));
+                }
+            }
+        }
+
+        return new CounterSnapshot(getKey(), statistics, readHistogram(reset), currentConcurrency().get(),
+            reset ? resetMaxConcurrency() : getMaxConcurrency(),
+            reset ? resetConcurrencyDistribution() : getConcurrencyDistribution());
+    }
+
+    private Histogram readHistogram(final boolean reset) {
+        final Histogram result = new Histogram();
+        final AtomicLongArray counts = histogram.get();
+        if (counts != null) {
+            final long[] values = new long[Histogram.BUCKETS];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            }
+            result.addCounts(values);
+        }
+        return result;
+    }
+
+    // cells are merged with the parallel variance formula of OptimizedStatistics.merge()
+    private static void merge(final OptimizedStatistics merged, final long n, final long sumBits,
+                              final long shiftedSumBits, final long shiftedSumOfSquaresBits,
+                              final long minBits, final long maxBits) {
+        if (n <= 0) {
+            return;
+        }
+
+        final double sum = Double.longBitsToDouble(sumBits);
+        final double mean = sum / n;
+        final double shiftedSum = Double.longBitsToDouble(shiftedSumBits);
+        // the variance doesn't depend on the shift, only rounding (or a read concurrent to an add) can make it negative
+        final double m2 = Math.max(0., Double.longBitsToDouble(shiftedSumOfSquaresBits) - shiftedSum * shiftedSum / n);
+        merged.merge(new OptimizedStatistics(n, sum, Double.longBitsToDouble(minBits), Double.longBitsToDouble(maxBits), mean, Double.NaN, Double.NaN, m2));
+    }
+
+    private static void add(final AtomicLongArray cell, final int field, final double value) {
+        if (value == 0) {
+            return;
+        }
+
+        long current;
+        do {
+            current = cell.get(field);
+        } while (!cell.compareAndSet(field, current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + value)));
+    }
+
+    private static void min(final AtomicLongArray cell, final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        long current = cell.get(MIN);
+        double min = Double.longBitsToDouble(current);
+        while ((Double.isNaN(min) || value < min) && !cell.compareAndSet(MIN, current, Double.doubleToRawLongBits(value))) {
+            current = cell.get(MIN);
+            min = Double.longBitsToDouble(current);
+        }
+    }
+
+    private static void max(final AtomicLongArray cell, final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        long current = cell.get(MAX);
+        double max = Double.longBitsToDouble(current);
+        while ((Double.isNaN(max) || value > max) && !cell.compareAndSet(MAX, current, Double.doubleToRawLongBits(value))) {
+            current = cell.get(MAX);
+            max = Double.longBitsToDouble(current);
+        }
+    }
+
+    @Override
+    public double getMax() {
+        return getStatistics().getMax();
+    }
+
+    @Override
+    public double getMin() {
+        return getStatistics().getMin();
+    }
+
+    @Override
+    public double getSum() {
+        return getStatistics().getSum();
+    }
+
+    @Override
+    public double getStandardDeviation() {
+        return getStatistics().getStandardDeviation();
+    }
+
+    @Override
+    public double getVariance() {
+        return getStatistics().getVariance();
+    }
+
+    @Override
+    public double getMean() {
+        return getStatistics().getMean();
+    }
+
+    @Override
+    public double getSecondMoment() {
+        return getStatistics().getSecondMoment();
+    }
+
+    @Override
+    public long getHits() {
+        return getStatistics().getN();
+    }
+
+    @Override
+    public String toString() {
+        return "StripedCounter{" +
+            "key=" + getKey() +
+            ", cells=" + cells.length() +
+            '}';
+    }
+}
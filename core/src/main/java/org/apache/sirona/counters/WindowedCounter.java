@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.stopwatches.Clock;
+import org.apache.sirona.stopwatches.Clocks;
+import org.apache.sirona.store.counter.CounterDataStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A counter keeping, in addition to the cumulative statistics, a ring of per interval
+ * buckets (60 buckets of 1s for instance) to be able to read the last N seconds
+ * without resetting the counter.
+ *
+ * Buckets are written under the counter write lock (as the cumulative statistics) and read without it:
+ * each bucket is a seqlock over atomic arrays, writers use ordered puts and readers retry a bucket
+ * changed while they read it. Bucket arrays are allocated once and reused when the ring turns.
+ */
+public class WindowedCounter extends DefaultCounter {
+    private static final int MAX_READ_ATTEMPTS = 64; // then the read lock is used
+
+    private final Bucket[] buckets;
+    private final long bucketDuration;
+    private final long bucketNanos;
+    private final Clock clock;
+
+    public WindowedCounter(final Key key, final CounterDataStore store, final int bucketNumber, final long bucketDuration) {
+        this(key, store, bucketNumber, bucketDuration, Clocks.of(key.getRole()));
+    }
+
+    public WindowedCounter(final Key key, final CounterDataStore store, final int bucketNumber, final long bucketDuration, final Clock clock) {
+        super(key, store);
+        if (bucketNumber <= 0 || bucketDuration <= 0) {
+            throw new IllegalArgumentException("bucket number and duration should be positive");
+        }
+
+        this.clock = clock;
+        this.bucketDuration = bucketDuration;
+        this.bucketNanos = TimeUnit.MILLISECONDS.toNanos(bucketDuration);
+        this.buckets = new Bucket[bucketNumber];
+        for (int i = 0; i < bucketNumber; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    @Override
+    public void addInternal(final double delta) { // should be called from a thread safe environment
+        addInternal(delta, 1);
+    }
+
+    @Override
+    public void addInternal(final double delta, final long weight) {
+        super.addInternal(delta, weight);
+        if (weight <= 0) {
+            return;
+        }
+
+        final long slot = currentSlot();
+        final int length = buckets.length;
+        buckets[(int) (((slot % length) + length) % length)].add(slot, delta, weight); // nanoTime can be negative
+    }
+
+    @Override
+    public void reset() {
+        final Lock wl = lock.writeLock();
+        wl.lock();
+        try {
+            super.reset();
+            for (final Bucket bucket : buckets) {
+                bucket.clear();
+            }
+        } finally {
+            wl.unlock();
+        }
+    }
+
+    public long getWindowDuration() {
+        return buckets.length * bucketDuration;
+    }
+
+    /**
+     * @param duration the period to read in ms, rounded to the bucket duration and limited to the window duration.
+     * @return the statistics of the last period, the current (partial) bucket being included.
+     */
+    public Counter window(final long duration) {
+        final int bucketNumber = (int) Math.max(1, Math.min(buckets.length, (duration + bucketDuration - 1) / bucketDuration));
+        final long current = currentSlot();
+
+        final OptimizedStatistics stats = new OptimizedStatistics();
+        final Histogram histogram = new Histogram();
+        final long[] counts = Histogram.ACTIVE ? new long[Histogram.BUCKETS] : null;
+        for (final Bucket bucket : buckets) {
+            if (!bucket.readTo(stats, histogram, counts, current - bucketNumber, current)) {
+                final Lock rl = lock.readLock(); // writer doesn't release the bucket, don't spin
+                rl.lock();
+                try {
+                    bucket.readTo(stats, histogram, counts, current - bucketNumber, current);
+                } finally {
+                    rl.unlock();
+                }
+            }
+        }
+        return new CounterSnapshot(getKey(), stats, histogram, currentConcurrency().get(), getMaxConcurrency(), getConcurrencyDistribution());
+    }
+
+    private long currentSlot() {
+        return clock.nanoTime() / bucketNanos;
+    }
+
+    public static Counter window(final Counter counter, final long duration) {
+        if (duration > 0 && WindowedCounter.class.isInstance(counter)) {
+            return WindowedCounter.class.cast(counter).window(duration);
+        }
+        return counter;
+    }
+
+    public static Collection<Counter> window(final Collection<Counter> counters, final long duration) {
+        if (duration <= 0) {
+            return counters;
+        }
+
+        final Collection<Counter> windows = new ArrayList<Counter>(counters.size());
+        for (final Counter counter : counters) {
+            windows.add(window(counter, duration));
+        }
+        return windows;
+    }
+
+    // single writer (counter write lock), the sequence is odd while it writes
+    private static class Bucket {
+        private static final int SEQUENCE = 0;
+        private static final int SLOT = 1;
+        private static final int N = 2;
+        private static final int SUM = 3;
+        private static final int MIN = 4;
+        private static final int MAX = 5;
+        private static final int M1 = 6;
+        private static final int M2 = 7;
+        private static final long NAN = Double.doubleToRawLongBits(Double.NaN);
+
+        private final AtomicLongArray data = new AtomicLongArray(8);
+        private volatile AtomicLongArray histogram = null; // lazy since some buckets are never hit
+
+        private Bucket() {
+            data.lazySet(SLOT, Long.MIN_VALUE);
+        }
+
+        private void add(final long slot, final double value, final long weight) {
+            final long sequence = data.get(SEQUENCE);
+            data.lazySet(SEQUENCE, sequence + 1); // lazySet are ordered so data can't be seen before it
+            if (data.get(SLOT) != slot) { // recycle an outdated bucket
+                doClear();
+                data.lazySet(SLOT, slot);
+            }
+
+            // same computation as OptimizedStatistics.addValue(value, weight)
+            final long oldN = data.get(N);
+            final long n = oldN + weight;
+            final double sum = get(SUM) + value * weight;
+            if (oldN == 0) {
+                put(MIN, value);
+                put(MAX, value);
+                put(M1, value);
+                put(M2, 0);
+            } else {
+                if (value < get(MIN)) {
+                    put(MIN, value);
+                }
+                if (value > get(MAX)) {
+                    put(MAX, value);
+                }
+                final double meanDiff = value - get(M1);
+                put(M1, sum / n);
+                put(M2, get(M2) + meanDiff * meanDiff * oldN * weight / n);
+            }
+            put(SUM, sum);
+            data.lazySet(N, n);
+
+            if (Histogram.ACTIVE) {
+                AtomicLongArray counts = histogram;
+                if (counts == null) {
+                    counts = new AtomicLongArray(Histogram.BUCKETS);
+                    histogram = counts;
+                }
+                final int idx = Histogram.bucket(value);
+                counts.lazySet(idx, counts.get(idx) + weight);
+            }
+            data.lazySet(SEQUENCE, sequence + 2);
+        }
+
+        private void clear() {
+            final long sequence = data.get(SEQUENCE);
+            data.lazySet(SEQUENCE, sequence + 1);
+            doClear();
+            data.lazySet(SLOT, Long.MIN_VALUE);
+            data.lazySet(SEQUENCE, sequence + 2);
+        }
+
+        private void doClear() {
+            if (data.get(N) != 0) {
+                final AtomicLongArray counts = histogram;
+                if (counts != null) {
+                    for (int i = 0; i < Histogram.BUCKETS; i++) {
+                        if (counts.get(i) != 0) {
+                            counts.lazySet(i, 0);
+                        }
+                    }
+                }
+            }
+            data.lazySet(N, 0);
+            data.lazySet(SUM, 0);
+            data.lazySet(MIN, NAN);
+            data.lazySet(MAX, NAN);
+            data.lazySet(M1, NAN);
+            data.lazySet(M2, NAN);
+        }
+
+        // false if the bucket was always being written
+        private boolean readTo(final OptimizedStatistics stats, final Histogram histogram, final long[] counts,
+                               final long fromExcluded, final long to) {
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+                final long sequence = data.get(SEQUENCE);
+                if ((sequence & 1) != 0) {
+                    Thread.yield();
+                    continue;
+                }
+
+                final long slot = data.get(SLOT);
+                final long n = data.get(N);
+                if (slot <= fromExcluded || slot > to || n == 0) {
+                    if (data.get(SEQUENCE) == sequence) {
+                        return true;
+                    }
+                    continue;
+                }
+
+                final OptimizedStatistics bucketStats = new OptimizedStatistics(n, get(SUM), get(MIN), get(MAX), get(M1), Double.NaN, Double.NaN, get(M2));
+                final AtomicLongArray bucketCounts = this.histogram;
+                if (counts != null && bucketCounts != null) {
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] = bucketCounts.get(i);
+                    }
+                }
+
+                if (data.get(SEQUENCE) == sequence) {
+                    stats.merge(bucketStats);
+                    if (counts != null && bucketCounts != null) {
+                        histogram.addCounts(counts);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private double get(final int index) {
+            return Double.longBitsToDouble(data.get(index));
+        }
+
+        private void put(final int index, final double value) {
+            data.lazySet(index, Double.doubleToRawLongBits(value));
+        }
+    }
+}
@@ -55,6 +55,26 @@ public class CounterJMX implements CounterJMXMBean {
         return delegate.getMean();
     }
 
+    @Override
+    public double getP50() {
+        return delegate.getPercentile(50);
+    }
+
+    @Override
+    public double getP90() {
+        return delegate.getPercentile(90);
+    }
+
+    @Override
+    public double getP99() {
+        return delegate.getPercentile(99);
+    }
+
+    @Override
+    public double getP999() {
+        return delegate.getPercentile(99.9);
+    }
+
     @Override
     public String getRole() {
         return delegate.getKey().getRole().getName();
@@ -29,6 +29,14 @@ public interface CounterJMXMBean {
 
     double getMean();
 
+    double getP50();
+
+    double getP90();
+
+    double getP99();
+
+    double getP999();
+
     String getRole();
 
     String getName();
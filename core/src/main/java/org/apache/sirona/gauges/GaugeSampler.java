@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.gauges;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.util.SelfMonitoring;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples gauges concurrently on a bounded pool (gauge.sampling.threads) so a slow or hanging gauge
+ * (JMX, reflection, remote cluster queries...) doesn't delay the others.
+ *
+ * A gauge failing, not answering before gauge.sampling.timeout ms or still busy with its previous sample
+ * gets MISSING (NaN) as value. Sampling latency and timeouts of each gauge are recorded in SelfMonitoring.
+ */
+public class GaugeSampler {
+    private static final Logger LOGGER = Logger.getLogger(GaugeSampler.class.getName());
+
+    public static final double MISSING = Double.NaN;
+
+    private final ThreadPoolExecutor pool;
+    private final long timeout;
+    private final ConcurrentMap<Role, Boolean> running = new ConcurrentHashMap<Role, Boolean>();
+
+    public GaugeSampler() {
+        this(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.sampling.threads", 4),
+            Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.sampling.timeout", 5000));
+    }
+
+    public GaugeSampler(final int threads, final long timeout) {
+        this.timeout = timeout;
+        this.pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<Runnable>(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.sampling.queue", 1024)),
+            new DaemonThreadFactory("sirona-gauge-sampler-"));
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Destroying
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return the value of each gauge, MISSING when it failed or didn't answer in time. It blocks at most the timeout.
+     */
+    public Map<Role, Double> sample(final Collection<Gauge> gauges) {
+        final Map<Role, Future<Double>> futures = new HashMap<Role, Future<Double>>();
+        final Map<Role, Double> values = new HashMap<Role, Double>();
+        for (final Gauge gauge : gauges) {
+            final Future<Double> future = submit(gauge);
+            if (future == null) {
+                values.put(gauge.role(), MISSING);
+            } else {
+                futures.put(gauge.role(), future);
+            }
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (final Map.Entry<Role, Future<Double>> entry : futures.entrySet()) {
+            final Role role = entry.getKey();
+            final Future<Double> future = entry.getValue();
+            try {
+                values.put(role, future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (final TimeoutException e) { // not cancelled, the gauge stays busy until it answers
+                SelfMonitoring.record(SelfMonitoring.ITEMS, "gauge-timeout-" + role.getName(), 1);
+                values.put(role, MISSING);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                values.put(role, MISSING);
+            } catch (final ExecutionException e) {
+                LOGGER.log(Level.SEVERE, "Can't sample " + role.getName() + ": " + e.getCause().getMessage(), e.getCause());
+                values.put(role, MISSING);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Doesn't wait for the value, the listener is called by the sampling thread
+     * or directly with MISSING if the gauge is still busy.
+     */
+    public void sampleAsync(final Gauge gauge, final Listener listener) {
+        final long time = System.currentTimeMillis();
+        final Role role = gauge.role();
+        if (acquire(role)) {
+            try {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        double value = MISSING;
+                        try {
+                            value = doSample(gauge);
+                        } catch (final Exception e) {
+                            LOGGER.log(Level.SEVERE, "Can't sample " + role.getName() + ": " + e.getMessage(), e);
+                        } finally {
+                            listener.onSample(role, time, value);
+                        }
+                    }
+                });
+                return;
+            } catch (final RejectedExecutionException ree) {
+                running.remove(role);
+            }
+        }
+        listener.onSample(role, time, MISSING);
+    }
+
+    private Future<Double> submit(final Gauge gauge) {
+        final Role role = gauge.role();
+        if (!acquire(role)) {
+            return null;
+        }
+        try {
+            return pool.submit(new Callable<Double>() {
+                @Override
+                public Double call() throws Exception {
+                    return doSample(gauge);
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            running.remove(role);
+            return null;
+        }
+    }
+
+    // a gauge is sampled once at a time, if the previous sample still hangs this one is missing
+    private boolean acquire(final Role role) {
+        if (running.putIfAbsent(role, Boolean.TRUE) != null) {
+            SelfMonitoring.record(SelfMonitoring.ITEMS, "gauge-timeout-" + role.getName(), 1);
+            return false;
+        }
+        return true;
+    }
+
+    private double doSample(final Gauge gauge) {
+        final Role role = gauge.role();
+        final long start = System.nanoTime();
+        try {
+            return gauge.value();
+        } finally {
+            SelfMonitoring.record(SelfMonitoring.DURATION, "gauge-" + role.getName(), System.nanoTime() - start);
+            running.remove(role);
+        }
+    }
+
+    public interface Listener {
+        void onSample(Role role, long time, double value);
+    }
+}
@@ -46,4 +46,8 @@ public class CounterGauge implements Gauge {
     public double value() {
         return metric.value(counter);
     }
+
+    public Counter getCounter() {
+        return counter;
+    }
 }
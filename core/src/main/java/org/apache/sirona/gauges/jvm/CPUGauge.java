@@ -17,15 +17,18 @@
 package org.apache.sirona.gauges.jvm;
 
 import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.counters.Unit;
-import org.apache.sirona.gauges.Gauge;
+import org.apache.sirona.gauges.PeriodicGauge;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
 
-public class CPUGauge implements Gauge {
+public class CPUGauge implements PeriodicGauge {
     public static final Role CPU = new Role("CPU", Unit.UNARY);
 
+    private static final long PERIOD = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.cpu.period", -1);
+
     private static final OperatingSystemMXBean SYSTEM_MX_BEAN = ManagementFactory.getOperatingSystemMXBean();
 
     @Override
@@ -37,4 +40,9 @@ public class CPUGauge implements Gauge {
     public double value() {
         return SYSTEM_MX_BEAN.getSystemLoadAverage();
     }
+
+    @Override
+    public long period() {
+        return PERIOD;
+    }
 }
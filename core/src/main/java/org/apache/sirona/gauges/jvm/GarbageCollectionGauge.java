@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.gauges.jvm;
+
+import org.apache.sirona.gauges.Gauge;
+
+// turns a cumulated value into the variation since the previous sample, per second if it is a rate
+public abstract class GarbageCollectionGauge implements Gauge {
+    private final boolean rate;
+    private long lastTotal;
+    private long lastTime;
+    private boolean released = false;
+
+    protected GarbageCollectionGauge(final boolean rate) {
+        this.rate = rate;
+        GarbageCollectionListener.install();
+        this.lastTotal = total(GarbageCollectionListener.get());
+        this.lastTime = System.currentTimeMillis();
+    }
+
+    protected abstract long total(GarbageCollectionListener listener);
+
+    // once the gauge is stopped, uninstalls the GC listener when no other gauge uses it
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            GarbageCollectionListener.uninstall();
+        }
+    }
+
+    @Override
+    public synchronized double value() {
+        final long total = total(GarbageCollectionListener.get());
+        final long now = System.currentTimeMillis();
+        final long delta = total - lastTotal;
+        final long duration = now - lastTime;
+        lastTotal = total;
+        lastTime = now;
+
+        if (!rate) {
+            return delta;
+        }
+        if (duration <= 0) {
+            return 0;
+        }
+        return delta * 1000. / duration;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.gauges.jvm;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.repositories.Repository;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listens GC notifications of the JVM (HotSpot 7+, nothing is done on other JVMs) so every collection is seen
+ * whatever the gauge period is: allocated/promoted bytes and GC time are accumulated for the rate gauges and,
+ * if core.gauge.gc.pauses is true, durations go in a counter per collector (GC_PAUSE role, with histogram).
+ * Pause counters are opt-in since they add counters to the repository as soon as a GC happens.
+ *
+ * Parsing uses the open types and not com.sun.management classes to stay portable.
+ *
+ * Each install() should be paired with an uninstall(), the listener is removed with the last one so it doesn't
+ * keep the webapp classloader once the repository is destroyed.
+ */
+public final class GarbageCollectionListener implements NotificationListener {
+    private static final Logger LOGGER = Logger.getLogger(GarbageCollectionListener.class.getName());
+
+    public static final Role GC_PAUSE = new Role("gc-pause", Unit.Time.NANOSECOND);
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    private static final boolean PAUSES = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "core.gauge.gc.pauses", false);
+
+    private static final GarbageCollectionListener INSTANCE = new GarbageCollectionListener();
+
+    private final AtomicLong allocated = new AtomicLong(0);
+    private final AtomicLong promoted = new AtomicLong(0);
+    private final AtomicLong gcTime = new AtomicLong(0); // ms
+    private final Set<String> heapPools = new HashSet<String>();
+    private final Set<String> oldPools = new HashSet<String>();
+    private boolean installed = false;
+    private int users = 0;
+    private long lastUsedAfterGc;
+
+    private GarbageCollectionListener() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                final String name = pool.getName();
+                heapPools.add(name);
+                if (name.contains("Old") || name.contains("Tenured")) {
+                    oldPools.add(name);
+                }
+            }
+        }
+    }
+
+    public static GarbageCollectionListener install() {
+        synchronized (INSTANCE) {
+            if (INSTANCE.users++ == 0) {
+                INSTANCE.lastUsedAfterGc = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    if (NotificationEmitter.class.isInstance(gc)) {
+                        NotificationEmitter.class.cast(gc).addNotificationListener(INSTANCE, null, null);
+                        INSTANCE.installed = true;
+                    }
+                }
+                if (!INSTANCE.installed) {
+                    LOGGER.info("GC notifications not supported by this JVM, GC gauges will stay at 0");
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public static void uninstall() {
+        synchronized (INSTANCE) {
+            if (INSTANCE.users == 0 || --INSTANCE.users > 0 || !INSTANCE.installed) {
+                return;
+            }
+            for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (NotificationEmitter.class.isInstance(gc)) {
+                    try {
+                        NotificationEmitter.class.cast(gc).removeNotificationListener(INSTANCE);
+                    } catch (final ListenerNotFoundException e) {
+                        // no-op
+                    }
+                }
+            }
+            INSTANCE.installed = false;
+        }
+    }
+
+    public static GarbageCollectionListener get() {
+        return INSTANCE;
+    }
+
+    // cumulated bytes allocated in the heap
+    public long getAllocatedBytes() {
+        return allocated.get();
+    }
+
+    // cumulated bytes moved to the old generation
+    public long getPromotedBytes() {
+        return promoted.get();
+    }
+
+    // cumulated time spent in GC in ms
+    public long getGcTime() {
+        return gcTime.get();
+    }
+
+    @Override
+    public void handleNotification(final Notification notification, final Object handback) {
+        if (!GC_NOTIFICATION.equals(notification.getType()) || !CompositeData.class.isInstance(notification.getUserData())) {
+            return;
+        }
+
+        try {
+            final CompositeData data = CompositeData.class.cast(notification.getUserData());
+            final CompositeData info = CompositeData.class.cast(data.get("gcInfo"));
+            final long duration = Number.class.cast(info.get("duration")).longValue();
+
+            gcTime.addAndGet(duration);
+            if (PAUSES) {
+                Repository.INSTANCE.getCounter(new Counter.Key(GC_PAUSE, String.valueOf(data.get("gcName")))).add(duration, Unit.Time.MILLISECOND);
+            }
+
+            onCollection(TabularData.class.cast(info.get("memoryUsageBeforeGc")), TabularData.class.cast(info.get("memoryUsageAfterGc")));
+        } catch (final RuntimeException e) { // unexpected format, don't break the JMX notification thread
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    private synchronized void onCollection(final TabularData before, final TabularData after) {
+        long usedBefore = 0;
+        long usedAfter = 0;
+        long oldBefore = 0;
+        long oldAfter = 0;
+        for (final Object row : before.values()) {
+            final CompositeData entry = CompositeData.class.cast(row);
+            final String pool = String.valueOf(entry.get("key"));
+            if (heapPools.contains(pool)) {
+                final long used = used(entry);
+                usedBefore += used;
+                if (oldPools.contains(pool)) {
+                    oldBefore += used;
+                }
+            }
+        }
+        for (final Object row : after.values()) {
+            final CompositeData entry = CompositeData.class.cast(row);
+            final String pool = String.valueOf(entry.get("key"));
+            if (heapPools.contains(pool)) {
+                final long used = used(entry);
+                usedAfter += used;
+                if (oldPools.contains(pool)) {
+                    oldAfter += used;
+                }
+            }
+        }
+
+        // what was allocated since the end of the previous collection
+        allocated.addAndGet(Math.max(0, usedBefore - lastUsedAfterGc));
+        promoted.addAndGet(Math.max(0, oldAfter - oldBefore));
+        lastUsedAfterGc = usedAfter;
+    }
+
+    private static long used(final CompositeData entry) {
+        return Number.class.cast(CompositeData.class.cast(entry.get("value")).get("used")).longValue();
+    }
+}
@@ -16,9 +16,12 @@
  */
 package org.apache.sirona.math;
 
+import org.apache.sirona.counters.ConcurrencyDistribution;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Histogram;
 import org.apache.sirona.store.counter.LeafCollectorCounter;
-import org.apache.sirona.math.M2AwareStatisticalSummary;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -33,15 +36,18 @@ public class Aggregators {
             return null;
         }
 
-        LeafCollectorCounter current = iterator.next();
+        Counter current = iterator.next().snapshot();
         long n = current.getHits();
         double min = current.getMin();
         double sum = current.getSum();
         double max = current.getMax();
         double m2 = current.getSecondMoment();
         double mean = current.getMean();
+        final Histogram histogram = current.getHistogram();
+        final Collection<ConcurrencyDistribution> concurrencies = new ArrayList<ConcurrencyDistribution>(statistics.size());
+        concurrencies.add(current.getConcurrencyDistribution());
         while (iterator.hasNext()) {
-            current = iterator.next();
+            current = iterator.next().snapshot();
             if (current.getMin() < min || Double.isNaN(min)) {
                 min = current.getMin();
             }
@@ -55,6 +61,8 @@ public class Aggregators {
             final double meanDiff = current.getMean() - mean;
             mean = sum / n;
             m2 = m2 + current.getSecondMoment() + meanDiff * meanDiff * oldN * curN / n;
+            histogram.merge(current.getHistogram());
+            concurrencies.add(current.getConcurrencyDistribution());
         }
 
         final double variance;
@@ -65,7 +73,7 @@ public class Aggregators {
         } else {
             variance = m2 / (n - 1);
         }
-        return new M2AwareStatisticalSummary(mean, variance, n, max, min, sum, m2);
+        return new M2AwareStatisticalSummary(mean, variance, n, max, min, sum, m2, histogram, ConcurrencyDistribution.sum(concurrencies));
     }
 
     private Aggregators() {
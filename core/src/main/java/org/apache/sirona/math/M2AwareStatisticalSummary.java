@@ -16,6 +16,9 @@
  */
 package org.apache.sirona.math;
 
+import org.apache.sirona.counters.ConcurrencyDistribution;
+import org.apache.sirona.counters.Histogram;
+
 import java.io.Serializable;
 import java.util.Map;
 
@@ -27,10 +30,25 @@ public class M2AwareStatisticalSummary implements Serializable {
     private final double min;
     private final double sum;
     private final double m2;
+    private final Histogram histogram; // null if the sender doesn't support it
+    private final ConcurrencyDistribution concurrencyDistribution; // same
 
     public M2AwareStatisticalSummary(final double mean, final double variance, final long n,
                                      final double max, final double min, final double sum,
                                      final double m2) {
+        this(mean, variance, n, max, min, sum, m2, null);
+    }
+
+    public M2AwareStatisticalSummary(final double mean, final double variance, final long n,
+                                     final double max, final double min, final double sum,
+                                     final double m2, final Histogram histogram) {
+        this(mean, variance, n, max, min, sum, m2, histogram, null);
+    }
+
+    public M2AwareStatisticalSummary(final double mean, final double variance, final long n,
+                                     final double max, final double min, final double sum,
+                                     final double m2, final Histogram histogram,
+                                     final ConcurrencyDistribution concurrencyDistribution) {
         this.mean = mean;
         this.variance = variance;
         this.n = n;
@@ -38,12 +56,35 @@ public class M2AwareStatisticalSummary implements Serializable {
         this.min = min;
         this.sum = sum;
         this.m2 = m2;
+        this.histogram = histogram;
+        this.concurrencyDistribution = concurrencyDistribution;
     }
 
     public M2AwareStatisticalSummary(final Map<String, Object> data) {
         this(toDouble(data.get("mean")), toDouble(data.get("variance")), toLong(data.get("hits")),
             toDouble(data.get("max")), toDouble(data.get("min")), toDouble(data.get("sum")),
-            toDouble(data.get("m2")));
+            toDouble(data.get("m2")), toHistogram(data.get("histogram")),
+            toConcurrencyDistribution(data.get("concurrencyDistribution")));
+    }
+
+    private static ConcurrencyDistribution toConcurrencyDistribution(final Object distribution) {
+        if (distribution == null) {
+            return null;
+        }
+        if (String.class.isInstance(distribution)) {
+            return ConcurrencyDistribution.fromCompactString(String.class.cast(distribution));
+        }
+        throw new IllegalArgumentException(distribution + " not supported");
+    }
+
+    private static Histogram toHistogram(final Object histogram) {
+        if (histogram == null) {
+            return null;
+        }
+        if (String.class.isInstance(histogram)) {
+            return Histogram.fromCompactString(String.class.cast(histogram));
+        }
+        throw new IllegalArgumentException(histogram + " not supported");
     }
 
     private static double toDouble(final Object mean) {
@@ -93,4 +134,12 @@ public class M2AwareStatisticalSummary implements Serializable {
     public double getSum() {
         return sum;
     }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public ConcurrencyDistribution getConcurrencyDistribution() {
+        return concurrencyDistribution;
+    }
 }
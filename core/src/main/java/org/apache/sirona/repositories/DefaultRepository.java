@@ -19,35 +19,52 @@ package org.apache.sirona.repositories;
 import org.apache.sirona.Role;
 import org.apache.sirona.SironaException;
 import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Destroying;
 import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.counters.ConcurrencyTracker;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
+import org.apache.sirona.counters.Unit;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.gauges.GaugeAware;
 import org.apache.sirona.gauges.jvm.ActiveThreadGauge;
+import org.apache.sirona.gauges.jvm.AllocationRateGauge;
 import org.apache.sirona.gauges.jvm.CPUGauge;
+import org.apache.sirona.gauges.jvm.GCTimeGauge;
+import org.apache.sirona.gauges.jvm.GarbageCollectionGauge;
+import org.apache.sirona.gauges.jvm.PromotionRateGauge;
 import org.apache.sirona.gauges.jvm.UsedMemoryGauge;
 import org.apache.sirona.gauges.jvm.UsedNonHeapMemoryGauge;
 import org.apache.sirona.status.NodeStatus;
+import org.apache.sirona.stopwatches.Clocks;
 import org.apache.sirona.stopwatches.CounterStopWatch;
+import org.apache.sirona.stopwatches.ResourceUsage;
 import org.apache.sirona.stopwatches.StopWatch;
 import org.apache.sirona.store.DataStoreFactory;
 import org.apache.sirona.store.counter.CollectorCounterStore;
 import org.apache.sirona.store.counter.CounterDataStore;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
 import org.apache.sirona.store.gauge.CollectorGaugeDataStore;
 import org.apache.sirona.store.gauge.CommonGaugeDataStore;
 import org.apache.sirona.store.gauge.GaugeDataStore;
 import org.apache.sirona.store.gauge.GaugeValuesRequest;
 import org.apache.sirona.store.status.CollectorNodeStatusDataStore;
 import org.apache.sirona.store.status.NodeStatusDataStore;
+import org.apache.sirona.util.ExceptionFingerprints;
+import org.apache.sirona.util.SelfMonitoring;
 
 import java.util.Collection;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultRepository implements Repository {
     protected final CounterDataStore counterDataStore;
     protected final NodeStatusDataStore nodeStatusDataStore;
     protected final CommonGaugeDataStore gaugeDataStore;
+    protected final AtomicInteger generation = new AtomicInteger(); // incremented each time counters are cleared
+    protected final Collection<GarbageCollectionGauge> gcGauges = new CopyOnWriteArrayList<GarbageCollectionGauge>();
 
     public DefaultRepository() {
         this(findCounterDataStore(), findGaugeDataStore(), findStatusDataStore());
@@ -79,6 +96,19 @@ public class DefaultRepository implements Repository {
             addGauge(new UsedMemoryGauge());
             addGauge(new UsedNonHeapMemoryGauge());
             addGauge(new ActiveThreadGauge());
+            if (Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "core.gauge.gc.activated", true)) {
+                gcGauges.add(new AllocationRateGauge());
+                gcGauges.add(new PromotionRateGauge());
+                gcGauges.add(new GCTimeGauge());
+                for (final GarbageCollectionGauge gcGauge : gcGauges) {
+                    addGauge(gcGauge);
+                }
+            }
+        }
+        if (SelfMonitoring.ACTIVE) {
+            for (final Gauge selfGauge : SelfMonitoring.gauges()) {
+                addGauge(selfGauge);
+            }
         }
     }
 
@@ -140,6 +170,11 @@ public class DefaultRepository implements Repository {
         return counterDataStore.getOrCreateCounter(key);
     }
 
+    @Override
+    public CounterHandle handle(final Counter.Key key) {
+        return new RepositoryCounterHandle(this, key);
+    }
+
     @Override
     public Collection<Counter> counters() {
         return counterDataStore.getCounters();
@@ -148,6 +183,9 @@ public class DefaultRepository implements Repository {
     @Override
     public void clearCounters() {
         counterDataStore.clearCounters();
+        ExceptionFingerprints.clearSamples();
+        SelfMonitoring.reset();
+        generation.incrementAndGet(); // after clearing to not let a handle keep a removed counter
     }
 
     @Override
@@ -157,6 +195,19 @@ public class DefaultRepository implements Repository {
         for (final Role g : gauges()) {
             gaugeDataStore.gaugeStopped(g);
         }
+        releaseGcGauges();
+    }
+
+    @Destroying
+    public void shutdown() {
+        releaseGcGauges(); // the JVM would keep the GC listener and this classloader
+    }
+
+    private void releaseGcGauges() {
+        for (final GarbageCollectionGauge gauge : gcGauges) {
+            gauge.release();
+        }
+        gcGauges.clear();
     }
 
     @Override
@@ -164,6 +215,73 @@ public class DefaultRepository implements Repository {
         return new CounterStopWatch(monitor);
     }
 
+    @Override
+    public long startTimer(final Counter monitor) {
+        final long before = SelfMonitoring.ACTIVE ? System.nanoTime() : 0;
+
+        final int concurrency = monitor.currentConcurrency().incrementAndGet();
+        monitor.updateConcurrency(concurrency);
+        ConcurrencyTracker.track(monitor, concurrency);
+        final long start = Clocks.of(monitor.getKey().getRole()).nanoTime();
+        if (ResourceUsage.isActive(monitor.getKey().getRole())) {
+            ResourceUsage.begin(monitor, start);
+        }
+
+        if (SelfMonitoring.ACTIVE) {
+            SelfMonitoring.INVOCATION.add(System.nanoTime() - before, 0); // the hit is counted by stopTimer
+        }
+        return start;
+    }
+
+    @Override
+    public long stopTimer(final Counter monitor, final long startedAt) {
+        final long before = SelfMonitoring.ACTIVE ? System.nanoTime() : 0;
+        final long elapsed = Clocks.of(monitor.getKey().getRole()).nanoTime() - startedAt;
+        monitor.add(elapsed, Unit.Time.NANOSECOND);
+        ConcurrencyTracker.track(monitor, monitor.currentConcurrency().decrementAndGet());
+        if (ResourceUsage.isActive(monitor.getKey().getRole())) {
+            ResourceUsage.end(this, monitor, startedAt, 1);
+        }
+
+        if (SelfMonitoring.ACTIVE) {
+            SelfMonitoring.INVOCATION.add(System.nanoTime() - before, 1);
+        }
+        return elapsed;
+    }
+
+    @Override
+    public long stopTimer(final Counter monitor, final long startedAt, final long weight) {
+        if (weight == 1) {
+            return stopTimer(monitor, startedAt);
+        }
+
+        final long before = SelfMonitoring.ACTIVE ? System.nanoTime() : 0;
+        final long elapsed = Clocks.of(monitor.getKey().getRole()).nanoTime() - startedAt;
+        add(monitor, monitor.getKey().getRole().getUnit().convert(elapsed, Unit.Time.NANOSECOND), weight);
+        ConcurrencyTracker.track(monitor, monitor.currentConcurrency().decrementAndGet());
+        if (ResourceUsage.isActive(monitor.getKey().getRole())) {
+            ResourceUsage.end(this, monitor, startedAt, weight);
+        }
+
+        if (SelfMonitoring.ACTIVE) {
+            SelfMonitoring.INVOCATION.add(System.nanoTime() - before, 1);
+        }
+        return elapsed;
+    }
+
+    @Override
+    public void add(final Counter counter, final double delta, final long weight) {
+        if (weight == 1) {
+            counter.add(delta);
+        } else if (InMemoryCounterDataStore.class.isInstance(counterDataStore)) {
+            InMemoryCounterDataStore.class.cast(counterDataStore).addToCounter(counter, delta, weight);
+        } else {
+            for (long i = 0; i < weight; i++) {
+                counter.add(delta);
+            }
+        }
+    }
+
     @Override
     public SortedMap<Long, Double> getGaugeValues(final long start, final long end, final Role role) {
         return gaugeDataStore.getGaugeValues(new GaugeValuesRequest(start, end, role));
@@ -194,10 +312,56 @@ public class DefaultRepository implements Repository {
         if (GaugeDataStore.class.isInstance(gaugeDataStore)) {
             GaugeDataStore.class.cast(gaugeDataStore).gaugeStopped(gauge.role());
         }
+        if (GarbageCollectionGauge.class.isInstance(gauge)) {
+            GarbageCollectionGauge.class.cast(gauge).release();
+            gcGauges.remove(gauge);
+        }
     }
 
     @Override
     public Map<String, NodeStatus> statuses() {
         return nodeStatusDataStore.statuses();
     }
+
+    private static class RepositoryCounterHandle implements CounterHandle {
+        private final DefaultRepository repository;
+        private final Counter.Key key;
+        private volatile Resolution resolution = new Resolution(null, -1);
+
+        private RepositoryCounterHandle(final DefaultRepository repository, final Counter.Key key) {
+            this.repository = repository;
+            this.key = key;
+        }
+
+        @Override
+        public Counter.Key getKey() {
+            return key;
+        }
+
+        @Override
+        public Counter get() {
+            final int current = repository.generation.get(); // read before resolving to re-resolve if cleared meanwhile
+            Resolution r = resolution;
+            if (r.generation != current) {
+                r = new Resolution(repository.getCounter(key), current);
+                resolution = r;
+            }
+            return r.counter;
+        }
+
+        @Override
+        public String toString() {
+            return "CounterHandle{key=" + key + '}';
+        }
+    }
+
+    private static class Resolution { // counter and generation are updated together
+        private final Counter counter;
+        private final int generation;
+
+        private Resolution(final Counter counter, final int generation) {
+            this.counter = counter;
+            this.generation = generation;
+        }
+    }
 }
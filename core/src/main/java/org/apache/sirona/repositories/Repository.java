@@ -20,6 +20,7 @@ package org.apache.sirona.repositories;
 import org.apache.sirona.Role;
 import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.status.NodeStatus;
 import org.apache.sirona.stopwatches.StopWatch;
@@ -33,6 +34,8 @@ public interface Repository {
 
     Counter getCounter(Counter.Key key);
 
+    CounterHandle handle(Counter.Key key);
+
     Collection<Counter> counters();
 
     void clearCounters();
@@ -41,6 +44,15 @@ public interface Repository {
 
     StopWatch start(Counter counter);
 
+    // allocation free alternative to start(): startTimer() returns the start time to give back to stopTimer()
+    long startTimer(Counter counter);
+
+    long stopTimer(Counter counter, long startedAt); // returns the elapsed time in ns
+
+    long stopTimer(Counter counter, long startedAt, long weight); // same but the measure stands for weight invocations (sampling)
+
+    void add(Counter counter, double delta, long weight); // adds weight times delta without looping
+
     void addGauge(final Gauge gauge);
 
     void stopGauge(Gauge role);
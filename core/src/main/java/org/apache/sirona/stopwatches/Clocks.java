@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.SironaException;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.util.ClassLoaders;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the clock of a role:
+ *
+ * org.apache.sirona.clock = nano (default), coarse, tick or a Clock class name
+ * org.apache.sirona.clock.&lt;role&gt; = same values, overrides the default for a role (performances for instance)
+ * org.apache.sirona.clock.resolution = update period of coarse and tick clocks in ns (1ms by default)
+ */
+public final class Clocks {
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private static final String KEY = Configuration.CONFIG_PROPERTY_PREFIX + "clock";
+    private static final String DEFAULT = Configuration.getProperty(KEY, "nano");
+
+    private static final ConcurrentMap<String, Clock> CLOCKS = new ConcurrentHashMap<String, Clock>();
+
+    public static Clock of(final Role role) {
+        final Clock clock = CLOCKS.get(role.getName());
+        if (clock != null) {
+            return clock;
+        }
+
+        final Clock newClock = create(Configuration.getProperty(KEY + '.' + role.getName(), DEFAULT));
+        final Clock existing = CLOCKS.putIfAbsent(role.getName(), newClock);
+        if (existing != null) {
+            return existing;
+        }
+        return newClock;
+    }
+
+    private static Clock create(final String name) {
+        if ("nano".equalsIgnoreCase(name)) {
+            return SYSTEM;
+        }
+        if ("coarse".equalsIgnoreCase(name)) {
+            return IoCs.findOrCreateInstance(CoarseClock.class);
+        }
+        if ("tick".equalsIgnoreCase(name)) {
+            return IoCs.findOrCreateInstance(TickClock.class);
+        }
+
+        try {
+            return Clock.class.cast(IoCs.findOrCreateInstance(ClassLoaders.current().loadClass(name.trim())));
+        } catch (final ClassNotFoundException e) {
+            throw new SironaException(e);
+        }
+    }
+
+    private Clocks() {
+        // no-op
+    }
+}
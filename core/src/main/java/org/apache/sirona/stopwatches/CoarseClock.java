@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Created;
+import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.util.DaemonThreadFactory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock read by a background thread every resolution ns, reading it is a volatile read.
+ *
+ * Short invocations mainly measure 0 or one resolution but the mean over a lot of them stays right.
+ */
+public class CoarseClock implements Clock {
+    protected final long resolution;
+    protected volatile long time = System.nanoTime();
+    private volatile boolean running = false;
+    private Thread updater = null;
+
+    public CoarseClock() {
+        this(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "clock.resolution", 1000000));
+    }
+
+    public CoarseClock(final long resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution should be positive");
+        }
+        this.resolution = resolution;
+    }
+
+    @Created
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        updater = new DaemonThreadFactory("sirona-" + getClass().getSimpleName().toLowerCase() + "-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    LockSupport.parkNanos(resolution);
+                    tick();
+                }
+            }
+        });
+        updater.start();
+    }
+
+    protected void tick() { // only called by the updater thread
+        time = System.nanoTime();
+    }
+
+    @Override
+    public long nanoTime() {
+        return time;
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    @Destroying
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(updater);
+        updater = null;
+    }
+}
@@ -16,7 +16,10 @@
  */
 package org.apache.sirona.stopwatches;
 
+import org.apache.sirona.counters.ConcurrencyTracker;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.repositories.Repository;
+import org.apache.sirona.util.SelfMonitoring;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -24,22 +27,45 @@ import static org.apache.sirona.counters.Unit.Time.NANOSECOND;
 
 public class CounterStopWatch implements StopWatch {
     protected final Counter counter;
+    protected final Clock clock;
     protected final long startedAt;
     protected final AtomicInteger concurrencyCounter;
     protected long stopedAt;
     protected boolean stoped;
+    protected long overhead; // only computed with self monitoring
+    protected final Thread thread; // null if resource usage is not measured for this role
+    protected final long cpuAtStart;
+    protected final long allocatedAtStart;
 
     public CounterStopWatch(final Counter counter) {
+        final long before = SelfMonitoring.ACTIVE ? System.nanoTime() : 0;
+
         this.counter = counter;
+        this.clock = Clocks.of(counter.getKey().getRole());
         startedAt = nanotime();
 
+        if (ResourceUsage.isActive(counter.getKey().getRole())) {
+            thread = Thread.currentThread();
+            cpuAtStart = ResourceUsage.cpuTime();
+            allocatedAtStart = ResourceUsage.allocatedBytes();
+        } else {
+            thread = null;
+            cpuAtStart = -1;
+            allocatedAtStart = -1;
+        }
+
         concurrencyCounter = counter.currentConcurrency();
         final int concurrency = concurrencyCounter.incrementAndGet();
         counter.updateConcurrency(concurrency);
+        ConcurrencyTracker.track(counter, concurrency);
+
+        if (SelfMonitoring.ACTIVE) {
+            overhead = System.nanoTime() - before;
+        }
     }
 
     protected long nanotime() {
-        return System.nanoTime();
+        return clock.nanoTime();
     }
 
     @Override
@@ -61,8 +87,17 @@ public class CounterStopWatch implements StopWatch {
     }
 
     protected void doStop() {
+        final long start = SelfMonitoring.ACTIVE ? System.nanoTime() : 0;
+
         counter.add(getElapsedTime(), NANOSECOND);
-        concurrencyCounter.decrementAndGet();
+        ConcurrencyTracker.track(counter, concurrencyCounter.decrementAndGet());
+        if (thread == Thread.currentThread()) { // thread figures are meaningless if stopped elsewhere
+            ResourceUsage.record(Repository.INSTANCE, counter, cpuAtStart, allocatedAtStart, 1);
+        }
+
+        if (SelfMonitoring.ACTIVE) {
+            SelfMonitoring.INVOCATION.add(overhead + System.nanoTime() - start, 1);
+        }
     }
 
     @Override
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterHandle;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.repositories.Repository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Optionally measures the CPU time and the bytes allocated by the current thread during
+ * an invocation. They feed sibling counters with the same name under the &lt;role&gt;-cpu
+ * and &lt;role&gt;-alloc roles:
+ *
+ * org.apache.sirona.resource-usage = false (default), activates it for all roles
+ * org.apache.sirona.resource-usage.&lt;role&gt; = overrides the default for a role (web for instance)
+ * org.apache.sirona.resource-usage.max-cached-keys = 10000 (default), counters whose sibling handles are kept
+ *
+ * Allocated bytes rely on com.sun.management.ThreadMXBean and are skipped when it is not available.
+ */
+public final class ResourceUsage {
+    private static final String KEY = Configuration.CONFIG_PROPERTY_PREFIX + "resource-usage";
+    private static final boolean DEFAULT = Configuration.is(KEY, false);
+
+    private static final int MAX_DEPTH = 64; // unbalanced startTimer() calls are dropped past it
+    private static final int FRAME = 3; // start, cpu, allocated bytes
+    private static final int MAX_CACHED_KEYS = Configuration.getInteger(KEY + ".max-cached-keys", 10000);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU = initCpu();
+    private static final boolean ALLOCATIONS = Allocations.AVAILABLE;
+
+    private static final ConcurrentMap<String, Boolean> ACTIVATIONS = new ConcurrentHashMap<String, Boolean>();
+    private static final ConcurrentMap<Role, Role[]> SIBLINGS = new ConcurrentHashMap<Role, Role[]>();
+    private static final ConcurrentMap<Counter.Key, SiblingHandles> HANDLES = new ConcurrentHashMap<Counter.Key, SiblingHandles>();
+
+    // frames of the running startTimer() of the thread, the timer API has no object to hold them.
+    // Removed when the last timer stops to not keep a sirona class in pooled threads (redeployments).
+    private static final ThreadLocal<Frames> FRAMES = new ThreadLocal<Frames>();
+
+    public static boolean isActive(final Role role) {
+        final Boolean active = ACTIVATIONS.get(role.getName());
+        if (active != null) {
+            return active;
+        }
+
+        final boolean newActive = (CPU || ALLOCATIONS) && Configuration.is(KEY + '.' + role.getName(), DEFAULT);
+        ACTIVATIONS.putIfAbsent(role.getName(), newActive);
+        return newActive;
+    }
+
+    public static Role cpuRole(final Role role) {
+        return siblings(role)[0];
+    }
+
+    public static Role allocationRole(final Role role) {
+        return siblings(role)[1];
+    }
+
+    public static long cpuTime() {
+        return CPU ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    public static long allocatedBytes() {
+        return ALLOCATIONS ? Allocations.current() : -1;
+    }
+
+    // called by Repository.startTimer()
+    public static void begin(final Counter counter, final long startedAt) {
+        Frames frames = FRAMES.get();
+        if (frames == null) {
+            frames = new Frames();
+            FRAMES.set(frames);
+        }
+        frames.push(counter, startedAt, cpuTime(), allocatedBytes());
+    }
+
+    // called by Repository.stopTimer(), no-op if the timer was started by another thread
+    public static void end(final Repository repository, final Counter counter, final long startedAt, final long weight) {
+        final Frames frames = FRAMES.get();
+        if (frames == null) {
+            return;
+        }
+
+        final int idx = frames.pop(counter, startedAt);
+        if (frames.size == 0) {
+            FRAMES.remove();
+        }
+        if (idx >= 0) {
+            record(repository, counter, frames.values[idx + 1], frames.values[idx + 2], weight);
+        }
+    }
+
+    // test hook
+    static boolean hasFrames() {
+        return FRAMES.get() != null;
+    }
+
+    public static void record(final Repository repository, final Counter counter, final long cpuAtStart, final long allocatedAtStart, final long weight) {
+        final SiblingHandles handles = handles(repository, counter.getKey());
+        if (cpuAtStart >= 0) {
+            final double cpu = cpuTime() - cpuAtStart;
+            repository.add(handles.cpu.get(), cpu, weight);
+        }
+        if (allocatedAtStart >= 0) {
+            final double allocated = allocatedBytes() - allocatedAtStart;
+            repository.add(handles.allocated.get(), allocated, weight);
+        }
+    }
+
+    private static SiblingHandles handles(final Repository repository, final Counter.Key key) {
+        final SiblingHandles handles = HANDLES.get(key);
+        if (handles != null && handles.repository == repository) {
+            return handles;
+        }
+
+        final Role[] roles = siblings(key.getRole());
+        final SiblingHandles newHandles = new SiblingHandles(repository,
+            repository.handle(new Counter.Key(roles[0], key.getName())),
+            repository.handle(new Counter.Key(roles[1], key.getName())));
+        if (handles == null && HANDLES.size() < MAX_CACHED_KEYS) { // don't grow with dynamic names
+            HANDLES.putIfAbsent(key, newHandles);
+        }
+        return newHandles;
+    }
+
+    private static Role[] siblings(final Role role) {
+        final Role[] roles = SIBLINGS.get(role);
+        if (roles != null) {
+            return roles;
+        }
+
+        final Role[] newRoles = new Role[] {
+            new Role(role.getName() + "-cpu", Unit.Time.NANOSECOND),
+            new Role(role.getName() + "-alloc", Unit.Binary.BYTE)
+        };
+        final Role[] existing = SIBLINGS.putIfAbsent(role, newRoles);
+        if (existing != null) {
+            return existing;
+        }
+        return newRoles;
+    }
+
+    private static boolean initCpu() {
+        try {
+            if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+                return false;
+            }
+            if (!THREADS.isThreadCpuTimeEnabled()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            return true;
+        } catch (final RuntimeException e) { // UnsupportedOperationException, SecurityException
+            return false;
+        }
+    }
+
+    private static class SiblingHandles {
+        private final Repository repository;
+        private final CounterHandle cpu;
+        private final CounterHandle allocated;
+
+        private SiblingHandles(final Repository repository, final CounterHandle cpu, final CounterHandle allocated) {
+            this.repository = repository;
+            this.cpu = cpu;
+            this.allocated = allocated;
+        }
+    }
+
+    private static class Frames {
+        private static final int INITIAL_DEPTH = 4;
+
+        private long[] values = new long[INITIAL_DEPTH * FRAME];
+        private Counter[] counters = new Counter[INITIAL_DEPTH]; // with the start, identifies the timer of a frame
+        private int size = 0;
+
+        private void push(final Counter counter, final long startedAt, final long cpu, final long allocated) {
+            if (size == values.length) {
+                if (counters.length == MAX_DEPTH) {
+                    return;
+                }
+                final int depth = Math.min(MAX_DEPTH, counters.length * 2);
+                values = Arrays.copyOf(values, depth * FRAME);
+                counters = Arrays.copyOf(counters, depth);
+            }
+            counters[size / FRAME] = counter;
+            values[size] = startedAt;
+            values[size + 1] = cpu;
+            values[size + 2] = allocated;
+            size += FRAME;
+        }
+
+        // drops the frames of timers never stopped above the matching one,
+        // the counter avoids taking the frame of another timer started in the same clock tick
+        private int pop(final Counter counter, final long startedAt) {
+            for (int i = size - FRAME; i >= 0; i -= FRAME) {
+                if (values[i] == startedAt && counters[i / FRAME] == counter) {
+                    for (int j = i / FRAME; j < size / FRAME; j++) {
+                        counters[j] = null; // don't keep cleared counters
+                    }
+                    size = i;
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // only loaded when the HotSpot extension of ThreadMXBean is there
+    private static class Allocations {
+        private static final boolean AVAILABLE = init();
+
+        private static boolean init() {
+            try {
+                return HotSpot.init();
+            } catch (final Throwable t) { // NoClassDefFoundError on other JVMs
+                return false;
+            }
+        }
+
+        private static long current() {
+            return HotSpot.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    private static class HotSpot {
+        private static final com.sun.management.ThreadMXBean BEAN = com.sun.management.ThreadMXBean.class.cast(THREADS);
+
+        private static boolean init() {
+            if (!BEAN.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+            if (!BEAN.isThreadAllocatedMemoryEnabled()) {
+                BEAN.setThreadAllocatedMemoryEnabled(true);
+            }
+            return true;
+        }
+    }
+
+    private ResourceUsage() {
+        // no-op
+    }
+}
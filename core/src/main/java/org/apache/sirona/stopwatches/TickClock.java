@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+/**
+ * A tick counter: the background thread never reads the system clock, it just adds
+ * the resolution at each wake up. Cheaper than CoarseClock but durations are underestimated
+ * when the updater thread is late (loaded machine).
+ */
+public class TickClock extends CoarseClock {
+    public TickClock() {
+        super();
+    }
+
+    public TickClock(final long resolution) {
+        super(resolution);
+    }
+
+    @Override
+    protected void tick() {
+        time += resolution; // single writer
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.sirona.store.counter;
 
 import org.apache.sirona.counters.AggregatedCounter;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
 import org.apache.sirona.math.Aggregators;
 
 import java.util.Collection;
@@ -26,8 +27,14 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 
+/**
+ * Statistics are aggregated lazily: leaf updates only flag the counter as dirty
+ * and the next read merges the leaves once whatever the number of updates was.
+ * Concurrency is maintained incrementally to not lose the max between two reads.
+ */
 public class AggregatedCollectorCounter extends CollectorCounter implements AggregatedCounter {
     private final ConcurrentMap<String, LeafCollectorCounter> aggregation = new ConcurrentHashMap<String, LeafCollectorCounter>(50);
+    private volatile boolean dirty = false;
 
     public AggregatedCollectorCounter(final Key key) {
         super(key);
@@ -39,10 +46,12 @@ public class AggregatedCollectorCounter extends CollectorCounter implements Aggr
         update();
     }
 
+    // full recomputation, for stores not tracking concurrency deltas
     public void update() {
         final Lock workLock = lock.writeLock();
         workLock.lock();
         try {
+            dirty = false;
             final Collection<LeafCollectorCounter> counters = aggregation.values();
             statistics = Aggregators.aggregate(counters);
             concurrency.set(computeConcurrency(counters));
@@ -52,8 +61,47 @@ public class AggregatedCollectorCounter extends CollectorCounter implements Aggr
         }
     }
 
+    // O(1) whatever the number of markers is
+    public void update(final int concurrencyDelta) {
+        if (concurrencyDelta != 0) {
+            updateConcurrency(concurrency.addAndGet(concurrencyDelta));
+        }
+        dirty = true;
+    }
+
     public void addIfMissing(final String marker, final LeafCollectorCounter counter) {
-        aggregation.putIfAbsent(marker, counter);
+        if (aggregation.putIfAbsent(marker, counter) == null) {
+            dirty = true;
+        }
+    }
+
+    @Override
+    protected Lock readLock() {
+        if (dirty) {
+            aggregate();
+        }
+        return super.readLock();
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() {
+        if (dirty) {
+            aggregate();
+        }
+        return super.snapshotAndReset();
+    }
+
+    private void aggregate() {
+        final Lock workLock = lock.writeLock();
+        workLock.lock();
+        try {
+            if (dirty) {
+                dirty = false; // before reading the leaves, an update during the merge flags it again
+                statistics = Aggregators.aggregate(aggregation.values());
+            }
+        } finally {
+            workLock.unlock();
+        }
     }
 
     private static int computeConcurrency(final Collection<LeafCollectorCounter> counters) {
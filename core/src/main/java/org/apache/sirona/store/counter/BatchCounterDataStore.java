@@ -18,54 +18,131 @@ package org.apache.sirona.store.counter;
 
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.DefaultCounter;
+import org.apache.sirona.counters.Histogram;
+import org.apache.sirona.counters.OptimizedStatistics;
+import org.apache.sirona.counters.WindowedCounter;
 import org.apache.sirona.repositories.Repository;
-import org.apache.sirona.store.BatchFuture;
-import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.util.PushExecutor;
+import org.apache.sirona.util.SelfMonitoring;
+import org.apache.sirona.util.TimerWheel;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Locale;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+// pushes are triggered by the shared TimerWheel and run on the shared PushExecutor
 public abstract class BatchCounterDataStore extends InMemoryCounterDataStore {
     private static final Logger LOGGER = Logger.getLogger(BatchCounterDataStore.class.getName());
 
-    protected final BatchFuture scheduledTask;
+    protected final TimerWheel.Task scheduledTask;
+    protected final PushExecutor.Push push;
     protected final boolean clearAfterCollect;
+    protected final long window;
+    protected final String name;
+    private Collection<Counter> unpushed = null; // clearOnCollect snapshots of a failed push, only used by the push task
 
     protected BatchCounterDataStore() {
-        final String name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("counterdatastore", "");
+        name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("counterdatastore", "");
         final String prefix = Configuration.CONFIG_PROPERTY_PREFIX + name;
         final long period = getPeriod(prefix);
         clearAfterCollect = isClearAfterCollect(prefix);
+        window = getWindow(prefix);
 
-        final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + "-counter-schedule-"));
-        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new BatchPushCountersTask(), period, period, TimeUnit.MILLISECONDS);
-        scheduledTask = new BatchFuture(ses, future);
+        push = IoCs.findOrCreateInstance(PushExecutor.class).periodic(new BatchPushCountersTask());
+        scheduledTask = IoCs.findOrCreateInstance(TimerWheel.class).schedule(push, period);
     }
 
     protected boolean isClearAfterCollect(final String prefix) {
         return Configuration.is(prefix + ".counter.clearOnCollect", false);
     }
 
+    // > 0 to push the last window (in ms) of windowed counters instead of their cumulative values
+    protected long getWindow(final String prefix) {
+        return Configuration.getInteger(prefix + ".counter.window", 0);
+    }
+
     protected int getPeriod(final String prefix) {
         return Configuration.getInteger(prefix + ".counter.period", Configuration.getInteger(prefix + ".period", 60000));
     }
 
     @Destroying
     public void shutdown() {
-        scheduledTask.done();
+        scheduledTask.cancel();
+        push.await(TimeUnit.MINUTES.toMillis(1));
     }
 
-    protected void clearCountersIfNeeded(final Repository instance) {
-        if (clearAfterCollect) {
-            instance.clearCounters();
+    // one consistent view per counter, with clearOnCollect counters are reset atomically instead of being cleared after the push
+    // and the ones without hits in the interval are removed, as clearing did, to not keep dynamic names forever
+    protected Collection<Counter> snapshot(final Repository instance) {
+        final Collection<Counter> counters = WindowedCounter.window(instance.counters(), window);
+        if (!clearAfterCollect) {
+            return CounterSnapshot.of(counters, false);
         }
+
+        final Collection<Counter> snapshots = new ArrayList<Counter>(counters.size());
+        for (final Counter counter : counters) {
+            if (CounterSnapshot.class.isInstance(counter)) {
+                snapshots.add(counter);
+                continue;
+            }
+
+            final CounterSnapshot snapshot = counter.snapshotAndReset();
+            if (snapshot.getHits() > 0) {
+                snapshots.add(snapshot);
+            } else if (DefaultCounter.class.isInstance(counter)) {
+                final CounterDataStore store = DefaultCounter.class.cast(counter).getDataStore();
+                if (InMemoryCounterDataStore.class.isInstance(store) && InMemoryCounterDataStore.class.cast(store).removeCounter(counter)) {
+                    final CounterSnapshot late = counter.snapshotAndReset(); // added before it was marked as removed
+                    if (late.getHits() > 0) {
+                        snapshots.add(late);
+                    }
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    // counters are already reset so when pushCountersByBatch throws the snapshots are merged in the next push,
+    // stores logging their own failures (and returning) lose the interval and batched pushes can resend a part
+    private Collection<Counter> withUnpushed(final Collection<Counter> counters) {
+        if (unpushed == null) {
+            return counters;
+        }
+
+        final Map<Counter.Key, Counter> previous = new HashMap<Counter.Key, Counter>(unpushed.size());
+        for (final Counter counter : unpushed) {
+            previous.put(counter.getKey(), counter);
+        }
+
+        final Collection<Counter> merged = new ArrayList<Counter>(counters.size() + previous.size());
+        for (final Counter counter : counters) {
+            final Counter old = previous.remove(counter.getKey());
+            if (old != null && CounterSnapshot.class.isInstance(old) && CounterSnapshot.class.isInstance(counter)) {
+                merged.add(merge(CounterSnapshot.class.cast(old), CounterSnapshot.class.cast(counter)));
+            } else {
+                merged.add(counter);
+            }
+        }
+        merged.addAll(previous.values());
+        return merged;
+    }
+
+    private static Counter merge(final CounterSnapshot previous, final CounterSnapshot current) {
+        final OptimizedStatistics statistics = previous.getStatistics();
+        statistics.merge(current.getStatistics());
+        final Histogram histogram = previous.getHistogram();
+        histogram.merge(current.getHistogram());
+        return new CounterSnapshot(current.getKey(), statistics, histogram, current.currentConcurrency().get(),
+            Math.max(previous.getMaxConcurrency(), current.getMaxConcurrency()), current.getConcurrencyDistribution());
     }
 
     protected abstract void pushCountersByBatch(final Collection<Counter> instance);
@@ -73,12 +150,25 @@ public abstract class BatchCounterDataStore extends InMemoryCounterDataStore {
     private class BatchPushCountersTask implements Runnable {
         @Override
         public void run() {
+            SelfMonitoring.PENDING_PUSHES.incrementAndGet();
+            final long start = System.nanoTime();
+            Collection<Counter> counters = null;
             try {
-                final Repository instance = Repository.INSTANCE;
-                pushCountersByBatch(instance.counters());
-                clearCountersIfNeeded(instance);
+                counters = snapshot(Repository.INSTANCE);
+                if (clearAfterCollect) {
+                    counters = withUnpushed(counters);
+                }
+                pushCountersByBatch(counters);
+                unpushed = null;
+                SelfMonitoring.record(SelfMonitoring.ITEMS, name + "-counters-push", counters.size());
             } catch (final Exception e) {
+                if (clearAfterCollect && counters != null) {
+                    unpushed = counters;
+                }
                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            } finally {
+                SelfMonitoring.record(SelfMonitoring.DURATION, name + "-counters-push", System.nanoTime() - start);
+                SelfMonitoring.PENDING_PUSHES.decrementAndGet();
             }
         }
     }
@@ -17,7 +17,11 @@
 package org.apache.sirona.store.counter;
 
 import org.apache.sirona.math.M2AwareStatisticalSummary;
+import org.apache.sirona.counters.ConcurrencyDistribution;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.Histogram;
+import org.apache.sirona.counters.OptimizedStatistics;
 import org.apache.sirona.counters.Unit;
 
 import java.io.Serializable;
@@ -54,6 +58,11 @@ public abstract class CollectorCounter implements Counter, Serializable {
         }
     }
 
+    // hook for counters computing their statistics lazily, they can't do it under the read lock
+    protected Lock readLock() {
+        return lock.readLock();
+    }
+
     @Override
     public void add(final double delta) {
         // no-op: this counter is updated through update method
@@ -84,7 +93,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public int getMaxConcurrency() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return maxConcurrency;
@@ -95,7 +104,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getMax() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getMax();
@@ -106,7 +115,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getMin() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getMin();
@@ -117,7 +126,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public long getHits() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getN();
@@ -128,7 +137,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getSum() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getSum();
@@ -139,7 +148,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getStandardDeviation() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return Math.sqrt(statistics.getVariance());
@@ -150,7 +159,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getVariance() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getVariance();
@@ -161,7 +170,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getMean() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getMean();
@@ -172,7 +181,7 @@ public abstract class CollectorCounter implements Counter, Serializable {
 
     @Override
     public double getSecondMoment() {
-        final Lock workLock = lock.readLock();
+        final Lock workLock = readLock();
         workLock.lock();
         try {
             return statistics.getSecondMoment();
@@ -181,6 +190,91 @@ public abstract class CollectorCounter implements Counter, Serializable {
         }
     }
 
+    @Override
+    public double getPercentile(final double percentile) {
+        final Lock workLock = readLock();
+        workLock.lock();
+        try {
+            final Histogram histogram = statistics.getHistogram();
+            if (histogram == null) {
+                return Double.NaN;
+            }
+            return histogram.getPercentile(percentile, statistics.getMin(), statistics.getMax());
+        } finally {
+            workLock.unlock();
+        }
+    }
+
+    @Override
+    public Histogram getHistogram() {
+        final Lock workLock = readLock();
+        workLock.lock();
+        try {
+            final Histogram histogram = statistics.getHistogram();
+            if (histogram == null) {
+                return new Histogram();
+            }
+            return histogram.copy();
+        } finally {
+            workLock.unlock();
+        }
+    }
+
+    @Override
+    public ConcurrencyDistribution getConcurrencyDistribution() {
+        final Lock workLock = readLock();
+        workLock.lock();
+        try {
+            final ConcurrencyDistribution distribution = statistics == null ? null : statistics.getConcurrencyDistribution();
+            if (distribution == null) {
+                return ConcurrencyDistribution.EMPTY;
+            }
+            return distribution;
+        } finally {
+            workLock.unlock();
+        }
+    }
+
+    @Override
+    public CounterSnapshot snapshot() {
+        final Lock workLock = readLock();
+        workLock.lock();
+        try {
+            return newSnapshot();
+        } finally {
+            workLock.unlock();
+        }
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() {
+        final Lock workLock = lock.writeLock();
+        workLock.lock();
+        try {
+            final CounterSnapshot snapshot = newSnapshot();
+            reset();
+            return snapshot;
+        } finally {
+            workLock.unlock();
+        }
+    }
+
+    // statistics is immutable so only the reference and the concurrency need the lock
+    private CounterSnapshot newSnapshot() {
+        final M2AwareStatisticalSummary summary = statistics;
+        if (summary == null) {
+            return new CounterSnapshot(key, new OptimizedStatistics(), new Histogram(), concurrency.get(), maxConcurrency);
+        }
+
+        final Histogram histogram = summary.getHistogram();
+        final ConcurrencyDistribution concurrencyDistribution = summary.getConcurrencyDistribution();
+        return new CounterSnapshot(key,
+            new OptimizedStatistics(summary.getN(), summary.getSum(), summary.getMin(), summary.getMax(),
+                summary.getMean(), Double.NaN, Double.NaN, summary.getSecondMoment()),
+            histogram == null ? new Histogram() : histogram.copy(), concurrency.get(), maxConcurrency,
+            concurrencyDistribution == null ? ConcurrencyDistribution.EMPTY : concurrencyDistribution);
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -16,6 +16,7 @@
  */
 package org.apache.sirona.store.counter;
 
+import org.apache.sirona.Role;
 import org.apache.sirona.counters.Counter;
 import org.apache.sirona.math.M2AwareStatisticalSummary;
 
@@ -29,8 +30,8 @@ public class InMemoryCollectorCounterStore extends InMemoryCounterDataStore impl
 
     @Override
     public void update(final Counter.Key key, final String marker, final M2AwareStatisticalSummary stats, final int concurrency) {
-        getOrCreateCounter(key, marker).update(stats, concurrency);
-        getOrCreateCounter(key).update();
+        final int previousConcurrency = getOrCreateCounter(key, marker).swap(stats, concurrency);
+        getOrCreateCounter(key).update(concurrency - previousConcurrency);
     }
 
     @Override
@@ -75,6 +76,11 @@ public class InMemoryCollectorCounterStore extends InMemoryCounterDataStore impl
         return new AggregatedCollectorCounter(key);
     }
 
+    @Override
+    protected int getMaxCounters(final Role role) {
+        return 0; // agents bound their own counters, aggregates can't be redirected to an overflow counter
+    }
+
     @Override
     public AggregatedCollectorCounter getOrCreateCounter(final Counter.Key key) {
         return AggregatedCollectorCounter.class.cast(super.getOrCreateCounter(key));
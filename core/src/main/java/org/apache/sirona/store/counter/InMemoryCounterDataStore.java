@@ -16,44 +16,97 @@
  */
 package org.apache.sirona.store.counter;
 
+import org.apache.sirona.Role;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.Destroying;
 import org.apache.sirona.counters.Counter;
 import org.apache.sirona.counters.DefaultCounter;
 import org.apache.sirona.counters.MetricData;
-import org.apache.sirona.counters.OptimizedStatistics;
+import org.apache.sirona.counters.StripedCounter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.counters.WindowedCounter;
 import org.apache.sirona.counters.jmx.CounterJMX;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.gauges.counter.CounterGauge;
 import org.apache.sirona.repositories.Repository;
+import org.apache.sirona.util.SelfMonitoring;
 
 import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
 
 public class InMemoryCounterDataStore implements CounterDataStore {
+    public static final String OVERFLOW_COUNTER_NAME = "[overflow]";
+    public static final Role EVICTION_ROLE = new Role("sirona-counter-evictions", Unit.UNARY);
+
+    private static final Logger LOGGER = Logger.getLogger(InMemoryCounterDataStore.class.getName());
+    private static final long SWEEP_PERIOD = 1000;
+
     protected final boolean gauged = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.with-gauge", false);
     protected final boolean jmx = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.with-jmx", false);
+    protected final boolean striped = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.striped", false);
+    // windowed gauged counters don't need to be reset for each gauge value, off by default since each bucket costs memory
+    protected final int windowBuckets = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.window.buckets", 0);
+    protected final int windowBucketDuration = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.window.bucket-duration", 1000);
+
+    // 0 means unbounded, when bounded least recently updated counters (or the ones idle for max-idle ms) are evicted
+    // and keys which can't get a counter use the overflow counter of their role
+    protected final int maxCountersPerRole = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.max-per-role", 0);
+    protected final long maxIdle = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.max-idle", 0);
 
     protected final ConcurrentMap<Counter.Key, Counter> counters = newCounterMap();
+    protected final ConcurrentMap<Role, RoleCounters> roleCounters = new ConcurrentHashMap<Role, RoleCounters>();
+    private final ConcurrentMap<Role, Integer> maxCounters = new ConcurrentHashMap<Role, Integer>(); // survives clearCounters()
+    protected final AtomicBoolean bounded = new AtomicBoolean(false); // true once a role is bounded, triggers last update tracking
+    protected final EvictionGauge evictionGauge = new EvictionGauge();
     protected final Collection<Gauge> gauges = new LinkedList<Gauge>();
     protected final ReadWriteLock stateLock = new ReentrantReadWriteLock(); // this lock ensures consistency between createcounter and clearcounters
 
+    public InMemoryCounterDataStore() {
+        if (striped && windowBuckets > 0) {
+            LOGGER.warning("counter.striped is ignored since counter.window.buckets is set, counters will be windowed");
+        }
+    }
+
     protected ConcurrentMap<Counter.Key, Counter> newCounterMap() {
         return new ConcurrentHashMap<Counter.Key, Counter>(50);
     }
 
     protected Counter newCounter(final Counter.Key key) {
+        if (windowBuckets > 0) {
+            return new WindowedCounter(key, this, windowBuckets, windowBucketDuration);
+        }
+        if (isStriped(key.getRole())) {
+            return new StripedCounter(key, this);
+        }
         return new DefaultCounter(key, this);
     }
 
+    // per role override: counter.striped.<role>
+    protected boolean isStriped(final Role role) {
+        return Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "counter.striped." + role.getName(), striped);
+    }
+
+    // per role override: counter.max-per-role.<role>
+    protected int getMaxCounters(final Role role) {
+        return Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.max-per-role." + role.getName(), maxCountersPerRole);
+    }
+
     @Override
     public Counter getOrCreateCounter(final Counter.Key key) {
         Counter counter = counters.get(key);
@@ -61,12 +114,29 @@ public class InMemoryCounterDataStore implements CounterDataStore {
             final Lock lock = stateLock.readLock();
             lock.lock();
             try {
+                final RoleCounters roleState = findRoleCounters(key.getRole());
+                final boolean limited = roleState.max > 0 && !roleState.overflow.equals(key);
+                if (limited && !reserve(key.getRole(), roleState)) {
+                    return getOrCreateCounter(roleState.overflow);
+                }
+
                 counter = newCounter(key);
                 final Counter previous = counters.putIfAbsent(key, counter);
                 if (previous != null) {
                     counter = previous;
+                    if (limited) {
+                        roleState.size.decrementAndGet();
+                    }
                 } else { // new
-                    if (gauged) {
+                    if (limited && DefaultCounter.class.isInstance(counter)) {
+                        roleState.clock.add(new ClockEntry(DefaultCounter.class.cast(counter)));
+                    }
+                    if (gauged && WindowedCounter.class.isInstance(counter)) {
+                        final WindowedCounter windowedCounter = WindowedCounter.class.cast(counter);
+                        newGauge(new WindowedCounterGauge(windowedCounter, MetricData.Sum));
+                        newGauge(new WindowedCounterGauge(windowedCounter, MetricData.Max));
+                        newGauge(new WindowedCounterGauge(windowedCounter, MetricData.Hits));
+                    } else if (gauged) {
                         final Values values = new Values(counter);
                         newGauge(new SyncCounterGauge(counter, MetricData.Sum, values));
                         newGauge(new SyncCounterGauge(counter, MetricData.Max, values));
@@ -75,11 +145,10 @@ public class InMemoryCounterDataStore implements CounterDataStore {
                     if (jmx) {
                         final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
                         try {
-                            final ObjectName objectName = new ObjectName(
-                                Configuration.CONFIG_PROPERTY_PREFIX
-                                    + "counter:role=" + escapeJmx(key.getRole().getName())
-                                    + ",name=" + escapeJmx(key.getName()));
-                            DefaultCounter.class.cast(counter).setJmx(objectName);
+                            final ObjectName objectName = jmxName(key);
+                            if (DefaultCounter.class.isInstance(counter)) {
+                                DefaultCounter.class.cast(counter).setJmx(objectName);
+                            }
 
                             if (!server.isRegistered(objectName)) {
                                 server.registerMBean(new CounterJMX(counter), objectName);
@@ -96,6 +165,155 @@ public class InMemoryCounterDataStore implements CounterDataStore {
         return counter;
     }
 
+    private RoleCounters findRoleCounters(final Role role) {
+        RoleCounters state = roleCounters.get(role);
+        if (state == null) {
+            state = new RoleCounters(role, maxCounters(role));
+            final RoleCounters existing = roleCounters.putIfAbsent(role, state);
+            if (existing != null) {
+                state = existing;
+            } else if (state.max > 0 && bounded.compareAndSet(false, true)) {
+                newGauge(evictionGauge);
+            }
+        }
+        return state;
+    }
+
+    private int maxCounters(final Role role) {
+        Integer max = maxCounters.get(role);
+        if (max == null) {
+            max = getMaxCounters(role);
+            maxCounters.putIfAbsent(role, max);
+        }
+        return max;
+    }
+
+    private boolean reserve(final Role role, final RoleCounters state) {
+        boolean evicted = false;
+        do {
+            if (state.size.incrementAndGet() <= state.max) {
+                return true;
+            }
+            state.size.decrementAndGet();
+        } while (!evicted && (evicted = evict(role, state)));
+        return false;
+    }
+
+    // called with the state read lock, only the counters of the role are visited
+    protected boolean evict(final Role role, final RoleCounters state) {
+        if (maxIdle > 0) { // evict all idle counters but don't scan counters for each new key
+            final long now = System.currentTimeMillis();
+            if (now - state.lastSweep < SWEEP_PERIOD) {
+                return false;
+            }
+            state.lastSweep = now;
+
+            boolean evicted = false;
+            final Iterator<ClockEntry> it = state.clock.iterator();
+            while (it.hasNext()) {
+                final DefaultCounter counter = it.next().counter;
+                if (counter.isEvicted()) {
+                    it.remove();
+                } else if (now - counter.getLastUpdate() >= maxIdle && evict(state, counter)) {
+                    it.remove();
+                    evicted = true;
+                }
+            }
+            return evicted;
+        }
+
+        // CLOCK (second chance): counters updated since they were queued go back at the end with a new stamp,
+        // each update buys at most one more turn so it is amortized O(1) and doesn't depend on other roles
+        final int maxSteps = 2 * state.size.get() + 1; // after a full turn all stamps are fresh
+        for (int i = 0; i < maxSteps; i++) {
+            final ClockEntry entry = state.clock.poll();
+            if (entry == null) {
+                return false;
+            }
+
+            final DefaultCounter counter = entry.counter;
+            if (counter.isEvicted()) { // already removed
+                continue;
+            }
+            if (counter.getLastUpdate() > entry.stamp && i < maxSteps - 1) {
+                state.clock.add(new ClockEntry(counter));
+                continue;
+            }
+            if (evict(state, counter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean evict(final RoleCounters state, final Counter counter) {
+        if (!remove(state, counter)) {
+            return false;
+        }
+        evictionGauge.incr();
+        return true;
+    }
+
+    /**
+     * Removes a counter, it is created again if used later. Batch stores clearing after collect use it
+     * for counters without hits in the pushed interval so dynamic names don't stay forever.
+     *
+     * @return false if the counter was already removed.
+     */
+    public boolean removeCounter(final Counter counter) {
+        if (!DefaultCounter.class.isInstance(counter)) {
+            return false;
+        }
+
+        final Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            return remove(roleCounters.get(counter.getKey().getRole()), counter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean remove(final RoleCounters state, final Counter counter) {
+        if (!counters.remove(counter.getKey(), counter)) {
+            return false;
+        }
+
+        if (state != null && state.max > 0 && !state.overflow.equals(counter.getKey())) { // reserved ones
+            state.size.decrementAndGet();
+        }
+
+        final DefaultCounter defaultCounter = DefaultCounter.class.cast(counter);
+        defaultCounter.setEvicted(true); // next add() will go to the new counter for this key if any
+        if (jmx && defaultCounter.getJmx() != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(defaultCounter.getJmx());
+            } catch (final Exception e) {
+                // no-op
+            }
+        }
+        if (gauged) {
+            synchronized (gauges) {
+                final Iterator<Gauge> it = gauges.iterator();
+                while (it.hasNext()) {
+                    final Gauge gauge = it.next();
+                    if (CounterGauge.class.isInstance(gauge) && CounterGauge.class.cast(gauge).getCounter() == counter) {
+                        Repository.INSTANCE.stopGauge(gauge);
+                        it.remove();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static ObjectName jmxName(final Counter.Key key) throws MalformedObjectNameException {
+        return new ObjectName(
+            Configuration.CONFIG_PROPERTY_PREFIX
+                + "counter:role=" + escapeJmx(key.getRole().getName())
+                + ",name=" + escapeJmx(key.getName()));
+    }
+
     private static String escapeJmx(final String name) {
         return name.replace('=', '_').replace(',', '_');
     }
@@ -121,13 +339,15 @@ public class InMemoryCounterDataStore implements CounterDataStore {
                 final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
                 for (final Counter counter : counters.values()) {
                     try {
-                        server.unregisterMBean(DefaultCounter.class.cast(counter).getJmx());
+                        server.unregisterMBean(jmxName(counter.getKey()));
                     } catch (final Exception e) {
                         // no-op
                     }
                 }
             }
             counters.clear();
+            roleCounters.clear();
+            bounded.set(false);
 
             synchronized (gauges) {
                 for (final Gauge g : gauges) {
@@ -147,20 +367,109 @@ public class InMemoryCounterDataStore implements CounterDataStore {
 
     @Override
     public void addToCounter(final Counter counter, final double delta) {
+        addToCounter(counter, delta, 1);
+    }
+
+    // weight > 1 means delta stands for weight measures (sampling)
+    public void addToCounter(final Counter counter, final double delta, final long weight) {
+        if (!SelfMonitoring.ACTIVE) {
+            doAddToCounter(counter, delta, weight);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            doAddToCounter(counter, delta, weight);
+        } finally {
+            SelfMonitoring.ADD.add(System.nanoTime() - start, 1);
+        }
+    }
+
+    protected void doAddToCounter(final Counter counter, final double delta, final long weight) {
         if (!DefaultCounter.class.isInstance(counter)) {
             throw new IllegalArgumentException(getClass().getName() + " only supports " + DefaultCounter.class.getName());
         }
 
         final DefaultCounter defaultCounter = DefaultCounter.class.cast(counter);
+        if (defaultCounter.isEvicted()) { // an old reference, use the current counter
+            final Counter current = getOrCreateCounter(counter.getKey());
+            if (current != counter) {
+                doAddToCounter(current, delta, weight);
+            }
+            return;
+        }
+        if (bounded.get()) {
+            defaultCounter.setLastUpdate(System.currentTimeMillis());
+        }
+
+        if (StripedCounter.class.isInstance(counter)) { // already thread safe
+            StripedCounter.class.cast(counter).addInternal(delta, weight);
+            return;
+        }
+
         final Lock lock = defaultCounter.getLock().writeLock();
         lock.lock();
         try {
-            defaultCounter.addInternal(delta);
+            defaultCounter.addInternal(delta, weight);
         } finally {
             lock.unlock();
         }
     }
 
+    protected static class RoleCounters {
+        protected final Counter.Key overflow;
+        protected final int max;
+        protected final AtomicInteger size = new AtomicInteger(0);
+        protected final Queue<ClockEntry> clock = new ConcurrentLinkedQueue<ClockEntry>(); // eviction candidates
+        protected volatile long lastSweep = 0;
+
+        private RoleCounters(final Role role, final int max) {
+            this.overflow = new Counter.Key(role, OVERFLOW_COUNTER_NAME);
+            this.max = max;
+        }
+    }
+
+    protected static class ClockEntry {
+        protected final DefaultCounter counter;
+        protected final long stamp = System.currentTimeMillis(); // an update after it gives a second chance
+
+        private ClockEntry(final DefaultCounter counter) {
+            this.counter = counter;
+        }
+    }
+
+    // evictions since last read
+    protected static class EvictionGauge implements Gauge {
+        private final AtomicLong count = new AtomicLong(0);
+
+        @Override
+        public Role role() {
+            return EVICTION_ROLE;
+        }
+
+        @Override
+        public double value() {
+            return count.getAndSet(0);
+        }
+
+        public void incr() {
+            count.incrementAndGet();
+        }
+    }
+
+    // reads the whole window without touching the live counter
+    private static class WindowedCounterGauge extends CounterGauge {
+        private WindowedCounterGauge(final WindowedCounter counter, final MetricData metric) {
+            super(counter, metric);
+        }
+
+        @Override
+        public double value() {
+            final WindowedCounter windowedCounter = WindowedCounter.class.cast(counter);
+            return metric.value(windowedCounter.window(windowedCounter.getWindowDuration()));
+        }
+    }
+
     private static class SyncCounterGauge extends CounterGauge {
         private final Values values;
 
@@ -198,18 +507,10 @@ public class InMemoryCounterDataStore implements CounterDataStore {
 
         public synchronized void take() {
             if (called == 3 || called == -1) {
-                final DefaultCounter defaultCounter = DefaultCounter.class.cast(counter);
-                final Lock lock = defaultCounter.getLock().writeLock();
-                lock.lock();
-                try {
-                    final OptimizedStatistics statistics = defaultCounter.getStatistics();
-                    max = statistics.getMax();
-                    sum = statistics.getSum();
-                    hits = statistics.getN();
-                    counter.reset();
-                } finally {
-                    lock.unlock();
-                }
+                final Counter snapshot = counter.snapshotAndReset();
+                max = snapshot.getMax();
+                sum = snapshot.getSum();
+                hits = snapshot.getHits();
                 called = 0;
             }
             called++;
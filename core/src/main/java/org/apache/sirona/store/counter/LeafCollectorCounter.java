@@ -27,12 +27,18 @@ public class LeafCollectorCounter extends CollectorCounter {
     }
 
     public void update(final M2AwareStatisticalSummary newStats, final int newConcurrency) {
+        swap(newStats, newConcurrency);
+    }
+
+    // returns the previous concurrency so the aggregate can apply the delta instead of summing all markers
+    int swap(final M2AwareStatisticalSummary newStats, final int newConcurrency) {
         final Lock workLock = lock.writeLock();
         workLock.lock();
         try {
-            concurrency.set(newConcurrency);
+            final int previous = concurrency.getAndSet(newConcurrency);
             updateConcurrency(newConcurrency);
             statistics = newStats;
+            return previous;
         } finally {
             workLock.unlock();
         }
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.counter;
+
+import org.apache.sirona.counters.ConcurrencyDistribution;
+import org.apache.sirona.counters.ConcurrencyTracked;
+import org.apache.sirona.counters.ConcurrencyTracker;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.Histogram;
+import org.apache.sirona.counters.OptimizedStatistics;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.stopwatches.Clocks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apache.sirona.store.counter.MappedCounterDataStore.MAX;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.MAX_CONCURRENCY;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.MIN;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.M1;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.M2;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.N;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.SEQUENCE;
+import static org.apache.sirona.store.counter.MappedCounterDataStore.SUM;
+
+/**
+ * A counter whose statistics live in a slot of the file mapped by MappedCounterDataStore.
+ *
+ * Histograms are not kept (they are 4k per counter) so percentiles are not available.
+ */
+public class MappedCounter implements Counter, ConcurrencyTracked {
+    private final AtomicInteger concurrency = new AtomicInteger(0);
+    private final ConcurrencyTracker concurrencyTracker; // null if disabled
+    private final Key key;
+    private final CounterDataStore dataStore;
+    private final ByteBuffer buffer;
+    private final int offset;
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile int fence = 0; // only written for the barrier, see MappedCounterDataStore
+
+    public MappedCounter(final Key key, final CounterDataStore store, final ByteBuffer buffer, final int offset) {
+        this.key = key;
+        this.dataStore = store;
+        this.buffer = buffer;
+        this.offset = offset;
+        if (ConcurrencyTracker.ACTIVE) {
+            this.concurrencyTracker = new ConcurrencyTracker(Clocks.of(key.getRole()));
+        } else {
+            this.concurrencyTracker = null;
+        }
+    }
+
+    public void addInternal(final double value) { // should be called from a thread safe environment
+        addInternal(value, 1);
+    }
+
+    public void addInternal(final double value, final long weight) {
+        if (weight <= 0) {
+            return;
+        }
+
+        long n = buffer.getLong(offset + N);
+        double min = buffer.getDouble(offset + MIN);
+        double max = buffer.getDouble(offset + MAX);
+        double m1 = buffer.getDouble(offset + M1);
+        double m2 = buffer.getDouble(offset + M2);
+
+        // same computation as OptimizedStatistics
+        if (n == 0) {
+            m1 = 0.0;
+            m2 = 0.0;
+        }
+        if (value < min || Double.isNaN(min)) {
+            min = value;
+        }
+        if (value > max || Double.isNaN(max)) {
+            max = value;
+        }
+        final long oldN = n;
+        n += weight;
+        final double dev = value - m1;
+        m1 += dev * weight / n;
+        m2 += dev * dev * oldN * weight / n;
+
+        final long sequence = beginWrite();
+        buffer.putLong(offset + N, n);
+        buffer.putDouble(offset + SUM, buffer.getDouble(offset + SUM) + value * weight);
+        buffer.putDouble(offset + MIN, min);
+        buffer.putDouble(offset + MAX, max);
+        buffer.putDouble(offset + M1, m1);
+        buffer.putDouble(offset + M2, m2);
+        endWrite(sequence);
+    }
+
+    // an odd sequence means a write is in progress for readers outside of this JVM, callers hold the write lock
+    private long beginWrite() {
+        final long sequence = buffer.getLong(offset + SEQUENCE) + 1;
+        buffer.putLong(offset + SEQUENCE, sequence);
+        fence = 0; // data can't be visible before the odd sequence
+        return sequence;
+    }
+
+    private void endWrite(final long sequence) {
+        fence = 0; // nor the even sequence before the data
+        buffer.putLong(offset + SEQUENCE, sequence + 1);
+    }
+
+    @Override
+    public void updateConcurrency(final int concurrency) {
+        if (concurrency > buffer.getInt(offset + MAX_CONCURRENCY)) {
+            final Lock wl = lock.writeLock(); // rare, check again to not lose a higher value
+            wl.lock();
+            try {
+                if (concurrency > buffer.getInt(offset + MAX_CONCURRENCY)) {
+                    final long sequence = beginWrite();
+                    buffer.putInt(offset + MAX_CONCURRENCY, concurrency);
+                    endWrite(sequence);
+                }
+            } finally {
+                wl.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void trackConcurrency(final int concurrency) {
+        if (concurrencyTracker != null) {
+            concurrencyTracker.update(concurrency);
+        }
+    }
+
+    @Override
+    public ConcurrencyDistribution getConcurrencyDistribution() {
+        if (concurrencyTracker != null) {
+            return concurrencyTracker.distribution();
+        }
+        return ConcurrencyDistribution.EMPTY;
+    }
+
+    private ConcurrencyDistribution resetConcurrencyDistribution() {
+        if (concurrencyTracker != null) {
+            return concurrencyTracker.distributionAndReset();
+        }
+        return ConcurrencyDistribution.EMPTY;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return buffer.getInt(offset + MAX_CONCURRENCY);
+    }
+
+    @Override
+    public AtomicInteger currentConcurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public Key getKey() {
+        return key;
+    }
+
+    @Override
+    public void reset() {
+        final Lock wl = lock.writeLock();
+        wl.lock();
+        try {
+            final long sequence = beginWrite();
+            MappedCounterDataStore.clearSlot(buffer, offset);
+            endWrite(sequence);
+        } finally {
+            wl.unlock();
+        }
+        resetConcurrencyDistribution();
+        concurrency.set(0);
+        if (concurrencyTracker != null) {
+            concurrencyTracker.update(0);
+        }
+    }
+
+    @Override
+    public void add(final double delta) {
+        dataStore.addToCounter(this, delta);
+    }
+
+    @Override
+    public void add(final double delta, final Unit deltaUnit) {
+        add(key.getRole().getUnit().convert(delta, deltaUnit));
+    }
+
+    @Override
+    public double getMax() {
+        return read(MAX);
+    }
+
+    @Override
+    public double getMin() {
+        return read(MIN);
+    }
+
+    @Override
+    public double getSum() {
+        return read(SUM);
+    }
+
+    @Override
+    public double getMean() {
+        return read(M1);
+    }
+
+    @Override
+    public double getSecondMoment() {
+        return read(M2);
+    }
+
+    @Override
+    public long getHits() {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            return buffer.getLong(offset + N);
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public double getVariance() {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            final long n = buffer.getLong(offset + N);
+            if (n == 0) {
+                return Double.NaN;
+            } else if (n == 1) {
+                return 0;
+            }
+            return buffer.getDouble(offset + M2) / (n - 1);
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public double getStandardDeviation() {
+        final double variance = getVariance();
+        if (Double.isNaN(variance)) {
+            return Double.NaN;
+        }
+        return Math.sqrt(variance);
+    }
+
+    @Override
+    public double getPercentile(final double percentile) {
+        return Double.NaN;
+    }
+
+    @Override
+    public Histogram getHistogram() {
+        return new Histogram();
+    }
+
+    @Override
+    public CounterSnapshot snapshot() {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            return readSnapshot(getConcurrencyDistribution());
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public CounterSnapshot snapshotAndReset() {
+        final Lock wl = lock.writeLock();
+        wl.lock();
+        try {
+            final CounterSnapshot snapshot = readSnapshot(resetConcurrencyDistribution());
+            final long sequence = beginWrite();
+            MappedCounterDataStore.clearSlot(buffer, offset);
+            buffer.putInt(offset + MAX_CONCURRENCY, concurrency.get()); // next interval starts from the running invocations
+            endWrite(sequence);
+            return snapshot;
+        } finally {
+            wl.unlock();
+        }
+    }
+
+    private CounterSnapshot readSnapshot(final ConcurrencyDistribution concurrencyDistribution) {
+        final OptimizedStatistics statistics = new OptimizedStatistics(
+            buffer.getLong(offset + N), buffer.getDouble(offset + SUM),
+            buffer.getDouble(offset + MIN), buffer.getDouble(offset + MAX),
+            buffer.getDouble(offset + M1), Double.NaN, Double.NaN, buffer.getDouble(offset + M2));
+        return new CounterSnapshot(key, statistics, new Histogram(), concurrency.get(), buffer.getInt(offset + MAX_CONCURRENCY), concurrencyDistribution);
+    }
+
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    private double read(final int field) {
+        final Lock rl = lock.readLock();
+        rl.lock();
+        try {
+            return buffer.getDouble(offset + field);
+        } finally {
+            rl.unlock();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!Counter.class.isInstance(o)) {
+            return false;
+        }
+        return key.equals(Counter.class.cast(o).getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedCounter{key=" + key + ", offset=" + offset + '}';
+    }
+}
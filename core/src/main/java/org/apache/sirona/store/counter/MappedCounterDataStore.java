@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.counter;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.SironaException;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.Histogram;
+import org.apache.sirona.counters.OptimizedStatistics;
+import org.apache.sirona.counters.Unit;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps counter statistics in a memory mapped file instead of the heap so they survive restarts
+ * and can be read by another process (see {@link #read(java.io.File)}) without any network call.
+ *
+ * Data file: a header (magic, version, slot size, slot count, used slots) then fixed size slots:
+ * sequence (odd while a write is in progress), hits, sum, min, max, mean, second moment, max concurrency.
+ *
+ * Memory ordering: buffer puts are plain stores the JIT and the CPU may reorder. Writers put a volatile
+ * write between the odd sequence, the data and the even sequence, readers a volatile read between the
+ * sequence and data loads. HotSpot implements these with the StoreStore/LoadLoad barriers of the JSR-133
+ * cookbook which also order the accesses to the mapping. The JMM itself says nothing about memory shared
+ * with another process so this is what the seqlock relies on, not a spec guarantee.
+ *
+ * Key directory (data file + ".keys"): records (slot, role, unit, name) appended when a slot is allocated.
+ *
+ * Lock file (data file + ".lock"): held while the store is open, a second process using the same file fails to start.
+ *
+ * When all slots are used new counters are created on the heap.
+ *
+ * org.apache.sirona.counter.mapped.file = the data file, required since it is what a restarted JVM or a sidecar looks for
+ * org.apache.sirona.counter.mapped.slots = 16384 (default), number of counters kept in the file
+ */
+public class MappedCounterDataStore extends InMemoryCounterDataStore {
+    private static final Logger LOGGER = Logger.getLogger(MappedCounterDataStore.class.getName());
+
+    public static final int MAGIC = 0x53495243; // SIRC
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 32;
+    public static final int SLOT_SIZE = 64;
+
+    // header
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SLOT_SIZE = 8;
+    private static final int HEADER_SLOTS = 12;
+    private static final int HEADER_USED = 16;
+
+    // slot
+    static final int SEQUENCE = 0;
+    static final int N = 8;
+    static final int SUM = 16;
+    static final int MIN = 24;
+    static final int MAX = 32;
+    static final int M1 = 40;
+    static final int M2 = 48;
+    static final int MAX_CONCURRENCY = 56;
+
+    private static final String FILE_KEY = Configuration.CONFIG_PROPERTY_PREFIX + "counter.mapped.file";
+    private static final String KEYS_SUFFIX = ".keys";
+    private static final String LOCK_SUFFIX = ".lock";
+
+    // a writer holds a slot for a few puts, after that many attempts it is considered dead
+    private static final int MAX_READ_ATTEMPTS = 10000;
+
+    // only read for the barriers around it, see class comment
+    private static volatile int fence = 0;
+
+    protected final File file;
+    protected final int slots;
+
+    private final ConcurrentMap<Counter.Key, MappedCounter> allocated = new ConcurrentHashMap<Counter.Key, MappedCounter>();
+    private final MappedByteBuffer buffer;
+    private final RandomAccessFile directory;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private volatile Collection<Counter.Key> restored; // registered on first access, the repository may not be ready yet
+    private volatile boolean full = false;
+    private volatile boolean closed = false;
+
+    public MappedCounterDataStore() {
+        this(dataFile(), Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "counter.mapped.slots", 16384));
+    }
+
+    // no default: a shared one would let all the JVMs of the host write each other's slots
+    private static File dataFile() {
+        final String path = Configuration.getProperty(FILE_KEY, null);
+        if (path == null || path.trim().isEmpty()) {
+            throw new SironaException(FILE_KEY + " is required, use a file specific to the application");
+        }
+        return new File(path.trim());
+    }
+
+    public MappedCounterDataStore(final File file, final int slots) {
+        this.file = file;
+        this.slots = slots;
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new SironaException("Can't create " + parent.getAbsolutePath());
+        }
+
+        try {
+            lockFile = new RandomAccessFile(new File(file.getPath() + LOCK_SUFFIX), "rw");
+        } catch (final IOException e) {
+            throw new SironaException(e);
+        }
+        lock = lock(lockFile, file);
+
+        try {
+            final long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+            final boolean reuse = file.length() == size && isCompatible(file, slots);
+
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                raf.close();
+            }
+
+            directory = new RandomAccessFile(new File(file.getPath() + KEYS_SUFFIX), "rw");
+            if (reuse) {
+                restore();
+            } else {
+                format();
+            }
+        } catch (final IOException e) {
+            release();
+            throw new SironaException(e);
+        } catch (final RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    // fails fast instead of sharing the slots with another store
+    private static FileLock lock(final RandomAccessFile lockFile, final File file) {
+        FileLock lock = null;
+        try {
+            lock = lockFile.getChannel().tryLock();
+        } catch (final OverlappingFileLockException e) { // held by this JVM
+            // no-op
+        } catch (final IOException e) {
+            close(lockFile);
+            throw new SironaException(e);
+        }
+        if (lock == null) {
+            close(lockFile);
+            throw new SironaException(file.getAbsolutePath() + " is already used by another store");
+        }
+        return lock;
+    }
+
+    @Override
+    public Counter getOrCreateCounter(final Counter.Key key) {
+        if (restored != null) {
+            registerRestored();
+        }
+        return super.getOrCreateCounter(key);
+    }
+
+    @Override
+    public Collection<Counter> getCounters() {
+        if (restored != null) {
+            registerRestored();
+        }
+        return super.getCounters();
+    }
+
+    // restored counters go through getOrCreateCounter() as new ones to be accounted per role
+    private void registerRestored() {
+        final Collection<Counter.Key> keys;
+        synchronized (this) {
+            keys = restored;
+            restored = null;
+        }
+        if (keys != null) {
+            for (final Counter.Key key : keys) {
+                super.getOrCreateCounter(key);
+            }
+        }
+    }
+
+    @Override
+    protected Counter newCounter(final Counter.Key key) {
+        MappedCounter counter = allocated.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (full) {
+            return super.newCounter(key);
+        }
+
+        synchronized (directory) {
+            counter = allocated.get(key);
+            if (counter != null) {
+                return counter;
+            }
+
+            final int slot = buffer.getInt(HEADER_USED);
+            if (slot >= slots) {
+                full = true;
+                LOGGER.warning("All " + slots + " slots of " + file.getAbsolutePath() + " are used, new counters will be kept in memory");
+                return super.newCounter(key);
+            }
+
+            try {
+                directory.seek(directory.length());
+                directory.writeInt(slot);
+                directory.writeUTF(key.getRole().getName());
+                directory.writeUTF(key.getRole().getUnit().getName());
+                directory.writeUTF(key.getName());
+            } catch (final IOException e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                return super.newCounter(key);
+            }
+
+            final int offset = offset(slot);
+            clearSlot(buffer, offset);
+            buffer.putInt(HEADER_USED, slot + 1); // once the key is written so a reader never sees a slot without key
+
+            counter = new MappedCounter(key, this, buffer, offset);
+            allocated.put(key, counter);
+            return counter;
+        }
+    }
+
+    @Override
+    protected void doAddToCounter(final Counter counter, final double delta, final long weight) {
+        if (!MappedCounter.class.isInstance(counter)) { // overflow
+            super.doAddToCounter(counter, delta, weight);
+            return;
+        }
+
+        final MappedCounter mappedCounter = MappedCounter.class.cast(counter);
+        final Lock lock = mappedCounter.getLock().writeLock();
+        lock.lock();
+        try {
+            mappedCounter.addInternal(delta, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clearCounters() {
+        restored = null;
+        super.clearCounters();
+        synchronized (directory) {
+            allocated.clear();
+            full = false;
+            if (!closed) {
+                try {
+                    format();
+                } catch (final IOException e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    @Destroying
+    public void cleanUp() { // releases resources but keeps the data for next start
+        if (closed) {
+            return;
+        }
+
+        synchronized (directory) {
+            closed = true;
+            super.clearCounters();
+            restored = null;
+            buffer.force();
+            close(directory);
+            release();
+        }
+    }
+
+    private void release() {
+        try {
+            lock.release();
+        } catch (final IOException e) {
+            // no-op
+        }
+        close(lockFile);
+    }
+
+    private static void close(final RandomAccessFile file) {
+        try {
+            file.close();
+        } catch (final IOException e) {
+            // no-op
+        }
+    }
+
+    private void format() throws IOException {
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_SLOT_SIZE, SLOT_SIZE);
+        buffer.putInt(HEADER_SLOTS, slots);
+        buffer.putInt(HEADER_USED, 0);
+        directory.setLength(0);
+    }
+
+    // slots are only claimed there, counters are registered on first access (see registerRestored())
+    private void restore() throws IOException {
+        final int used = Math.min(buffer.getInt(HEADER_USED), slots);
+        long valid = 0;
+        directory.seek(0);
+        try {
+            while (directory.getFilePointer() < directory.length()) {
+                final int slot = directory.readInt();
+                final Counter.Key key = new Counter.Key(new Role(directory.readUTF(), unit(directory.readUTF())), directory.readUTF());
+                if (slot >= used) {
+                    break;
+                }
+
+                // a JVM crashed in the middle of a write leaves an odd sequence, next writes would keep it odd
+                final int offset = offset(slot);
+                final long sequence = buffer.getLong(offset + SEQUENCE);
+                if ((sequence & 1) != 0) {
+                    buffer.putLong(offset + SEQUENCE, sequence + 1);
+                }
+
+                allocated.put(key, new MappedCounter(key, this, buffer, offset));
+                valid = directory.getFilePointer();
+            }
+        } catch (final EOFException e) {
+            // truncated record of a crashed JVM
+        }
+
+        directory.setLength(valid);
+        buffer.putInt(HEADER_USED, allocated.size());
+        restored = new ArrayList<Counter.Key>(allocated.keySet());
+    }
+
+    static void clearSlot(final ByteBuffer buffer, final int offset) {
+        buffer.putLong(offset + N, 0);
+        buffer.putDouble(offset + SUM, 0);
+        buffer.putDouble(offset + MIN, Double.NaN);
+        buffer.putDouble(offset + MAX, Double.NaN);
+        buffer.putDouble(offset + M1, Double.NaN);
+        buffer.putDouble(offset + M2, Double.NaN);
+        buffer.putInt(offset + MAX_CONCURRENCY, 0);
+    }
+
+    private static int offset(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static Unit unit(final String name) {
+        final Unit unit = Unit.get(name);
+        if (unit == null) {
+            return new Unit(name);
+        }
+        return unit;
+    }
+
+    private static boolean isCompatible(final File file, final int slots) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == MAGIC && in.readInt() == VERSION && in.readInt() == SLOT_SIZE && in.readInt() == slots;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a data file without creating a store, this is what a sidecar process would do.
+     *
+     * @param file the data file, the key directory is expected next to it.
+     * @return a consistent snapshot of each counter.
+     */
+    public static Collection<Counter> read(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final MappedByteBuffer data;
+        try {
+            data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        if (data.getInt(HEADER_MAGIC) != MAGIC || data.getInt(HEADER_VERSION) != VERSION) {
+            throw new IOException(file.getAbsolutePath() + " is not a sirona counter file");
+        }
+
+        final int slotSize = data.getInt(HEADER_SLOT_SIZE);
+        final int used = data.getInt(HEADER_USED);
+        final List<Counter> result = new ArrayList<Counter>(used);
+        final DataInputStream keys = new DataInputStream(new BufferedInputStream(new FileInputStream(file.getPath() + KEYS_SUFFIX)));
+        try {
+            while (true) {
+                final int slot;
+                final Counter.Key key;
+                try {
+                    slot = keys.readInt();
+                    key = new Counter.Key(new Role(keys.readUTF(), unit(keys.readUTF())), keys.readUTF());
+                } catch (final EOFException e) {
+                    break;
+                }
+                if (slot >= used) {
+                    break;
+                }
+                result.add(readSlot(data, key, HEADER_SIZE + slot * slotSize));
+            }
+        } finally {
+            keys.close();
+        }
+        return result;
+    }
+
+    private static Counter readSlot(final ByteBuffer data, final Counter.Key key, final int offset) throws IOException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            final long before = data.getLong(offset + SEQUENCE);
+            if ((before & 1) != 0) { // write in progress
+                Thread.yield();
+                continue;
+            }
+            loadFence();
+
+            final OptimizedStatistics statistics = new OptimizedStatistics(
+                data.getLong(offset + N), data.getDouble(offset + SUM),
+                data.getDouble(offset + MIN), data.getDouble(offset + MAX),
+                data.getDouble(offset + M1), Double.NaN, Double.NaN, data.getDouble(offset + M2));
+            final int maxConcurrency = data.getInt(offset + MAX_CONCURRENCY);
+
+            loadFence();
+            if (data.getLong(offset + SEQUENCE) == before) {
+                return new CounterSnapshot(key, statistics, new Histogram(), 0, maxConcurrency);
+            }
+        }
+        throw new IOException("Slot of " + key + " stayed locked after " + MAX_READ_ATTEMPTS + " attempts, is a writer stuck?");
+    }
+
+    private static void loadFence() {
+        if (fence == -1) { // only the volatile read matters
+            Thread.yield();
+        }
+    }
+}
@@ -19,17 +19,16 @@ package org.apache.sirona.store.gauge;
 import org.apache.sirona.Role;
 import org.apache.sirona.configuration.ioc.Created;
 import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.counters.OptimizedStatistics;
-import org.apache.sirona.store.BatchFuture;
-import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.util.PushExecutor;
+import org.apache.sirona.util.TimerWheel;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,7 +37,8 @@ public abstract class AggregatedGaugeDataStoreAdapter extends BatchGaugeDataStor
     private static final Logger LOGGER = Logger.getLogger(AggregatedGaugeDataStoreAdapter.class.getName());
 
     private final ConcurrentMap<Role, OptimizedStatistics> gauges = new ConcurrentHashMap<Role, OptimizedStatistics>();
-    private BatchFuture scheduledAggregatedTask;
+    private TimerWheel.Task scheduledAggregatedTask;
+    private PushExecutor.Push aggregatedPush;
 
     protected abstract void pushAggregatedGauges(final Map<Role, Value> gauges);
 
@@ -47,19 +47,22 @@ public abstract class AggregatedGaugeDataStoreAdapter extends BatchGaugeDataStor
         final String name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("gaugedatastore", "") + ".aggregated";
         final long period = getPeriod(name);
 
-        final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + "-aggregated-gauge-schedule-"));
-        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new PushGaugesTask(), period, period, TimeUnit.MILLISECONDS);
-        scheduledAggregatedTask = new BatchFuture(ses, future);
+        // subclass @Created methods are called before the batch one
+        aggregatedPush = IoCs.findOrCreateInstance(PushExecutor.class).periodic(new PushGaugesTask());
+        scheduledAggregatedTask = IoCs.findOrCreateInstance(TimerWheel.class).schedule(aggregatedPush, period);
     }
 
-    @Destroying
-    public void shutdown() {
-        scheduledAggregatedTask.done();
+    @Destroying // not named shutdown to not hide the batch one
+    public void shutdownAggregated() {
+        if (scheduledAggregatedTask != null) {
+            scheduledAggregatedTask.cancel();
+            aggregatedPush.await(TimeUnit.MINUTES.toMillis(1));
+        }
     }
 
     @Override
-    protected void pushGauges(Map<Role, Measure> gauges) {
-
+    protected void pushGauges(final Map<Role, List<Measure>> gauges) {
+        // no-op: values are aggregated in addToGauge
     }
 
     @Override
@@ -70,6 +73,10 @@ public abstract class AggregatedGaugeDataStoreAdapter extends BatchGaugeDataStor
 
     @Override
     public void addToGauge(final Role role, final long time, final double value) {
+        if (Double.isNaN(value)) { // missing sample
+            return;
+        }
+
         OptimizedStatistics stat = gauges.get(role);
         if (stat == null) {
             stat = new OptimizedStatistics();
@@ -95,7 +102,7 @@ public abstract class AggregatedGaugeDataStoreAdapter extends BatchGaugeDataStor
 
     private class PushGaugesTask implements Runnable {
         @Override
-        public void run() {
+        public void run() { // push executor, the push can block on the network
             try {
                 pushAggregatedGauges(copyAndClearGauges());
             } catch (final Exception e) {
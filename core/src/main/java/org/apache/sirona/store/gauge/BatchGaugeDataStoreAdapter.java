@@ -20,34 +20,57 @@ import org.apache.sirona.Role;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.Created;
 import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.gauges.Gauge;
 import org.apache.sirona.gauges.GaugeDataStoreAdapter;
-import org.apache.sirona.store.BatchFuture;
-import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.gauges.GaugeSampler;
+import org.apache.sirona.gauges.PeriodicGauge;
+import org.apache.sirona.util.PushExecutor;
+import org.apache.sirona.util.SelfMonitoring;
+import org.apache.sirona.util.TimerWheel;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+// gauges are sampled and pushes triggered by the shared TimerWheel, pushes of all stores with the same period are aligned.
+// The push itself (sampling timeout, network I/O) runs on the shared PushExecutor to not delay other wheel tasks.
 public abstract class BatchGaugeDataStoreAdapter extends GaugeDataStoreAdapter {
     private static final Logger LOGGER = Logger.getLogger(BatchGaugeDataStoreAdapter.class.getName());
 
-    protected BatchFuture scheduledTask;
+    // gauges with their own period, they are sampled by their own task
+    private final ConcurrentMap<Role, TimerWheel.Task> samplingTasks = new ConcurrentHashMap<Role, TimerWheel.Task>();
+    private final ConcurrentMap<Role, Queue<Measure>> samples = new ConcurrentHashMap<Role, Queue<Measure>>();
+
+    protected TimerWheel timerWheel;
+    protected GaugeSampler sampler;
+    protected TimerWheel.Task scheduledTask;
+    protected PushExecutor.Push push;
+    protected String name;
 
     @Created // call it only when main impl not in delegated mode so use IoC lifecycle management
     public void initBatch() {
-        final String name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("gaugedatastore", "");
+        name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("gaugedatastore", "");
         final long period = getPeriod(name);
 
-        final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + "-gauge-schedule-"));
-        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new PushGaugesTask(), period, period, TimeUnit.MILLISECONDS);
-        scheduledTask = new BatchFuture(ses, future);
+        sampler = IoCs.findOrCreateInstance(GaugeSampler.class);
+        timerWheel = IoCs.findOrCreateInstance(TimerWheel.class);
+        push = IoCs.findOrCreateInstance(PushExecutor.class).periodic(new PushGaugesTask());
+        scheduledTask = timerWheel.schedule(push, period);
+        for (final Gauge gauge : gauges.values()) {
+            scheduleSampling(gauge);
+        }
     }
 
     protected int getPeriod(final String name) {
@@ -57,31 +80,156 @@ public abstract class BatchGaugeDataStoreAdapter extends GaugeDataStoreAdapter {
 
     @Destroying
     public void shutdown() {
-        scheduledTask.done();
+        if (scheduledTask != null) {
+            scheduledTask.cancel();
+        }
+        for (final TimerWheel.Task task : samplingTasks.values()) {
+            task.cancel();
+        }
+        samplingTasks.clear();
+        if (push != null) {
+            push.await(TimeUnit.MINUTES.toMillis(1));
+        }
     }
 
-    protected abstract void pushGauges(final Map<Role, Measure> gauges);
+    @Override
+    public void addGauge(final Gauge gauge) {
+        super.addGauge(gauge);
+        if (timerWheel != null) {
+            scheduleSampling(gauge);
+        }
+    }
+
+    @Override
+    public void gaugeStopped(final Role gauge) {
+        final TimerWheel.Task task = samplingTasks.remove(gauge);
+        if (task != null) {
+            task.cancel();
+        }
+        samples.remove(gauge);
+        super.gaugeStopped(gauge);
+    }
+
+    // measures of a role are ordered by time, more than one when the gauge has its own period
+    protected abstract void pushGauges(final Map<Role, List<Measure>> gauges);
 
+    // missing values (failures, timeouts) are only added locally, stores don't get them
     protected Map<Role, Measure> snapshot() {
         final long ts = System.currentTimeMillis();
-        final Map<Role, Measure> snapshot = new HashMap<Role, Measure>();
+        final Collection<Gauge> toSample = new ArrayList<Gauge>(gauges.size());
         for (final Gauge gauge : gauges.values()) {
-            final Role role = gauge.role();
-            final double value = gauge.value();
+            if (!samplingTasks.containsKey(gauge.role())) {
+                toSample.add(gauge);
+            }
+        }
+
+        final Map<Role, Measure> snapshot = new HashMap<Role, Measure>();
+        if (toSample.isEmpty()) {
+            return snapshot;
+        }
+        if (sampler == null) {
+            sampler = IoCs.findOrCreateInstance(GaugeSampler.class);
+        }
+
+        for (final Map.Entry<Role, Double> entry : sampler.sample(toSample).entrySet()) {
+            final Role role = entry.getKey();
+            final double value = entry.getValue();
 
             addToGauge(role, ts, value);
-            snapshot.put(role, new Measure(ts, value));
+            if (!Double.isNaN(value)) {
+                snapshot.put(role, new Measure(ts, value));
+            }
         }
         return snapshot;
     }
 
-    private class PushGaugesTask implements Runnable {
+    private void scheduleSampling(final Gauge gauge) {
+        if (!PeriodicGauge.class.isInstance(gauge)) {
+            return;
+        }
+
+        final long period = PeriodicGauge.class.cast(gauge).period();
+        if (period <= 0) {
+            return;
+        }
+
+        final Role role = gauge.role();
+        samples.putIfAbsent(role, new ConcurrentLinkedQueue<Measure>());
+        final TimerWheel.Task old = samplingTasks.put(role, timerWheel.schedule(new SampleGaugeTask(gauge), period));
+        if (old != null) {
+            old.cancel();
+        }
+    }
+
+    // one snapshot and every sample taken since last push by gauges with their own period, in a single push
+    private Map<Role, List<Measure>> measures() {
+        final Map<Role, List<Measure>> measures = new HashMap<Role, List<Measure>>();
+        for (final Map.Entry<Role, Measure> entry : snapshot().entrySet()) {
+            measures.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+        }
+
+        for (final Map.Entry<Role, Queue<Measure>> entry : samples.entrySet()) {
+            final Queue<Measure> queue = entry.getValue();
+            List<Measure> list = null;
+            Measure measure;
+            while ((measure = queue.poll()) != null) {
+                if (list == null) {
+                    list = new ArrayList<Measure>(queue.size() + 1);
+                }
+                list.add(measure);
+            }
+            if (list != null) {
+                measures.put(entry.getKey(), list);
+            }
+        }
+        return measures;
+    }
+
+    // sampling is done by the sampler pool to not block the timer wheel
+    private class SampleGaugeTask implements Runnable, GaugeSampler.Listener {
+        private final Gauge gauge;
+
+        private SampleGaugeTask(final Gauge gauge) {
+            this.gauge = gauge;
+        }
+
         @Override
         public void run() {
+            sampler.sampleAsync(gauge, this);
+        }
+
+        @Override
+        public void onSample(final Role role, final long time, final double value) {
+            addToGauge(role, time, value);
+
+            final Queue<Measure> queue = samples.get(role);
+            if (queue != null && !Double.isNaN(value)) {
+                queue.add(new Measure(time, value));
+            }
+        }
+    }
+
+    private class PushGaugesTask implements Runnable {
+        @Override
+        public void run() { // push executor
+            SelfMonitoring.PENDING_PUSHES.incrementAndGet();
+            final long start = System.nanoTime();
             try {
-                pushGauges(snapshot());
+                final Map<Role, List<Measure>> measures = measures();
+                if (!measures.isEmpty()) {
+                    pushGauges(measures);
+                }
+
+                int items = 0;
+                for (final List<Measure> list : measures.values()) {
+                    items += list.size();
+                }
+                SelfMonitoring.record(SelfMonitoring.ITEMS, name + "-gauges-push", items);
             } catch (final Exception e) {
                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            } finally {
+                SelfMonitoring.record(SelfMonitoring.DURATION, name + "-gauges-push", System.nanoTime() - start);
+                SelfMonitoring.PENDING_PUSHES.decrementAndGet();
             }
         }
     }
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.apache.sirona.configuration.Configuration;
+
+/**
+ * In memory store keeping much longer histories in the same heap thanks to CompressedGaugeHistory,
+ * mainly useful on the collector (collector.gauge.store-class).
+ */
+public class CompressedGaugeDataStore extends InMemoryGaugeDataStore {
+    private static final int MAX_SIZE = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.compressed.max-size", 1000000);
+    private static final int BLOCK_SIZE = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.compressed.block-size", 512);
+
+    @Override
+    protected GaugeHistory newHistory() {
+        return new CompressedGaugeHistory(MAX_SIZE, BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gauge history encoded in blocks as described in the Gorilla paper (Facebook, VLDB 2015):
+ * delta of delta timestamps and values xor-ed with the previous one, regular sampling
+ * makes most points cost a few bits instead of 16 bytes.
+ *
+ * Blocks only support appending so points older than the last one are ignored (gauges are
+ * sampled in order, per agent on the collector). Eviction and time retention work per block,
+ * range queries only decode the blocks overlapping the requested range.
+ */
+public class CompressedGaugeHistory implements GaugeHistory {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LinkedList<Block> blocks = new LinkedList<Block>();
+    private final int maxSize;
+    private final int blockSize;
+    private Block current = null;
+    private int size = 0;
+
+    public CompressedGaugeHistory(final int maxSize, final int blockSize) {
+        if (maxSize <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("maxSize and blockSize should be > 0");
+        }
+        this.maxSize = maxSize;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void add(final long time, final double value) {
+        lock.writeLock().lock();
+        try {
+            if (current == null) {
+                if (!blocks.isEmpty() && time <= blocks.getLast().lastTime) {
+                    return;
+                }
+                current = new Block(time, value);
+                blocks.add(current);
+            } else if (time <= current.lastTime) {
+                return;
+            } else {
+                current.append(time, value);
+            }
+            size++;
+
+            if (current.count >= blockSize) {
+                current.seal();
+                current = null;
+            }
+            while (size > maxSize && blocks.size() > 1) {
+                size -= blocks.removeFirst().count;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<Long, Double> range(final long start, final long end) {
+        lock.readLock().lock();
+        try {
+            final List<Block> overlapping = new ArrayList<Block>();
+            int max = 0;
+            for (final Block block : blocks) {
+                if (block.lastTime >= start && block.firstTime <= end) {
+                    overlapping.add(block);
+                    max += block.count;
+                }
+            }
+
+            final long[] times = new long[max];
+            final double[] values = new double[max];
+            int length = 0;
+            for (final Block block : overlapping) {
+                length = block.decode(start, end, times, values, length);
+            }
+            return new GaugePoints(times, values, 0, length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void evictBefore(final long time) {
+        lock.writeLock().lock();
+        try {
+            while (!blocks.isEmpty() && blocks.getFirst() != current && blocks.getFirst().lastTime < time) {
+                size -= blocks.removeFirst().count;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long firstTime() {
+        lock.readLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                return Long.MAX_VALUE;
+            }
+            return blocks.getFirst().firstTime;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // encoded size, mainly to compare with other histories
+    public long bytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (final Block block : blocks) {
+                bytes += block.words.length * 8L;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class Block {
+        private final long firstTime;
+        private long lastTime;
+        private int count = 1;
+
+        private long[] words = new long[4];
+        private int bits = 0;
+
+        // encoder state
+        private long lastDelta = 0;
+        private long lastBits;
+        private int lastLeading = -1;
+        private int lastTrailing = 0;
+
+        private Block(final long time, final double value) {
+            firstTime = time;
+            lastTime = time;
+            lastBits = Double.doubleToRawLongBits(value);
+            write(time, 64);
+            write(lastBits, 64);
+        }
+
+        private void append(final long time, final double value) {
+            final long delta = time - lastTime;
+            final long deltaOfDelta = delta - lastDelta;
+            if (deltaOfDelta == 0) {
+                write(0, 1);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                write(2, 2);
+                write(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                write(6, 3);
+                write(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                write(14, 4);
+                write(deltaOfDelta, 12);
+            } else {
+                write(15, 4);
+                write(deltaOfDelta, 64);
+            }
+            lastDelta = delta;
+            lastTime = time;
+
+            final long valueBits = Double.doubleToRawLongBits(value);
+            final long xor = valueBits ^ lastBits;
+            if (xor == 0) {
+                write(0, 1);
+            } else {
+                write(1, 1);
+                final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                final int trailing = Long.numberOfTrailingZeros(xor);
+                if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) { // fits previous window
+                    write(0, 1);
+                    write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+                } else {
+                    final int meaningful = 64 - leading - trailing;
+                    write(1, 1);
+                    write(leading, 5);
+                    write(meaningful - 1, 6);
+                    write(xor >>> trailing, meaningful);
+                    lastLeading = leading;
+                    lastTrailing = trailing;
+                }
+            }
+            lastBits = valueBits;
+            count++;
+        }
+
+        private void seal() {
+            final long[] trimmed = new long[(bits + 63) >>> 6];
+            System.arraycopy(words, 0, trimmed, 0, trimmed.length);
+            words = trimmed;
+        }
+
+        private int decode(final long start, final long end, final long[] times, final double[] values, final int offset) {
+            int length = offset;
+            int position = 0;
+
+            long time = read(position, 64);
+            position += 64;
+            long valueBits = read(position, 64);
+            position += 64;
+            long delta = 0;
+            int leading = 0;
+            int trailing = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    // timestamp
+                    int prefix = 0;
+                    while (prefix < 4 && read(position, 1) == 1) {
+                        prefix++;
+                        position++;
+                    }
+                    if (prefix < 4) {
+                        position++; // the terminating 0
+                    }
+                    final int size;
+                    switch (prefix) {
+                        case 0: size = 0; break;
+                        case 1: size = 7; break;
+                        case 2: size = 9; break;
+                        case 3: size = 12; break;
+                        default: size = 64;
+                    }
+                    if (size > 0) {
+                        delta += signExtend(read(position, size), size);
+                        position += size;
+                    }
+                    time += delta;
+
+                    // value
+                    final long changed = read(position, 1);
+                    position++;
+                    if (changed == 1) {
+                        final long newWindow = read(position, 1);
+                        position++;
+                        if (newWindow == 1) {
+                            leading = (int) read(position, 5);
+                            position += 5;
+                            trailing = 64 - leading - ((int) read(position, 6) + 1);
+                            position += 6;
+                        }
+                        final int meaningful = 64 - leading - trailing;
+                        valueBits ^= read(position, meaningful) << trailing;
+                        position += meaningful;
+                    }
+                }
+
+                if (time > end) {
+                    break;
+                }
+                if (time >= start) {
+                    times[length] = time;
+                    values[length] = Double.longBitsToDouble(valueBits);
+                    length++;
+                }
+            }
+            return length;
+        }
+
+        // writes the "size" lowest bits of value
+        private void write(final long value, final int size) {
+            if (size == 0) {
+                return;
+            }
+            if (bits + size > words.length * 64) {
+                final long[] newWords = new long[words.length * 2];
+                System.arraycopy(words, 0, newWords, 0, words.length);
+                words = newWords;
+            }
+
+            final int idx = bits >>> 6;
+            final int free = 64 - (bits & 63);
+            final long masked = value & mask(size);
+            if (size <= free) {
+                words[idx] |= masked << (free - size);
+            } else {
+                final int rest = size - free;
+                words[idx] |= masked >>> rest;
+                words[idx + 1] |= masked << (64 - rest);
+            }
+            bits += size;
+        }
+
+        private long read(final int position, final int size) {
+            if (size == 0) {
+                return 0;
+            }
+
+            final int idx = position >>> 6;
+            final int free = 64 - (position & 63);
+            if (size <= free) {
+                return (words[idx] >>> (free - size)) & mask(size);
+            }
+            final int rest = size - free;
+            return ((words[idx] & mask(free)) << rest) | (words[idx + 1] >>> (64 - rest));
+        }
+
+        private static long mask(final int size) {
+            return size == 64 ? -1L : (1L << size) - 1;
+        }
+
+        private static long signExtend(final long value, final int size) {
+            return (value << (64 - size)) >> (64 - size);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import java.util.SortedMap;
+
+/**
+ * Time ordered points of a gauge kept in memory.
+ */
+public interface GaugeHistory {
+    void add(long time, double value);
+
+    /**
+     * @return the points in [start, end].
+     */
+    SortedMap<Long, Double> range(long start, long end);
+
+    // time based retention on top of the size bound
+    void evictBefore(long time);
+
+    int size();
+
+    /**
+     * @return the time of the oldest point kept, Long.MAX_VALUE if there is none.
+     */
+    long firstTime();
+}
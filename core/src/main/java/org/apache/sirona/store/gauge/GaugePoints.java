@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Read only sorted view over primitive time/value arrays, sub maps share the arrays
+ * and entries are only boxed while iterating.
+ */
+class GaugePoints extends AbstractMap<Long, Double> implements SortedMap<Long, Double> {
+    private final long[] times;
+    private final double[] values;
+    private final int from;
+    private final int to;
+
+    GaugePoints(final long[] times, final double[] values, final int from, final int to) {
+        this.times = times;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public Double get(final Object key) {
+        final int idx = find(key);
+        if (idx < 0) {
+            return null;
+        }
+        return values[idx];
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedMap<Long, Double> subMap(final Long fromKey, final Long toKey) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new GaugePoints(times, values, lowerBound(fromKey), lowerBound(toKey));
+    }
+
+    @Override
+    public SortedMap<Long, Double> headMap(final Long toKey) {
+        return new GaugePoints(times, values, from, lowerBound(toKey));
+    }
+
+    @Override
+    public SortedMap<Long, Double> tailMap(final Long fromKey) {
+        return new GaugePoints(times, values, lowerBound(fromKey), to);
+    }
+
+    @Override
+    public Long firstKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return times[from];
+    }
+
+    @Override
+    public Long lastKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return times[to - 1];
+    }
+
+    @Override
+    public Set<Entry<Long, Double>> entrySet() {
+        return new AbstractSet<Entry<Long, Double>>() {
+            @Override
+            public Iterator<Entry<Long, Double>> iterator() {
+                return new Iterator<Entry<Long, Double>>() {
+                    private int current = from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return current < to;
+                    }
+
+                    @Override
+                    public Entry<Long, Double> next() {
+                        if (current >= to) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<Long, Double> entry = new SimpleImmutableEntry<Long, Double>(times[current], values[current]);
+                        current++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    private int find(final Object key) {
+        if (!Long.class.isInstance(key)) {
+            return -1;
+        }
+        final long time = Long.class.cast(key);
+        final int idx = lowerBound(time);
+        if (idx < to && times[idx] == time) {
+            return idx;
+        }
+        return -1;
+    }
+
+    // bounded to [from, to]
+    private int lowerBound(final long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A round robin tier of a gauge: values are aggregated (min/max/sum/count) in buckets
+ * of a fixed resolution and the slot of a bucket is (start / resolution) % buckets so
+ * a new bucket simply overwrites the one of the previous round, no eviction pass is needed.
+ */
+public class GaugeRollup {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long resolution;
+    private final int buckets;
+    private final long[] starts;
+    private final long[] counts;
+    private final double[] mins;
+    private final double[] maxs;
+    private final double[] sums;
+    private long latest = Long.MIN_VALUE; // newest bucket, bounds the reads
+
+    public GaugeRollup(final long resolution, final int buckets) {
+        if (resolution <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException("resolution and buckets should be > 0");
+        }
+        this.resolution = resolution;
+        this.buckets = buckets;
+        this.starts = new long[buckets];
+        this.counts = new long[buckets];
+        this.mins = new double[buckets];
+        this.maxs = new double[buckets];
+        this.sums = new double[buckets];
+    }
+
+    public void add(final long time, final double value) {
+        if (Double.isNaN(value)) { // missing sample, stays in raw points only
+            return;
+        }
+
+        final long bucket = bucket(time);
+        final long start = bucket * resolution;
+        final int slot = slot(bucket);
+
+        lock.writeLock().lock();
+        try {
+            if (counts[slot] == 0 || starts[slot] < start) {
+                if (bucket > latest) {
+                    latest = bucket;
+                }
+                starts[slot] = start;
+                counts[slot] = 1;
+                mins[slot] = value;
+                maxs[slot] = value;
+                sums[slot] = value;
+            } else if (starts[slot] == start) {
+                counts[slot]++;
+                sums[slot] += value;
+                if (value < mins[slot]) {
+                    mins[slot] = value;
+                }
+                if (value > maxs[slot]) {
+                    maxs[slot] = value;
+                }
+            } // else older than the retention: ignored
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the mean of each bucket starting in [start, end] indexed by bucket start.
+     */
+    public SortedMap<Long, Double> range(final long start, final long end) {
+        lock.readLock().lock();
+        try {
+            if (latest == Long.MIN_VALUE) {
+                return new GaugePoints(new long[0], new double[0], 0, 0);
+            }
+
+            final long last = lastBucket(end);
+            final long first = firstBucket(start, last);
+            final int max = (int) Math.max(0, last - first + 1);
+
+            final long[] times = new long[max];
+            final double[] values = new double[max];
+            int length = 0;
+            for (long bucket = first; bucket <= last; bucket++) {
+                final int slot = slot(bucket);
+                if (counts[slot] > 0 && starts[slot] == bucket * resolution) {
+                    times[length] = starts[slot];
+                    values[length] = sums[slot] / counts[slot];
+                    length++;
+                }
+            }
+            return new GaugePoints(times, values, 0, length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the full aggregate of each bucket starting in [start, end] indexed by bucket start.
+     */
+    public SortedMap<Long, Value> values(final long start, final long end) {
+        final SortedMap<Long, Value> out = new TreeMap<Long, Value>();
+
+        lock.readLock().lock();
+        try {
+            if (latest == Long.MIN_VALUE) {
+                return out;
+            }
+
+            final long last = lastBucket(end);
+            for (long bucket = firstBucket(start, last); bucket <= last; bucket++) {
+                final int slot = slot(bucket);
+                if (counts[slot] > 0 && starts[slot] == bucket * resolution) {
+                    out.put(starts[slot], new BucketValue(counts[slot], sums[slot], mins[slot], maxs[slot]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    public long getRetention() {
+        return resolution * buckets;
+    }
+
+    // number of points a [start, end] request can return at most
+    public long points(final long start, final long end) {
+        return Math.max(0, bucket(end) - bucket(start) + 1);
+    }
+
+    private long lastBucket(final long end) {
+        return Math.min(bucket(end), latest);
+    }
+
+    private long firstBucket(final long start, final long last) {
+        // older buckets were overwritten anyway
+        return Math.max(bucket(start), last - buckets + 1);
+    }
+
+    private long bucket(final long time) {
+        final long bucket = time / resolution;
+        return time < 0 && bucket * resolution != time ? bucket - 1 : bucket;
+    }
+
+    private int slot(final long bucket) {
+        final int slot = (int) (bucket % buckets);
+        return slot < 0 ? slot + buckets : slot;
+    }
+
+    private static class BucketValue implements Value {
+        private final long n;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        private BucketValue(final long n, final double sum, final double min, final double max) {
+            this.n = n;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public double getMean() {
+            return sum / n;
+        }
+
+        @Override
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public double getMin() {
+            return min;
+        }
+
+        @Override
+        public long getN() {
+            return n;
+        }
+
+        @Override
+        public double getSum() {
+            return sum;
+        }
+
+        @Override
+        public String toString() {
+            return "Value{n=" + n + ", mean=" + getMean() + ", min=" + min + ", max=" + max + '}';
+        }
+    }
+}
@@ -20,47 +20,43 @@ import org.apache.sirona.Role;
 import org.apache.sirona.configuration.Configuration;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 public class InMemoryGaugeDataStore extends BatchGaugeDataStoreAdapter {
-    protected final ConcurrentMap<Role, SortedMap<Long, Double>> gauges = new ConcurrentHashMap<Role, SortedMap<Long, Double>>();
+    private static final int MAX_SIZE = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.max-size", 100);
+
+    protected final ConcurrentMap<Role, GaugeHistory> gauges = new ConcurrentHashMap<Role, GaugeHistory>();
     protected final Map<String, Role> roleMapping = new ConcurrentHashMap<String, Role>();
 
     @Override
     public SortedMap<Long, Double> getGaugeValues(final GaugeValuesRequest gaugeValuesRequest) {
-        final Map<Long, Double> map = gauges.get(gaugeValuesRequest.getRole());
-        if (map == null) {
+        final GaugeHistory history = gauges.get(gaugeValuesRequest.getRole());
+        if (history == null) {
             return new TreeMap<Long, Double>();
         }
-
-        final Map<Long, Double> copy = new HashMap<Long, Double>(map);
-
-        final SortedMap<Long, Double> out = new TreeMap<Long, Double>();
-        for (final Map.Entry<Long, Double> entry : copy.entrySet()) {
-            final long time = entry.getKey();
-            if (time >= gaugeValuesRequest.getStart() && time <= gaugeValuesRequest.getEnd()) {
-                out.put(time, entry.getValue());
-            }
-        }
-
-        return out;
+        return history.range(gaugeValuesRequest.getStart(), gaugeValuesRequest.getEnd());
     }
 
     @Override
     public void createOrNoopGauge(final Role gauge) {
-        gauges.putIfAbsent(gauge, new FixedSizedMap());
+        if (!gauges.containsKey(gauge)) {
+            gauges.putIfAbsent(gauge, newHistory());
+        }
         roleMapping.put(gauge.getName(), gauge);
     }
 
+    protected GaugeHistory newHistory() {
+        return new RingGaugeHistory(MAX_SIZE);
+    }
+
     @Override
     public void addToGauge(final Role role, final long time, final double value) {
-        gauges.get(role).put(time, value);
+        gauges.get(role).add(time, value);
     }
 
     @Override
@@ -74,11 +70,8 @@ public class InMemoryGaugeDataStore extends BatchGaugeDataStoreAdapter {
     }
 
     @Override
-    protected void pushGauges(final Map<Role, Measure> gauges) {
-        for (final Map.Entry<Role, Measure> entry : gauges.entrySet()) {
-            final Measure value = entry.getValue();
-            addToGauge(entry.getKey(), value.getTime(), value.getValue());
-        }
+    protected void pushGauges(final Map<Role, List<Measure>> gauges) {
+        // no-op: sampling already added the values locally
     }
 
     @Override
@@ -86,21 +79,4 @@ public class InMemoryGaugeDataStore extends BatchGaugeDataStoreAdapter {
         super.gaugeStopped(gauge);
         roleMapping.remove(gauge.getName());
     }
-
-    // no perf issues here normally since add is called not that often
-    protected static class FixedSizedMap extends ConcurrentSkipListMap<Long, Double> {
-        private static final int MAX_SIZE = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.max-size", 100);
-
-        protected FixedSizedMap() {
-            // no-op
-        }
-
-        @Override
-        public Double put(final Long key, final Double value) {
-            if (size() >= MAX_SIZE) {
-                remove(keySet().iterator().next());
-            }
-            return super.put(key, value);
-        }
-    }
 }
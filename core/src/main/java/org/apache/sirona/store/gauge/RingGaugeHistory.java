@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded history of a gauge stored in primitive circular buffers (no boxing per point).
+ * Points are kept sorted by time: gauges are sampled in time order so adding is an append,
+ * late points are inserted and an already known time is overwritten as a map would do.
+ *
+ * Buffers grow lazily until the max size is reached then the oldest points are evicted.
+ */
+public class RingGaugeHistory implements GaugeHistory {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxSize;
+    private long[] times;
+    private double[] values;
+    private int head = 0; // index of the oldest point
+    private int size = 0;
+
+    public RingGaugeHistory(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize should be > 0");
+        }
+        this.maxSize = maxSize;
+        this.times = new long[Math.min(INITIAL_CAPACITY, maxSize)];
+        this.values = new double[times.length];
+    }
+
+    @Override
+    public void add(final long time, final double value) {
+        lock.writeLock().lock();
+        try {
+            if (size == 0 || time > times[index(size - 1)]) {
+                if (size == times.length && !grow()) {
+                    head = index(1);
+                    size--;
+                }
+                final int idx = index(size);
+                times[idx] = time;
+                values[idx] = value;
+                size++;
+                return;
+            }
+
+            int position = lowerBound(time);
+            if (position < size && times[index(position)] == time) {
+                values[index(position)] = value;
+                return;
+            }
+
+            if (size == times.length && !grow()) {
+                if (position == 0) { // older than everything we keep
+                    return;
+                }
+                head = index(1);
+                size--;
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                final int to = index(i);
+                final int from = index(i - 1);
+                times[to] = times[from];
+                values[to] = values[from];
+            }
+            final int idx = index(position);
+            times[idx] = time;
+            values[idx] = value;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // only this range is copied (as primitives) from the buffers
+    @Override
+    public SortedMap<Long, Double> range(final long start, final long end) {
+        lock.readLock().lock();
+        try {
+            final int from = lowerBound(start);
+            final int to = end == Long.MAX_VALUE ? size : lowerBound(end + 1);
+            final int length = Math.max(0, to - from);
+
+            final long[] rangeTimes = new long[length];
+            final double[] rangeValues = new double[length];
+            if (length > 0) {
+                final int first = index(from);
+                final int chunk = Math.min(length, times.length - first);
+                System.arraycopy(times, first, rangeTimes, 0, chunk);
+                System.arraycopy(values, first, rangeValues, 0, chunk);
+                if (chunk < length) { // wrapped
+                    System.arraycopy(times, 0, rangeTimes, chunk, length - chunk);
+                    System.arraycopy(values, 0, rangeValues, chunk, length - chunk);
+                }
+            }
+            return new GaugePoints(rangeTimes, rangeValues, 0, length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void evictBefore(final long time) {
+        lock.writeLock().lock();
+        try {
+            final int count = lowerBound(time);
+            if (count > 0) {
+                head = index(count);
+                size -= count;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long firstTime() {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return Long.MAX_VALUE;
+            }
+            return times[head];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean grow() {
+        if (times.length >= maxSize) {
+            return false;
+        }
+
+        final int capacity = (int) Math.min((long) maxSize, times.length * 2L);
+        final long[] newTimes = new long[capacity];
+        final double[] newValues = new double[capacity];
+        final int chunk = times.length - head;
+        System.arraycopy(times, head, newTimes, 0, chunk);
+        System.arraycopy(values, head, newValues, 0, chunk);
+        System.arraycopy(times, 0, newTimes, chunk, head);
+        System.arraycopy(values, 0, newValues, chunk, head);
+        times = newTimes;
+        values = newValues;
+        head = 0;
+        return true;
+    }
+
+    private int index(final int logical) {
+        final int idx = head + logical;
+        return idx >= times.length ? idx - times.length : idx;
+    }
+
+    // first logical index with a time >= the parameter
+    private int lowerBound(final long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (times[index(mid)] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps raw points for a short window (gauge.rollup.raw.retention, in ms) and rolls them up in
+ * minute, hour and day tiers (gauge.rollup.[minute|hour|day].buckets for their retention).
+ *
+ * Reads use the finest tier still covering the requested range within gauge.rollup.max-points,
+ * i.e. the coarsest tier needed, and the coarsest one when none fits. Raw points are bounded by
+ * gauge.max-size too so they are only used when the oldest one is not after the start of the range.
+ *
+ * Agent side it is enabled through RollupDataStoreFactory and collector side setting
+ * collector.gauge.store-class to this class.
+ */
+public class RollupGaugeDataStore extends InMemoryGaugeDataStore {
+    private static final String PREFIX = Configuration.CONFIG_PROPERTY_PREFIX + "gauge.rollup.";
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    protected final ConcurrentMap<Role, GaugeRollup[]> rollups = new ConcurrentHashMap<Role, GaugeRollup[]>();
+
+    private final long rawRetention = Configuration.getInteger(PREFIX + "raw.retention", (int) HOUR);
+    private final int maxPoints = Configuration.getInteger(PREFIX + "max-points", 1000);
+    private final int minutes = Configuration.getInteger(PREFIX + "minute.buckets", 24 * 60);
+    private final int hours = Configuration.getInteger(PREFIX + "hour.buckets", 30 * 24);
+    private final int days = Configuration.getInteger(PREFIX + "day.buckets", 365);
+
+    @Override
+    public SortedMap<Long, Double> getGaugeValues(final GaugeValuesRequest gaugeValuesRequest) {
+        final GaugeRollup[] tiers = rollups.get(gaugeValuesRequest.getRole());
+        if (tiers == null) {
+            return new TreeMap<Long, Double>();
+        }
+
+        final long start = gaugeValuesRequest.getStart();
+        final long end = gaugeValuesRequest.getEnd();
+        final long now = System.currentTimeMillis();
+
+        final GaugeHistory history = gauges.get(gaugeValuesRequest.getRole());
+        if (start >= now - rawRetention && history != null && history.firstTime() <= start) { // else truncated by the max size
+            final SortedMap<Long, Double> raw = history.range(start, end);
+            if (raw.size() <= maxPoints) {
+                return raw;
+            }
+        }
+        for (final GaugeRollup tier : tiers) {
+            if (start >= now - tier.getRetention() && tier.points(start, end) <= maxPoints) {
+                return tier.range(start, end);
+            }
+        }
+        return tiers[tiers.length - 1].range(start, end);
+    }
+
+    /**
+     * @return the tier of this resolution (to get min/max/count) or null if the gauge or the tier doesn't exist.
+     */
+    public GaugeRollup getGaugeRollup(final Role role, final long resolution) {
+        final GaugeRollup[] tiers = rollups.get(role);
+        if (tiers == null) {
+            return null;
+        }
+        for (final GaugeRollup tier : tiers) {
+            if (tier.getResolution() == resolution) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void createOrNoopGauge(final Role gauge) {
+        super.createOrNoopGauge(gauge);
+        if (!rollups.containsKey(gauge)) {
+            rollups.putIfAbsent(gauge, new GaugeRollup[] {
+                new GaugeRollup(MINUTE, minutes),
+                new GaugeRollup(HOUR, hours),
+                new GaugeRollup(DAY, days)
+            });
+        }
+    }
+
+    @Override
+    public void addToGauge(final Role role, final long time, final double value) {
+        final GaugeHistory raw = gauges.get(role);
+        raw.add(time, value);
+        raw.evictBefore(time - rawRetention);
+        for (final GaugeRollup tier : rollups.get(role)) {
+            tier.add(time, value);
+        }
+    }
+}
@@ -19,26 +19,26 @@ package org.apache.sirona.store.status;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.Created;
 import org.apache.sirona.configuration.ioc.Destroying;
+import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.status.NodeStatus;
 import org.apache.sirona.status.NodeStatusReporter;
-import org.apache.sirona.store.BatchFuture;
-import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.util.PushExecutor;
+import org.apache.sirona.util.TimerWheel;
 
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+// reports are triggered by the shared TimerWheel and run on the shared PushExecutor
 public class PeriodicNodeStatusDataStore implements NodeStatusDataStore {
     private static final Logger LOGGER = Logger.getLogger(PeriodicNodeStatusDataStore.class.getName());
 
-    private final AtomicReference<BatchFuture> scheduledTask = new AtomicReference<BatchFuture>();
+    private final AtomicReference<TimerWheel.Task> scheduledTask = new AtomicReference<TimerWheel.Task>();
+    private final AtomicReference<PushExecutor.Push> push = new AtomicReference<PushExecutor.Push>();
     protected final AtomicReference<NodeStatus> status = new AtomicReference<NodeStatus>();
     protected final HashMap<String, NodeStatus> statusAsMap = new HashMap<String, NodeStatus>();
     protected final NodeStatusReporter nodeStatusReporter;
@@ -58,10 +58,13 @@ public class PeriodicNodeStatusDataStore implements NodeStatusDataStore {
 
     @Destroying
     public void shutdown() {
-        final BatchFuture task = scheduledTask.get();
+        final TimerWheel.Task task = scheduledTask.getAndSet(null);
         if (task != null) {
-            task.done();
-            scheduledTask.set(null);
+            task.cancel();
+        }
+        final PushExecutor.Push report = push.getAndSet(null);
+        if (report != null) {
+            report.await(TimeUnit.MINUTES.toMillis(1));
         }
         status.set(null);
     }
@@ -76,9 +79,9 @@ public class PeriodicNodeStatusDataStore implements NodeStatusDataStore {
         final String name = getClass().getSimpleName().toLowerCase(Locale.ENGLISH).replace("nodestatusdatastore", "");
         final long period = getPeriod(name);
 
-        final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(name + "-status-schedule-"));
-        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new ReportStatusTask(nodeStatusReporter), period, period, TimeUnit.MILLISECONDS);
-        scheduledTask.set(new BatchFuture(ses, future));
+        final PushExecutor.Push report = IoCs.findOrCreateInstance(PushExecutor.class).periodic(new ReportStatusTask(nodeStatusReporter));
+        push.set(report);
+        scheduledTask.set(IoCs.findOrCreateInstance(TimerWheel.class).schedule(report, period));
     }
 
     protected int getPeriod(final String name) {
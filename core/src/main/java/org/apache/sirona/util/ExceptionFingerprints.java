@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.apache.sirona.configuration.Configuration;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identifies a failure by its exception type and its top frames instead of its whole stack trace
+ * (which is expensive to print and gives a counter per message). The first trace of a fingerprint
+ * is kept as a sample, up to failures.max-samples samples.
+ */
+public class ExceptionFingerprints {
+    private static final int FRAMES = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "failures.fingerprint-frames", 5);
+    private static final int MAX_SAMPLES = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "failures.max-samples", 500);
+
+    private static final ConcurrentMap<String, String> SAMPLES = new ConcurrentHashMap<String, String>();
+
+    private ExceptionFingerprints() {
+        // no-op
+    }
+
+    /**
+     * @return the fingerprint of the error ("class#hash"), a sample is kept if it is a new one.
+     */
+    public static String record(final Throwable error) {
+        final String fingerprint = fingerprint(error);
+        if (SAMPLES.size() < MAX_SAMPLES && !SAMPLES.containsKey(fingerprint)) {
+            final StringWriter writer = new StringWriter();
+            error.printStackTrace(new PrintWriter(writer));
+            SAMPLES.putIfAbsent(fingerprint, writer.toString());
+        }
+        return fingerprint;
+    }
+
+    public static String fingerprint(final Throwable error) {
+        final String type = error.getClass().getName();
+
+        int hash = type.hashCode();
+        final StackTraceElement[] frames = error.getStackTrace();
+        for (int i = 0; i < Math.min(FRAMES, frames.length); i++) {
+            final StackTraceElement frame = frames[i];
+            hash = 31 * hash + frame.getClassName().hashCode();
+            hash = 31 * hash + frame.getMethodName().hashCode();
+            hash = 31 * hash + frame.getLineNumber();
+        }
+        return type + '#' + Integer.toHexString(hash);
+    }
+
+    /**
+     * @return the first stack trace seen for this fingerprint or null if none was kept.
+     */
+    public static String sample(final String fingerprint) {
+        return SAMPLES.get(fingerprint);
+    }
+
+    public static void clearSamples() {
+        SAMPLES.clear();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Destroying;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the pushes of all the stores (sampling timeouts, network I/O) out of the TimerWheel thread on a pool
+ * shared through IoCs.findOrCreateInstance(PushExecutor.class): push.threads (2 by default), stopped when idle.
+ *
+ * A push never overlaps the previous one of the same store: when it is still running the new one is skipped,
+ * stores keep what was not pushed for the next one.
+ */
+public class PushExecutor {
+    private static final Logger LOGGER = Logger.getLogger(PushExecutor.class.getName());
+
+    private final ThreadPoolExecutor pool;
+
+    public PushExecutor() {
+        this(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "push.threads", 2));
+    }
+
+    public PushExecutor(final int threads) {
+        this.pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("sirona-push-"));
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Destroying
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @param push the push of a store.
+     * @return what to schedule on the TimerWheel.
+     */
+    public Push periodic(final Runnable push) {
+        return new Push(push);
+    }
+
+    public class Push implements Runnable {
+        private final Runnable push;
+        private boolean running = false; // guarded by this
+
+        private Push(final Runnable push) {
+            this.push = push;
+        }
+
+        @Override
+        public void run() { // wheel thread
+            synchronized (this) {
+                if (running) {
+                    LOGGER.fine("Previous push still running, skipping this one");
+                    return;
+                }
+                running = true;
+            }
+
+            try {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            push.run();
+                        } catch (final RuntimeException e) {
+                            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                        } finally {
+                            done();
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException ree) { // shutting down
+                done();
+            }
+        }
+
+        /**
+         * Waits for the running push if any, stores call it when stopping after cancelling their task.
+         */
+        public synchronized void await(final long timeout) {
+            final long end = System.currentTimeMillis() + timeout;
+            long wait;
+            while (running && (wait = end - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(wait);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private synchronized void done() {
+            running = false;
+            notifyAll();
+        }
+    }
+}
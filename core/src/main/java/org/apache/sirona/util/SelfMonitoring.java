@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
+import org.apache.sirona.counters.Histogram;
+import org.apache.sirona.counters.OptimizedStatistics;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.gauges.Gauge;
+import org.apache.sirona.repositories.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What sirona costs: time spent measuring invocations and adding values to counters,
+ * batch push durations and sizes, collector ingestion...
+ *
+ * Values are kept here and not in the repository to not measure the measures
+ * and since collector counters can't be fed locally.
+ */
+public final class SelfMonitoring {
+    public static final boolean ACTIVE = Configuration.is(Configuration.CONFIG_PROPERTY_PREFIX + "self-monitoring", false);
+
+    public static final Role DURATION = Role.SIRONA;
+    public static final Role PAYLOAD = new Role("sirona-payload", Unit.Binary.BYTE);
+    public static final Role ITEMS = new Role("sirona-items", Unit.UNARY);
+
+    public static final Probe INVOCATION = new Probe(new Counter.Key(DURATION, "invocation"), new Role("sirona-invocation-overhead", Unit.Time.NANOSECOND));
+    public static final Probe ADD = new Probe(new Counter.Key(DURATION, "add-to-counter"), new Role("sirona-add-overhead", Unit.Time.NANOSECOND));
+
+    public static final AtomicInteger PENDING_PUSHES = new AtomicInteger(0);
+
+    private static final ConcurrentMap<Counter.Key, OptimizedStatistics> METRICS = new ConcurrentHashMap<Counter.Key, OptimizedStatistics>();
+
+    private SelfMonitoring() {
+        // no-op
+    }
+
+    // for not hot paths (pushes, ingestion...)
+    public static void record(final Role role, final String name, final double value) {
+        if (!ACTIVE) {
+            return;
+        }
+
+        final Counter.Key key = new Counter.Key(role, name);
+        OptimizedStatistics statistics = METRICS.get(key);
+        if (statistics == null) {
+            statistics = new OptimizedStatistics();
+            final OptimizedStatistics existing = METRICS.putIfAbsent(key, statistics);
+            if (existing != null) {
+                statistics = existing;
+            }
+        }
+        synchronized (statistics) {
+            statistics.addValue(value);
+        }
+    }
+
+    public static Collection<Counter> counters() {
+        final Collection<Counter> counters = new ArrayList<Counter>(METRICS.size() + 2);
+        counters.add(INVOCATION.snapshot());
+        counters.add(ADD.snapshot());
+        for (final Map.Entry<Counter.Key, OptimizedStatistics> entry : METRICS.entrySet()) {
+            final OptimizedStatistics statistics = entry.getValue();
+            final OptimizedStatistics copy;
+            synchronized (statistics) {
+                copy = statistics.copy();
+            }
+            counters.add(new CounterSnapshot(entry.getKey(), copy, new Histogram(), 0, 0));
+        }
+        return counters;
+    }
+
+    public static Collection<Gauge> gauges() {
+        return Arrays.<Gauge>asList(
+            new ProbeGauge(INVOCATION), new ProbeGauge(ADD),
+            new CountGauge(new Role("sirona-counters", Unit.UNARY)) {
+                @Override
+                public double value() {
+                    return Repository.INSTANCE.counters().size();
+                }
+            },
+            new CountGauge(new Role("sirona-gauges", Unit.UNARY)) {
+                @Override
+                public double value() {
+                    return Repository.INSTANCE.gauges().size();
+                }
+            },
+            new CountGauge(new Role("sirona-pending-pushes", Unit.UNARY)) {
+                @Override
+                public double value() {
+                    return PENDING_PUSHES.get();
+                }
+            });
+    }
+
+    public static void reset() {
+        METRICS.clear();
+        INVOCATION.reset();
+        ADD.reset();
+    }
+
+    // lock free accumulator for hot paths
+    public static class Probe {
+        private final Counter.Key key;
+        private final Role role;
+        private final AtomicLong hits = new AtomicLong(0);
+        private final AtomicLong time = new AtomicLong(0);
+
+        // last values read by the gauge
+        private long gaugeHits = 0;
+        private long gaugeTime = 0;
+
+        private Probe(final Counter.Key key, final Role role) {
+            this.key = key;
+            this.role = role;
+        }
+
+        public void add(final long nanos, final int hitNumber) {
+            time.addAndGet(nanos);
+            if (hitNumber > 0) {
+                hits.addAndGet(hitNumber);
+            }
+        }
+
+        public Counter snapshot() {
+            final long n = hits.get();
+            final double sum = time.get();
+            final double mean = n == 0 ? Double.NaN : sum / n;
+            return new CounterSnapshot(key, new OptimizedStatistics(n, sum, Double.NaN, Double.NaN, mean, Double.NaN, Double.NaN, Double.NaN), new Histogram(), 0, 0);
+        }
+
+        // mean since last call
+        private synchronized double mean() {
+            final long currentHits = hits.get();
+            final long currentTime = time.get();
+            final long deltaHits = currentHits - gaugeHits;
+            final long deltaTime = currentTime - gaugeTime;
+            gaugeHits = currentHits;
+            gaugeTime = currentTime;
+            if (deltaHits <= 0) {
+                return 0;
+            }
+            return deltaTime / (double) deltaHits;
+        }
+
+        private synchronized void reset() {
+            hits.set(0);
+            time.set(0);
+            gaugeHits = 0;
+            gaugeTime = 0;
+        }
+    }
+
+    private static class ProbeGauge implements Gauge {
+        private final Probe probe;
+
+        private ProbeGauge(final Probe probe) {
+            this.probe = probe;
+        }
+
+        @Override
+        public Role role() {
+            return probe.role;
+        }
+
+        @Override
+        public double value() {
+            return probe.mean();
+        }
+    }
+
+    private abstract static class CountGauge implements Gauge {
+        private final Role role;
+
+        private CountGauge(final Role role) {
+            this.role = role;
+        }
+
+        @Override
+        public Role role() {
+            return role;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.configuration.ioc.Created;
+import org.apache.sirona.configuration.ioc.Destroying;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel shared by the stores (IoCs.findOrCreateInstance(TimerWheel.class)) so all periodic
+ * tasks run on a single daemon thread.
+ *
+ * Runs are aligned on multiples of their period (since epoch) so tasks with the same period fire together
+ * whatever their registration time is. Precision is the tick (timer-wheel.tick, 50ms by default) and tasks
+ * are expected to be short since they share the thread.
+ */
+public class TimerWheel {
+    private static final Logger LOGGER = Logger.getLogger(TimerWheel.class.getName());
+
+    private final long tick;
+    private final List<Task>[] wheel;
+    private final Queue<Task> added = new ConcurrentLinkedQueue<Task>();
+    private volatile boolean running = false;
+    private Thread thread = null;
+    private long lastTick; // only used by the wheel thread
+
+    public TimerWheel() {
+        this(Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "timer-wheel.tick", 50),
+            Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "timer-wheel.size", 512));
+    }
+
+    public TimerWheel(final long tick, final int size) {
+        if (tick <= 0 || size <= 0) {
+            throw new IllegalArgumentException("tick and size should be > 0");
+        }
+        this.tick = tick;
+        this.wheel = newWheel(size);
+    }
+
+    @Created
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        lastTick = currentTimeMillis() / tick;
+        thread = new DaemonThreadFactory("sirona-timer-wheel-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    final long wait = (lastTick + 1) * tick - currentTimeMillis();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                        continue; // parkNanos can return early
+                    }
+                    advance(currentTimeMillis() / tick);
+                }
+            }
+        });
+        thread.start();
+    }
+
+    @Destroying
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * @param task what to run.
+     * @param period the period in ms, the task runs at each multiple of it.
+     * @return the handle to cancel the task.
+     */
+    public Task schedule(final Runnable task, final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period should be > 0");
+        }
+
+        final Task handle = new Task(task, period);
+        handle.next = nextRun(currentTimeMillis(), period);
+        added.add(handle);
+        return handle;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    // time source of the wheel, overridable to control it
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // runs what is due at this time without the wheel thread, tests drive a stopped wheel with it
+    void advanceTo(final long time) {
+        if (lastTick == 0) {
+            lastTick = time / tick - 1;
+        }
+        advance(time / tick);
+    }
+
+    private void advance(final long current) {
+        Task task;
+        while ((task = added.poll()) != null) {
+            place(task);
+        }
+
+        // if we are late (gc, long task) catch up but a full turn is enough
+        final long from = lastTick + 1;
+        final long to = Math.min(current, lastTick + wheel.length);
+        lastTick = current; // rescheduled tasks go after now
+        for (long t = from; t <= to; t++) {
+            runSlot(t, current);
+        }
+    }
+
+    private void runSlot(final long slotTick, final long current) {
+        final List<Task> slot = wheel[(int) (slotTick % wheel.length)];
+        if (slot.isEmpty()) {
+            return;
+        }
+
+        final List<Task> toRun = new LinkedList<Task>();
+        final Iterator<Task> it = slot.iterator();
+        while (it.hasNext()) {
+            final Task task = it.next();
+            if (task.cancelled) {
+                it.remove();
+            } else if (task.tick <= current) {
+                it.remove();
+                toRun.add(task);
+            } // else next turn
+        }
+
+        for (final Task task : toRun) {
+            try {
+                task.task.run();
+            } catch (final Throwable e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            }
+            if (!task.cancelled) {
+                task.next = nextRun(currentTimeMillis(), task.period);
+                place(task);
+            }
+        }
+    }
+
+    private void place(final Task task) {
+        // first tick at or after the deadline but never a past one
+        task.tick = Math.max((task.next + tick - 1) / tick, lastTick + 1);
+        wheel[(int) (task.tick % wheel.length)].add(task);
+    }
+
+    private static long nextRun(final long now, final long period) {
+        return (now / period + 1) * period;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static List<Task>[] newWheel(final int size) {
+        final List<Task>[] wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<Task>();
+        }
+        return wheel;
+    }
+
+    public static class Task {
+        private final Runnable task;
+        private final long period;
+        private volatile boolean cancelled = false;
+        // only used by the wheel thread once added
+        private long next;
+        private long tick;
+
+        private Task(final Runnable task, final long period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long getPeriod() {
+            return period;
+        }
+    }
+}
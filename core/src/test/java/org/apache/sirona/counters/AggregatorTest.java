@@ -79,4 +79,57 @@ public class AggregatorTest {
         assertEquals(1.2564, aggregate.getVariance(), 0.001);
         assertEquals(15., aggregate.getSum(), 0);
     }
+
+    @Test
+    public void percentiles() {
+        final Counter.Key key = new Counter.Key(new Role("r", Unit.UNARY), "p");
+
+        final Histogram fast = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            fast.addValue(10);
+        }
+        final Histogram slow = new Histogram();
+        slow.addValue(5000);
+
+        final CollectorCounterStore store = new InMemoryCollectorCounterStore();
+        store.update(key, "client1", new M2AwareStatisticalSummary(10, 0, 99, 10, 10, 990, 0, fast), 0);
+        store.update(key, "client2", new M2AwareStatisticalSummary(5000, 0, 1, 5000, 5000, 5000, 0, slow), 0);
+
+        assertEquals(10., store.getOrCreateCounter(key, "client1").getPercentile(99), 0);
+        assertEquals(5000., store.getOrCreateCounter(key, "client2").getPercentile(50), 0);
+
+        final Counter aggregate = store.getOrCreateCounter(key);
+        assertEquals(10., aggregate.getPercentile(50), 10 * 0.07);
+        assertEquals(10., aggregate.getPercentile(99), 10 * 0.07);
+        assertEquals(5000., aggregate.getPercentile(100), 0);
+    }
+
+    @Test
+    public void aggregateFollowsLeafUpdates() {
+        final Counter.Key key = new Counter.Key(new Role("r", Unit.UNARY), "u");
+
+        final CollectorCounterStore store = new InMemoryCollectorCounterStore();
+        store.update(key, "client1", new M2AwareStatisticalSummary(1, 0, 2, 1, 1, 2, 0), 3);
+        store.update(key, "client2", new M2AwareStatisticalSummary(3, 0, 1, 3, 3, 3, 0), 1);
+
+        final Counter aggregate = store.getOrCreateCounter(key);
+        assertEquals(3, aggregate.getHits());
+        assertEquals(5., aggregate.getSum(), 0);
+        assertEquals(4, aggregate.currentConcurrency().get());
+
+        // a marker sends its whole state again, it replaces its previous contribution
+        store.update(key, "client1", new M2AwareStatisticalSummary(2, 0, 4, 2, 2, 8, 0), 1);
+        store.update(key, "client1", new M2AwareStatisticalSummary(2, 0, 5, 2, 2, 10, 0), 2);
+        assertEquals(6, aggregate.getHits());
+        assertEquals(13., aggregate.getSum(), 0);
+        assertEquals(3., aggregate.getMax(), 0);
+        assertEquals(3, aggregate.currentConcurrency().get());
+        assertEquals(4, aggregate.getMaxConcurrency());
+
+        store.update(key, "client3", new M2AwareStatisticalSummary(10, 0, 1, 10, 10, 10, 0), 5);
+        final CounterSnapshot snapshot = aggregate.snapshot();
+        assertEquals(7, snapshot.getHits());
+        assertEquals(10., snapshot.getMax(), 0);
+        assertEquals(8, snapshot.getMaxConcurrency());
+    }
 }
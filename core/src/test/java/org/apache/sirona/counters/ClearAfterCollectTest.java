@@ -25,6 +25,9 @@ import org.junit.Test;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -64,4 +67,98 @@ public class ClearAfterCollectTest {
         assertEquals(1, size.iterator().next().intValue());
         assertEquals(0, size.get(1).intValue());
     }
+
+    @Test
+    public void failedPushIsSentAgain() throws InterruptedException {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "retried"));
+        final CountDownLatch pushed = new CountDownLatch(1);
+        final AtomicReference<Counter> retried = new AtomicReference<Counter>();
+        final BatchCounterDataStore store = new BatchCounterDataStore() {
+            private boolean failed = false;
+
+            @Override
+            protected void pushCountersByBatch(final Collection<Counter> instance) {
+                if (!failed) {
+                    failed = true;
+                    counter.add(7); // next interval
+                    throw new IllegalStateException("collector is down");
+                }
+                for (final Counter c : instance) {
+                    if (c.getKey().equals(counter.getKey())) {
+                        retried.set(c);
+                        pushed.countDown();
+                    }
+                }
+            }
+
+            @Override
+            protected int getPeriod(final String prefix) {
+                return 100;
+            }
+
+            @Override
+            protected boolean isClearAfterCollect(final String prefix) {
+                return true;
+            }
+        };
+
+        counter.add(123);
+        try {
+            assertTrue(pushed.await(1, TimeUnit.MINUTES));
+        } finally {
+            store.shutdown();
+        }
+
+        assertEquals(2, retried.get().getHits());
+        assertEquals(130, retried.get().getSum(), 0);
+        assertEquals(7, retried.get().getMin(), 0);
+    }
+
+    @Test
+    public void idleCountersAreRemoved() throws InterruptedException {
+        final Counter.Key key = new Counter.Key(Role.PERFORMANCES, "idle");
+        final CountDownLatch pushes = new CountDownLatch(3); // at least one push with the hit and one without
+        final BatchCounterDataStore store = new BatchCounterDataStore() {
+            @Override
+            protected void pushCountersByBatch(final Collection<Counter> instance) {
+                pushes.countDown();
+            }
+
+            @Override
+            protected int getPeriod(final String prefix) {
+                return 100;
+            }
+
+            @Override
+            protected boolean isClearAfterCollect(final String prefix) {
+                return true;
+            }
+        };
+
+        final Counter counter = Repository.INSTANCE.getCounter(key);
+        counter.add(1);
+        try {
+            assertTrue(pushes.await(1, TimeUnit.MINUTES));
+        } finally {
+            store.shutdown();
+        }
+
+        for (final Counter c : Repository.INSTANCE.counters()) {
+            assertTrue(!key.equals(c.getKey()));
+        }
+
+        // still usable, it goes to a new counter
+        counter.add(2);
+        assertEquals(1, Repository.INSTANCE.getCounter(key).getHits());
+    }
+
+    @Test
+    public void maxConcurrencyIsPerInterval() {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "maxConcurrency"));
+        counter.add(1);
+        counter.updateConcurrency(5);
+
+        assertEquals(5, counter.snapshotAndReset().getMaxConcurrency());
+        assertEquals(0, counter.snapshotAndReset().getMaxConcurrency());
+    }
 }
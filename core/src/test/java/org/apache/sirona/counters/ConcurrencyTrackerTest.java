@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.stopwatches.Clock;
+import org.apache.sirona.stopwatches.CounterStopWatch;
+import org.apache.sirona.stopwatches.StopWatch;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyTrackerTest {
+    @Test
+    public void timeWeighted() {
+        final ManualClock clock = new ManualClock();
+        final ConcurrencyTracker tracker = new ConcurrencyTracker(clock);
+
+        clock.advance(1000); // 1s at 0
+        tracker.update(1);
+        clock.advance(1000); // 1s at 1
+        tracker.update(2);
+        clock.advance(2000); // 2s at 2
+        tracker.update(1);
+        tracker.update(0);
+
+        final ConcurrencyDistribution distribution = tracker.distribution();
+        assertEquals(4000, distribution.getDuration() / 1000000, 1);
+        assertEquals(1.25, distribution.getAverage(), 0.01); // (1 * 1 + 2 * 2) / 4
+        assertEquals(0, distribution.getPercentile(20), 0.);
+        assertEquals(1, distribution.getPercentile(50), 0.);
+        assertEquals(2, distribution.getPercentile(90), 0.);
+    }
+
+    @Test
+    public void reset() {
+        final ManualClock clock = new ManualClock();
+        final ConcurrencyTracker tracker = new ConcurrencyTracker(clock);
+
+        tracker.update(1);
+        clock.advance(1000);
+        assertEquals(1., tracker.distributionAndReset().getAverage(), 0.01);
+
+        clock.advance(1000); // still running in the new interval
+        tracker.update(0);
+        clock.advance(1000);
+        assertEquals(0.5, tracker.distribution().getAverage(), 0.01);
+    }
+
+    @Test
+    public void resetDoesntLoseTime() throws InterruptedException {
+        final SteppingClock clock = new SteppingClock();
+        final ConcurrencyTracker tracker = new ConcurrencyTracker(clock);
+
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int level = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50000; j++) {
+                        tracker.update(level + (j % 3));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        long duration = 0;
+        while (threads[threads.length - 1].isAlive() || threads[0].isAlive()) {
+            duration += tracker.distributionAndReset().getDuration();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        duration += tracker.distributionAndReset().getDuration();
+
+        // each change adds the time since the previous one so intervals sum up to the last clock read
+        assertEquals(clock.last() - SteppingClock.STEP, duration);
+    }
+
+    @Test
+    public void stopWatch() throws InterruptedException {
+        final Counter counter = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "concurrency"), new InMemoryCounterDataStore());
+        counter.reset(); // starts the interval now
+        final StopWatch watch = new CounterStopWatch(counter);
+        Thread.sleep(50);
+        watch.stop();
+        Thread.sleep(50);
+
+        final double average = counter.snapshot().getConcurrencyDistribution().getAverage();
+        assertTrue(String.valueOf(average), average > 0.2 && average < 0.8);
+        assertEquals(1, counter.getMaxConcurrency());
+    }
+
+    @Test
+    public void sumAndWireFormat() {
+        final long[] half = new long[3];
+        half[0] = 500;
+        half[2] = 500;
+        final long[] one = new long[3];
+        one[1] = 1000;
+
+        final ConcurrencyDistribution sum = ConcurrencyDistribution.sum(Arrays.asList(
+            new ConcurrencyDistribution(half), new ConcurrencyDistribution(one)));
+        assertEquals(2., sum.getAverage(), 1e-9); // averages add up
+        assertEquals(1, sum.getPercentile(50), 0.);
+        assertEquals(3, sum.getPercentile(99), 0.);
+
+        final ConcurrencyDistribution read = ConcurrencyDistribution.fromCompactString(sum.toCompactString());
+        assertEquals(sum.getDuration(), read.getDuration());
+        assertEquals(sum.getAverage(), read.getAverage(), 1e-9);
+    }
+
+    // thread safe, each read moves forward by one tracker time unit
+    private static class SteppingClock implements Clock {
+        private static final long STEP = 1024;
+        private final AtomicLong time = new AtomicLong(0);
+
+        public long last() {
+            return time.get();
+        }
+
+        @Override
+        public long nanoTime() {
+            return time.addAndGet(STEP);
+        }
+    }
+
+    private static class ManualClock implements Clock {
+        private long time = 0;
+
+        public void advance(final long ms) {
+            time += ms * 1000000;
+        }
+
+        @Override
+        public long nanoTime() {
+            return time;
+        }
+    }
+}
@@ -40,6 +40,13 @@ public class CounterBench implements Runnable {
         runConcurrent();
     }
 
+    @Test
+    public void stripedCounter() throws Exception {
+        mode = "StripedCounter";
+        counter = new StripedCounter(new Counter.Key(Role.FAILURES, mode), new InMemoryCounterDataStore());
+        runConcurrent();
+    }
+
     private void runConcurrent() throws InterruptedException {
         final long start = System.nanoTime();
         final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CounterHandleTest {
+    @Before
+    @After
+    public void reset() {
+        Repository.INSTANCE.clearCounters();
+    }
+
+    @Test
+    public void resolvedOnce() {
+        final Counter.Key key = new Counter.Key(Role.PERFORMANCES, "handle");
+        final CounterHandle handle = Repository.INSTANCE.handle(key);
+        assertEquals(key, handle.getKey());
+        assertSame(handle.get(), handle.get());
+        assertSame(Repository.INSTANCE.getCounter(key), handle.get());
+    }
+
+    @Test
+    public void reResolvedAfterClear() {
+        final Counter.Key key = new Counter.Key(Role.PERFORMANCES, "cleared");
+        final CounterHandle handle = Repository.INSTANCE.handle(key);
+        final Counter before = handle.get();
+        before.add(1);
+
+        Repository.INSTANCE.clearCounters();
+
+        final Counter after = handle.get();
+        assertNotSame(before, after);
+        after.add(2);
+        assertSame(Repository.INSTANCE.getCounter(key), after);
+        assertEquals(1, Repository.INSTANCE.getCounter(key).getHits());
+        assertEquals(2, Repository.INSTANCE.getCounter(key).getSum(), 0);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CounterSnapshotTest {
+    @Test
+    public void snapshot() {
+        final Counter counter = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "snapshot"), new InMemoryCounterDataStore());
+        counter.add(10);
+        counter.add(20);
+
+        final CounterSnapshot snapshot = counter.snapshot();
+        counter.add(30);
+
+        assertEquals(2, snapshot.getHits());
+        assertEquals(30., snapshot.getSum(), 0.);
+        assertEquals(15., snapshot.getMean(), 0.);
+        assertEquals(20., snapshot.getMax(), 0.);
+        assertEquals(3, counter.getHits());
+        assertEquals(counter.getVariance(), counter.snapshot().getVariance(), 1e-9);
+    }
+
+    @Test
+    public void snapshotAndReset() {
+        final Counter counter = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "reset"), new InMemoryCounterDataStore());
+        counter.add(10);
+        counter.currentConcurrency().incrementAndGet();
+
+        final CounterSnapshot snapshot = counter.snapshotAndReset();
+        assertEquals(1, snapshot.getHits());
+        assertEquals(0, counter.getHits());
+        assertEquals(1, counter.currentConcurrency().get()); // running invocations still there
+    }
+
+    @Test
+    public void noLostAddWhileResetting() throws InterruptedException {
+        noLostAdd(new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "default"), new InMemoryCounterDataStore()));
+        noLostAdd(new StripedCounter(new Counter.Key(Role.PERFORMANCES, "striped"), new InMemoryCounterDataStore(), 4));
+    }
+
+    private static void noLostAdd(final Counter counter) throws InterruptedException {
+        final int threads = 4;
+        final int iterations = 20000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            es.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < iterations; j++) {
+                        counter.add(1);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+
+        long hits = 0;
+        while (done.getCount() > 0) {
+            hits += counter.snapshotAndReset().getHits();
+        }
+        hits += counter.snapshotAndReset().getHits();
+        es.shutdown();
+        assertTrue(es.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(threads * iterations, hits);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+    @Test
+    public void percentiles() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.addValue(i);
+        }
+
+        assertEquals(10000, histogram.getN());
+        assertEquals(5000, histogram.getPercentile(50, 1, 10000), 5000 * 0.07);
+        assertEquals(9000, histogram.getPercentile(90, 1, 10000), 9000 * 0.07);
+        assertEquals(9900, histogram.getPercentile(99, 1, 10000), 9900 * 0.07);
+        assertEquals(10000, histogram.getPercentile(100, 1, 10000), 0);
+        assertEquals(1, histogram.getPercentile(0, 1, 10000), 0);
+    }
+
+    @Test
+    public void empty() {
+        assertTrue(Double.isNaN(new Histogram().getPercentile(99, Double.NaN, Double.NaN)));
+    }
+
+    @Test
+    public void clearKeepsBuckets() {
+        final Histogram histogram = new Histogram();
+        histogram.addValue(1000000);
+        histogram.clear();
+        assertEquals(0, histogram.getN());
+        assertEquals("", histogram.toCompactString());
+        assertTrue(Double.isNaN(histogram.copy().getPercentile(50, Double.NaN, Double.NaN)));
+
+        histogram.addValue(10);
+        assertEquals(1, histogram.getN());
+        assertEquals(10, histogram.getPercentile(100, Double.NaN, Double.NaN), 10 * 0.07);
+    }
+
+    @Test
+    public void mergeAndWireFormat() {
+        final Histogram fast = new Histogram();
+        final Histogram slow = new Histogram();
+        for (int i = 0; i < 990; i++) {
+            fast.addValue(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.addValue(1000000);
+        }
+
+        final Histogram merged = Histogram.fromCompactString(fast.toCompactString());
+        merged.merge(Histogram.fromCompactString(slow.toCompactString()));
+
+        assertEquals(1000, merged.getN());
+        assertEquals(100, merged.getPercentile(99, 100, 1000000), 100 * 0.07);
+        assertEquals(1000000, merged.getPercentile(99.9, 100, 1000000), 1000000 * 0.07);
+        assertEquals(merged.toCompactString(), merged.copy().toCompactString());
+    }
+}
@@ -36,6 +36,24 @@ public class OptimizedStatisticsTest {
         }
     }
 
+    @Test
+    public void checkMergeConsistency() {
+        final SummaryStatistics normal = new SummaryStatistics();
+        final OptimizedStatistics[] parts = new OptimizedStatistics[] { new OptimizedStatistics(), new OptimizedStatistics(), new OptimizedStatistics() };
+
+        for (int i = 0; i < 100; i++) {
+            final double value = Math.random() * 100;
+            normal.addValue(value);
+            parts[i % 2].addValue(value); // last part stays empty
+        }
+
+        final OptimizedStatistics merged = new OptimizedStatistics();
+        for (final OptimizedStatistics part : parts) {
+            merged.merge(part);
+        }
+        doAssert(normal, merged);
+    }
+
     private static void doAssert(final SummaryStatistics normal, OptimizedStatistics optimized) {
         double delta = Math.pow(10, -10);
         assertEquals(normal.getN(), optimized.getN(), delta);
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.repositories.Repository;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedCounterTest {
+    @Test
+    public void concurrentAdds() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(new Counter.Key(Role.PERFORMANCES, "concurrentAdds"), new InMemoryCounterDataStore(), 4);
+        final DefaultCounter reference = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "reference"), new InMemoryCounterDataStore());
+        final int threads = 8;
+        final int iterations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            es.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        counter.add(1 + (thread + j) % 10);
+                    }
+                }
+            });
+            for (int j = 0; j < iterations; j++) {
+                reference.add(1 + (thread + j) % 10);
+            }
+        }
+        start.countDown();
+        es.shutdown();
+        assertTrue(es.awaitTermination(1, TimeUnit.MINUTES));
+
+        final CounterSnapshot snapshot = counter.snapshot();
+        assertEquals(threads * iterations, snapshot.getHits());
+        assertEquals(reference.getSum(), snapshot.getSum(), 0);
+        assertEquals(1, snapshot.getMin(), 0);
+        assertEquals(10, snapshot.getMax(), 0);
+        assertEquals(reference.getMean(), snapshot.getMean(), 1e-9);
+        assertEquals(reference.getVariance(), snapshot.getVariance(), 1e-6);
+        assertEquals(reference.getPercentile(50), snapshot.getPercentile(50), 0);
+        assertEquals(threads * iterations, counter.getHistogram().getN());
+    }
+
+    @Test
+    public void varianceOfLargeValues() { // ns latencies: large mean, small spread
+        final StripedCounter counter = new StripedCounter(new Counter.Key(Role.PERFORMANCES, "largeValues"), new InMemoryCounterDataStore(), 1);
+        final DefaultCounter reference = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "largeValuesReference"), new InMemoryCounterDataStore());
+        for (int i = 0; i < 10000; i++) {
+            final double value = 1e9 + i % 10;
+            counter.add(value);
+            reference.add(value);
+        }
+
+        assertEquals(8.25, reference.getVariance(), 1e-3);
+        assertEquals(reference.getVariance(), counter.getVariance(), 1e-3);
+        assertEquals(reference.getStandardDeviation(), counter.snapshotAndReset().getStandardDeviation(), 1e-3);
+    }
+
+    @Test
+    public void snapshotAndReset() {
+        final StripedCounter counter = new StripedCounter(new Counter.Key(Role.PERFORMANCES, "stripedReset"), new InMemoryCounterDataStore(), 4);
+        counter.add(2);
+        counter.add(4);
+
+        final CounterSnapshot snapshot = counter.snapshotAndReset();
+        assertEquals(2, snapshot.getHits());
+        assertEquals(6, snapshot.getSum(), 0);
+        assertEquals(2, snapshot.getVariance(), 1e-9);
+        assertEquals(0, counter.getHits());
+        assertEquals(0, counter.getHistogram().getN());
+
+        counter.add(8);
+        assertEquals(8, counter.getMin(), 0);
+        assertEquals(8, counter.getMax(), 0);
+    }
+
+    @Test
+    public void selectedByConfiguration() { // counter.striped.striped-counter-test = true in sirona.properties
+        final Counter striped = Repository.INSTANCE.getCounter(new Counter.Key(new Role("striped-counter-test", Unit.UNARY), "striped"));
+        assertTrue(StripedCounter.class.isInstance(striped));
+        assertTrue(!StripedCounter.class.isInstance(Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "notStriped"))));
+
+        striped.add(3);
+        assertEquals(1, striped.getHits());
+        assertEquals(3, striped.getSum(), 0);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeightedAddTest {
+    @Test
+    public void sameAsRepeatedAdds() {
+        final InMemoryCounterDataStore store = new InMemoryCounterDataStore();
+        final Counter repeated = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "repeated"), store);
+        final Counter weighted = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "weighted"), store);
+
+        final double[] values = { 5, 10, 1 };
+        final long[] weights = { 1, 4, 3 };
+        for (int i = 0; i < values.length; i++) {
+            for (int w = 0; w < weights[i]; w++) {
+                repeated.add(values[i]);
+            }
+            store.addToCounter(weighted, values[i], weights[i]);
+        }
+
+        assertEquals(repeated.getHits(), weighted.getHits());
+        assertEquals(repeated.getSum(), weighted.getSum(), 0.);
+        assertEquals(repeated.getMin(), weighted.getMin(), 0.);
+        assertEquals(repeated.getMax(), weighted.getMax(), 0.);
+        assertEquals(repeated.getMean(), weighted.getMean(), 1e-9);
+        assertEquals(repeated.getVariance(), weighted.getVariance(), 1e-9);
+        assertEquals(repeated.getPercentile(50), weighted.getPercentile(50), 0.);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.counters;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.stopwatches.Clock;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WindowedCounterTest {
+    @Test
+    public void window() {
+        final ManualClock clock = new ManualClock();
+        final WindowedCounter counter = new WindowedCounter(new Counter.Key(Role.PERFORMANCES, "window"), new InMemoryCounterDataStore(), 2, 200, clock);
+        for (int i = 0; i < 10; i++) {
+            counter.add(5);
+        }
+
+        final Counter last = counter.window(200);
+        assertEquals(10, last.getHits());
+        assertEquals(50, last.getSum(), 0);
+        assertEquals(5, last.getMax(), 0);
+
+        clock.advance(200); // previous bucket is still in the window but not in the last 200ms
+        counter.add(3);
+        assertEquals(1, counter.window(200).getHits());
+        assertEquals(11, counter.window(400).getHits());
+        assertEquals(53, counter.window(400).getSum(), 0);
+        assertEquals(3, counter.window(400).getMin(), 0);
+
+        clock.advance(counter.getWindowDuration()); // all buckets are outdated, first one is recycled
+        counter.add(7);
+
+        final Counter window = counter.window(counter.getWindowDuration());
+        assertEquals(1, window.getHits());
+        assertEquals(7, window.getSum(), 0);
+        assertEquals(7, window.getPercentile(50), 0);
+
+        // cumulative values are untouched
+        assertEquals(12, counter.getHits());
+        assertEquals(60, counter.getSum(), 0);
+    }
+
+    @Test
+    public void reset() {
+        final WindowedCounter counter = new WindowedCounter(new Counter.Key(Role.PERFORMANCES, "reset"), new InMemoryCounterDataStore(), 2, 200, new ManualClock());
+        counter.add(5);
+        counter.reset();
+        assertEquals(0, counter.window(400).getHits());
+
+        counter.add(2);
+        assertEquals(1, counter.window(400).getHits());
+        assertEquals(2, counter.window(400).getMax(), 0);
+    }
+
+    @Test
+    public void concurrentReads() throws InterruptedException {
+        final ManualClock clock = new ManualClock();
+        final WindowedCounter counter = new WindowedCounter(new Counter.Key(Role.PERFORMANCES, "concurrentReads"), new InMemoryCounterDataStore(), 4, 100, clock);
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final CountDownLatch readerStarted = new CountDownLatch(1);
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                readerStarted.countDown();
+                while (!done.get()) {
+                    final Counter window = counter.window(counter.getWindowDuration());
+                    // values are all 1 so any torn read shows up as sum != hits
+                    if (window.getSum() != window.getHits() || (window.getHits() > 0 && window.getMax() != 1)) {
+                        consistent.set(false);
+                    }
+                }
+            }
+        };
+        reader.start();
+        readerStarted.await();
+
+        for (int i = 0; i < 200000; i++) {
+            counter.add(1);
+            if (i % 1000 == 0) {
+                clock.advance(100);
+            }
+        }
+        done.set(true);
+        reader.join();
+
+        assertTrue(consistent.get());
+        assertEquals(200000, counter.getHits());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnlyWindow() {
+        new WindowedCounter(new Counter.Key(Role.PERFORMANCES, "readOnlyWindow"), new InMemoryCounterDataStore(), 2, 200).window(200).add(1);
+    }
+
+    @Test
+    public void notWindowed() {
+        final Counter counter = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, "notWindowed"), new InMemoryCounterDataStore());
+        assertEquals(counter, WindowedCounter.window(counter, 1000));
+    }
+
+    // advanced by the test, read by the writer and the reader threads
+    private static class ManualClock implements Clock {
+        private volatile long time = 0;
+
+        public void advance(final long ms) {
+            time += ms * 1000000;
+        }
+
+        @Override
+        public long nanoTime() {
+            return time;
+        }
+    }
+}
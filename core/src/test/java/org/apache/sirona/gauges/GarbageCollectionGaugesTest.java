@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.gauges;
+
+import org.apache.sirona.gauges.jvm.AllocationRateGauge;
+import org.apache.sirona.gauges.jvm.GCTimeGauge;
+import org.apache.sirona.gauges.jvm.GarbageCollectionListener;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GarbageCollectionGaugesTest {
+    @Test
+    public void notifications() throws Exception {
+        final AllocationRateGauge allocation = new AllocationRateGauge();
+        final GCTimeGauge gcTime = new GCTimeGauge();
+        try {
+            final GarbageCollectionListener listener = GarbageCollectionListener.get();
+            final long allocated = listener.getAllocatedBytes();
+            final long gcTimeBefore = listener.getGcTime();
+
+            for (int i = 0; i < 50 && (listener.getAllocatedBytes() == allocated || listener.getGcTime() == gcTimeBefore); i++) {
+                final List<byte[]> garbage = new LinkedList<byte[]>();
+                for (int j = 0; j < 1024 * (1 + i / 10); j++) {
+                    garbage.add(new byte[1024 * 16]);
+                }
+                assertTrue(garbage.size() > 0);
+                System.gc();
+                Thread.sleep(200); // notifications are asynchronous
+            }
+
+            assertTrue(listener.getAllocatedBytes() > allocated);
+            assertTrue(allocation.value() > 0);
+            assertTrue(gcTime.value() > 0); // ms spent in the System.gc() calls
+            assertEquals(0, gcTime.value(), 0); // variation since previous sample, no GC meanwhile
+        } finally {
+            allocation.release();
+            gcTime.release();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.gauges;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Unit;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GaugeSamplerTest {
+    @Test
+    public void timeouts() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Gauge hanging = new TestGauge("hanging") {
+            @Override
+            public double value() {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }
+        };
+        final Gauge failing = new TestGauge("failing") {
+            @Override
+            public double value() {
+                throw new IllegalStateException("expected");
+            }
+        };
+        final Gauge fast = new TestGauge("fast");
+
+        final GaugeSampler sampler = new GaugeSampler(2, 200);
+        try {
+            final long start = System.nanoTime();
+            final Map<Role, Double> values = sampler.sample(Arrays.asList(hanging, failing, fast));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(3, values.size());
+            assertEquals(2., values.get(fast.role()), 0);
+            assertTrue(Double.isNaN(values.get(hanging.role())));
+            assertTrue(Double.isNaN(values.get(failing.role())));
+
+            // still hanging: missing right away
+            final AtomicReference<Double> async = new AtomicReference<Double>();
+            sampler.sampleAsync(hanging, new GaugeSampler.Listener() {
+                @Override
+                public void onSample(final Role role, final long time, final double value) {
+                    async.set(value);
+                }
+            });
+            assertTrue(Double.isNaN(async.get()));
+
+            release.countDown();
+            Thread.sleep(100);
+            assertEquals(1., sampler.sample(Arrays.asList(hanging)).get(hanging.role()), 0);
+        } finally {
+            release.countDown();
+            sampler.shutdown();
+        }
+    }
+
+    private static class TestGauge implements Gauge {
+        private final Role role;
+
+        private TestGauge(final String name) {
+            role = new Role(name, Unit.UNARY);
+        }
+
+        @Override
+        public Role role() {
+            return role;
+        }
+
+        @Override
+        public double value() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.DefaultCounter;
+import org.apache.sirona.repositories.Repository;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// not executed by the build (not a *Test), run it manually to compare clock overheads
+public class ClockBench {
+    private static final int LOOPS = 20000000;
+
+    @Test
+    public void nano() {
+        run("nano", Clocks.SYSTEM);
+    }
+
+    @Test
+    public void coarse() {
+        final CoarseClock clock = new CoarseClock(1000000);
+        clock.start();
+        try {
+            run("coarse", clock);
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void tick() {
+        final TickClock clock = new TickClock(1000000);
+        clock.start();
+        try {
+            run("tick", clock);
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void timer() { // full startTimer/stopTimer path with the configured clock of the role
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "clock-bench"));
+        for (int i = 0; i < LOOPS / 10; i++) { // warm up
+            Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        }
+        counter.reset();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        }
+        final long duration = System.nanoTime() - start;
+        final Clock clock = Clocks.of(Role.PERFORMANCES);
+        System.out.printf("timer (%s) : %,d ns/invocation %n\n", clock == Clocks.SYSTEM ? "nano" : clock.getClass().getSimpleName(), duration / LOOPS);
+        assertEquals(LOOPS, counter.getHits());
+    }
+
+    private static void run(final String mode, final Clock clock) {
+        final Counter counter = new DefaultCounter(new Counter.Key(Role.PERFORMANCES, mode), new InMemoryCounterDataStore());
+
+        long sink = 0;
+        for (int i = 0; i < LOOPS / 10; i++) { // warm up
+            sink += clock.nanoTime() - clock.nanoTime();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final long begin = clock.nanoTime();
+            sink += clock.nanoTime() - begin;
+        }
+        final long duration = System.nanoTime() - start;
+        counter.add(sink); // keeps the loop alive
+
+        System.out.printf("%s : %,.2f ns/2 reads %n\n", mode, duration / (double) LOOPS);
+        assertEquals(1, counter.getHits());
+    }
+}
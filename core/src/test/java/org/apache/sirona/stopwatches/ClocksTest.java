@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.DefaultCounter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClocksTest {
+    @Test
+    public void defaultClock() {
+        assertSame(Clocks.SYSTEM, Clocks.of(Role.PERFORMANCES));
+    }
+
+    @Test
+    public void roleClock() {
+        final Role role = new Role("tick-clock-test", Unit.Time.NANOSECOND);
+        assertTrue(TickClock.class.isInstance(Clocks.of(role)));
+        assertSame(Clocks.of(role), Clocks.of(role));
+    }
+
+    @Test
+    public void coarse() throws InterruptedException {
+        final CoarseClock clock = new CoarseClock(100000);
+        clock.start();
+        try {
+            final long start = clock.nanoTime();
+            assertEquals(start, clock.nanoTime()); // no update without a tick
+            Thread.sleep(50);
+            final long elapsed = clock.nanoTime() - start;
+            assertTrue(elapsed >= 40000000 && elapsed < 1000000000);
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void tick() throws InterruptedException {
+        final TickClock clock = new TickClock(1000000);
+        clock.start();
+        try {
+            final long start = clock.nanoTime();
+            Thread.sleep(50);
+            final long elapsed = clock.nanoTime() - start;
+            assertTrue(elapsed > 0 && elapsed <= 60000000);
+            assertEquals(0, elapsed % 1000000);
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void stopWatch() throws InterruptedException {
+        final Counter counter = new DefaultCounter(new Counter.Key(new Role("tick-clock-test", Unit.Time.NANOSECOND), "watch"), new InMemoryCounterDataStore());
+        final StopWatch watch = new CounterStopWatch(counter);
+        Thread.sleep(20);
+        watch.stop();
+
+        assertEquals(1, counter.getHits());
+        assertTrue(watch.getElapsedTime() > 0);
+        assertEquals(0, watch.getElapsedTime() % 1000000); // ticks of the default resolution
+    }
+}
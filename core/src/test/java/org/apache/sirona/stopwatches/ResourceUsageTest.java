@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.stopwatches;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceUsageTest {
+    private static final Role ROLE = new Role("resource-usage-test", Unit.Time.NANOSECOND);
+
+    private static volatile Object sink;
+
+    @Before
+    @After
+    public void reset() {
+        Repository.INSTANCE.clearCounters();
+    }
+
+    @Test
+    public void activation() {
+        assertTrue(ResourceUsage.isActive(ROLE));
+        assertFalse(ResourceUsage.isActive(Role.PERFORMANCES));
+        assertEquals("resource-usage-test-cpu", ResourceUsage.cpuRole(ROLE).getName());
+        assertEquals("resource-usage-test-alloc", ResourceUsage.allocationRole(ROLE).getName());
+    }
+
+    @Test
+    public void timer() {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "timer"));
+        final long start = Repository.INSTANCE.startTimer(counter);
+        work();
+        Repository.INSTANCE.stopTimer(counter, start);
+
+        assertSiblings("timer", 1);
+    }
+
+    @Test
+    public void stopWatch() {
+        final StopWatch watch = Repository.INSTANCE.start(Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "watch")));
+        work();
+        watch.stop();
+
+        assertSiblings("watch", 1);
+    }
+
+    @Test
+    public void inactiveRole() {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "inactive"));
+        Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+
+        for (final Counter c : Repository.INSTANCE.counters()) {
+            assertEquals(Role.PERFORMANCES, c.getKey().getRole());
+        }
+    }
+
+    @Test
+    public void unbalancedTimers() {
+        final Counter outer = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "outer"));
+        final Counter inner = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "inner"));
+
+        final long start = Repository.INSTANCE.startTimer(outer);
+        Repository.INSTANCE.startTimer(inner); // never stopped, failure between start and stop
+        work();
+        Repository.INSTANCE.stopTimer(outer, start);
+
+        assertSiblings("outer", 1);
+        assertEquals(0, Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.cpuRole(ROLE), "inner")).getHits());
+    }
+
+    @Test
+    public void framesAreReleased() {
+        final Counter[] counters = new Counter[10]; // more than the initial depth
+        final long[] starts = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "nested-" + i));
+            starts[i] = Repository.INSTANCE.startTimer(counters[i]);
+        }
+        for (int i = counters.length - 1; i >= 0; i--) {
+            assertTrue(ResourceUsage.hasFrames());
+            Repository.INSTANCE.stopTimer(counters[i], starts[i]);
+        }
+
+        assertFalse(ResourceUsage.hasFrames()); // nothing kept in the thread once the last timer stopped
+        for (int i = 0; i < counters.length; i++) {
+            assertEquals(1, Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.cpuRole(ROLE), "nested-" + i)).getHits());
+        }
+    }
+
+    @Test
+    public void sameStart() { // coarse clocks give the same start to nested timers
+        final Counter outer = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "same-outer"));
+        final Counter inner = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "same-inner"));
+
+        ResourceUsage.begin(outer, 1);
+        ResourceUsage.begin(inner, 1); // never stopped
+        work();
+        ResourceUsage.end(Repository.INSTANCE, outer, 1, 1);
+        ResourceUsage.end(Repository.INSTANCE, inner, 1, 1); // its frame was dropped with the outer one
+
+        assertSiblings("same-outer", 1);
+        assertEquals(0, Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.cpuRole(ROLE), "same-inner")).getHits());
+    }
+
+    @Test
+    public void clearedSiblings() {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "cleared"));
+        Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        Repository.INSTANCE.clearCounters();
+
+        final Counter newCounter = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "cleared"));
+        final long start = Repository.INSTANCE.startTimer(newCounter);
+        work();
+        Repository.INSTANCE.stopTimer(newCounter, start);
+
+        assertSiblings("cleared", 1);
+    }
+
+    @Test
+    public void otherThread() throws InterruptedException {
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(ROLE, "async"));
+        final StopWatch watch = Repository.INSTANCE.start(counter);
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                watch.stop();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(1, counter.getHits());
+        assertEquals(0, Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.cpuRole(ROLE), "async")).getHits());
+    }
+
+    private static void assertSiblings(final String name, final int hits) {
+        final Counter cpu = Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.cpuRole(ROLE), name));
+        assertEquals(hits, cpu.getHits());
+        assertTrue(cpu.getMax() >= 0);
+
+        if (ResourceUsage.allocatedBytes() >= 0) {
+            final Counter alloc = Repository.INSTANCE.getCounter(new Counter.Key(ResourceUsage.allocationRole(ROLE), name));
+            assertEquals(hits, alloc.getHits());
+            assertTrue(alloc.getMax() >= 1024 * 1024);
+        }
+    }
+
+    private static void work() {
+        for (int i = 0; i < 16; i++) {
+            sink = new byte[64 * 1024];
+        }
+    }
+}
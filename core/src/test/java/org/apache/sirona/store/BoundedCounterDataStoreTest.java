@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCounterDataStoreTest {
+    private static final Role BOUNDED = new Role("bounded", Unit.Time.NANOSECOND);
+
+    @Test
+    public void evictLeastRecentlyUpdated() throws InterruptedException {
+        final InMemoryCounterDataStore store = new TwoCountersStore();
+        try {
+            final Counter a = store.getOrCreateCounter(new Counter.Key(BOUNDED, "a"));
+            final Counter b = store.getOrCreateCounter(new Counter.Key(BOUNDED, "b"));
+            Thread.sleep(20);
+            a.add(1);
+            Thread.sleep(20);
+
+            final Counter c = store.getOrCreateCounter(new Counter.Key(BOUNDED, "c"));
+            final Collection<Counter> counters = store.getCounters();
+            assertEquals(2, counters.size());
+            assertTrue(counters.contains(a));
+            assertTrue(counters.contains(c));
+            assertFalse(counters.contains(b));
+
+            // an old reference still feeds the current counter of its key
+            b.add(2);
+            final Counter newB = store.getOrCreateCounter(new Counter.Key(BOUNDED, "b"));
+            assertNotSame(b, newB);
+            assertEquals(1, newB.getHits());
+            assertEquals(2, newB.getSum(), 0);
+            assertEquals(2, store.getCounters().size());
+
+            // other roles are not bounded
+            for (int i = 0; i < 5; i++) {
+                store.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "unbounded-" + i));
+            }
+            assertEquals(7, store.getCounters().size());
+        } finally {
+            store.clearCounters();
+        }
+    }
+
+    @Test
+    public void recentlyUpdatedCountersGetASecondChance() throws InterruptedException {
+        final Role role = new Role("bounded-clock", Unit.UNARY);
+        final AtomicInteger configReads = new AtomicInteger();
+        final InMemoryCounterDataStore store = new InMemoryCounterDataStore() {
+            @Override
+            protected int getMaxCounters(final Role r) {
+                configReads.incrementAndGet();
+                return role.equals(r) ? 10 : 0;
+            }
+        };
+        try {
+            final Counter[] counters = new Counter[10];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = store.getOrCreateCounter(new Counter.Key(role, "c" + i));
+            }
+            Thread.sleep(20);
+            for (int i = 0; i < 5; i++) { // first ones in the clock but recently used
+                counters[i].add(1);
+            }
+            Thread.sleep(20);
+
+            for (int i = 0; i < 5; i++) {
+                store.getOrCreateCounter(new Counter.Key(role, "new" + i));
+            }
+
+            final Collection<Counter> current = store.getCounters();
+            assertEquals(10, current.size());
+            for (int i = 0; i < 5; i++) {
+                assertTrue(current.contains(counters[i]));
+                assertFalse(current.contains(counters[i + 5]));
+            }
+
+            store.clearCounters();
+            store.getOrCreateCounter(new Counter.Key(role, "after-clear"));
+            assertEquals(1, configReads.get());
+        } finally {
+            store.clearCounters();
+        }
+    }
+
+    private static class TwoCountersStore extends InMemoryCounterDataStore {
+        @Override
+        protected int getMaxCounters(final Role role) {
+            return BOUNDED.equals(role) ? 2 : 0;
+        }
+    }
+}
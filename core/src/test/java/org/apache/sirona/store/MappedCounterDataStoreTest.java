@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.SironaException;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.DefaultCounter;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.apache.sirona.store.counter.MappedCounter;
+import org.apache.sirona.store.counter.MappedCounterDataStore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedCounterDataStoreTest {
+    @Test
+    public void survivesRestart() throws Exception {
+        final File file = new File("target/mapped/survivesRestart.dat");
+        final Counter.Key key = new Counter.Key(Role.PERFORMANCES, "mapped");
+
+        final MappedCounterDataStore store = new MappedCounterDataStore(file, 4);
+        final Counter counter = store.getOrCreateCounter(key);
+        assertTrue(MappedCounter.class.isInstance(counter));
+        counter.add(1);
+        counter.add(3);
+        store.cleanUp();
+
+        // a sidecar can read it without any store
+        final Collection<Counter> read = MappedCounterDataStore.read(file);
+        assertEquals(1, read.size());
+        final Counter sidecar = read.iterator().next();
+        assertEquals(key, sidecar.getKey());
+        assertEquals(2, sidecar.getHits());
+        assertEquals(4, sidecar.getSum(), 0);
+
+        final MappedCounterDataStore restarted = new MappedCounterDataStore(file, 4);
+        try {
+            assertEquals(1, restarted.getCounters().size());
+            final Counter restored = restarted.getOrCreateCounter(key);
+            assertEquals(2, restored.getHits());
+            assertEquals(1, restored.getMin(), 0);
+            assertEquals(3, restored.getMax(), 0);
+            assertEquals(2, restored.getMean(), 0);
+            assertEquals(2, restored.getVariance(), 0);
+
+            restored.add(5);
+            assertEquals(3, restored.getHits());
+            assertEquals(9, restored.getSum(), 0);
+        } finally {
+            restarted.clearCounters();
+            restarted.cleanUp();
+        }
+    }
+
+    @Test
+    public void restoredCountersAreBounded() throws Exception {
+        final File file = new File("target/mapped/restoredCountersAreBounded.dat");
+        final MappedCounterDataStore store = new MappedCounterDataStore(file, 4);
+        store.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "first")).add(1);
+        store.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "second")).add(1);
+        store.cleanUp();
+
+        final MappedCounterDataStore restarted = new MappedCounterDataStore(file, 4) {
+            @Override
+            protected int getMaxCounters(final Role role) {
+                return 2;
+            }
+        };
+        try {
+            assertEquals(2, restarted.getCounters().size());
+
+            // the restored counters use the whole budget of the role
+            final Counter third = restarted.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "third"));
+            assertEquals(InMemoryCounterDataStore.OVERFLOW_COUNTER_NAME, third.getKey().getName());
+        } finally {
+            restarted.clearCounters();
+            restarted.cleanUp();
+        }
+    }
+
+    @Test
+    public void fileIsLocked() throws Exception {
+        final File file = new File("target/mapped/fileIsLocked.dat");
+        final MappedCounterDataStore store = new MappedCounterDataStore(file, 2);
+        try {
+            new MappedCounterDataStore(file, 2);
+            fail("two stores shouldn't share a file");
+        } catch (final SironaException se) {
+            // ok
+        } finally {
+            store.cleanUp();
+        }
+
+        new MappedCounterDataStore(file, 2).cleanUp(); // released
+    }
+
+    @Test
+    public void overflowsOnHeap() throws Exception {
+        final MappedCounterDataStore store = new MappedCounterDataStore(new File("target/mapped/overflowsOnHeap.dat"), 1);
+        try {
+            assertTrue(MappedCounter.class.isInstance(store.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "mapped"))));
+
+            final Counter onHeap = store.getOrCreateCounter(new Counter.Key(Role.PERFORMANCES, "heap"));
+            assertTrue(DefaultCounter.class.isInstance(onHeap));
+            onHeap.add(2);
+            assertEquals(1, onHeap.getHits());
+        } finally {
+            store.clearCounters();
+            store.cleanUp();
+        }
+    }
+
+    @Test
+    public void recoversInterruptedWrite() throws Exception {
+        final File file = new File("target/mapped/recoversInterruptedWrite.dat");
+        final Counter.Key key = new Counter.Key(Role.PERFORMANCES, "crashed");
+
+        final MappedCounterDataStore store = new MappedCounterDataStore(file, 2);
+        store.getOrCreateCounter(key).add(2);
+        store.cleanUp();
+
+        // simulate a JVM killed between beginWrite() and endWrite()
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(MappedCounterDataStore.HEADER_SIZE);
+            final long sequence = raf.readLong();
+            raf.seek(MappedCounterDataStore.HEADER_SIZE);
+            raf.writeLong(sequence + 1);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            MappedCounterDataStore.read(file);
+            fail("a slot locked forever shouldn't be read");
+        } catch (final IOException ioe) {
+            // ok
+        }
+
+        final MappedCounterDataStore restarted = new MappedCounterDataStore(file, 2);
+        try {
+            final Counter restored = restarted.getOrCreateCounter(key);
+            restored.add(4);
+            restored.updateConcurrency(3);
+            assertEquals(2, restored.getHits());
+
+            final Counter sidecar = MappedCounterDataStore.read(file).iterator().next();
+            assertEquals(2, sidecar.getHits());
+            assertEquals(6, sidecar.getSum(), 0);
+            assertEquals(3, sidecar.getMaxConcurrency());
+        } finally {
+            restarted.clearCounters();
+            restarted.cleanUp();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedGaugeHistoryTest {
+    @Test
+    public void roundTrip() {
+        final Random random = new Random(1234);
+        final long[] times = new long[5000];
+        final double[] values = new double[times.length];
+        long time = 1400000000000L;
+        for (int i = 0; i < times.length; i++) {
+            time += i % 7 == 0 ? 1 + random.nextInt(1000000) : 60000 + random.nextInt(3) - 1; // mainly regular with jitter
+            times[i] = time;
+            switch (i % 5) {
+                case 0: values[i] = random.nextDouble() * 1000; break;
+                case 1: values[i] = i; break;
+                case 2: values[i] = -random.nextInt(10); break;
+                case 3: values[i] = i % 10 == 3 ? Double.NaN : Double.MAX_VALUE; break;
+                default: values[i] = values[i - 1];
+            }
+        }
+
+        final CompressedGaugeHistory history = new CompressedGaugeHistory(times.length, 100);
+        for (int i = 0; i < times.length; i++) {
+            history.add(times[i], values[i]);
+        }
+        assertEquals(times.length, history.size());
+        assertTrue(history.bytes() < times.length * 16L);
+
+        final SortedMap<Long, Double> all = history.range(0, Long.MAX_VALUE);
+        assertEquals(times.length, all.size());
+        int i = 0;
+        for (final Map.Entry<Long, Double> entry : all.entrySet()) {
+            assertEquals(times[i], entry.getKey().longValue());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(entry.getValue()));
+            i++;
+        }
+
+        // crosses blocks
+        final SortedMap<Long, Double> range = history.range(times[150], times[420]);
+        assertEquals(271, range.size());
+        assertEquals(times[150], range.firstKey().longValue());
+        assertEquals(times[420], range.lastKey().longValue());
+    }
+
+    @Test
+    public void evictsBlocks() {
+        final CompressedGaugeHistory history = new CompressedGaugeHistory(100, 10);
+        for (int i = 0; i < 250; i++) {
+            history.add(i * 10, i);
+        }
+        history.add(5, 0); // out of order, ignored
+
+        assertEquals(100, history.size());
+        assertEquals(1500, history.range(0, Long.MAX_VALUE).firstKey().longValue());
+
+        history.evictBefore(2000);
+        assertEquals(50, history.size());
+
+        final Iterator<Double> values = history.range(2000, 2020).values().iterator();
+        assertEquals(200, values.next(), 0);
+        assertEquals(201, values.next(), 0);
+        assertEquals(202, values.next(), 0);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.Assert.assertEquals;
+
+// not a *Test to avoid to slow down the build, compares the old skip list to gauge histories
+public class GaugeHistoryBench {
+    private static final int POINTS = 1000000;
+    private static final int QUERIES = 200;
+    private static final long PERIOD = 4000;
+
+    @Test
+    public void skipList() {
+        final long before = usedMemory();
+        final ConcurrentSkipListMap<Long, Double> map = new ConcurrentSkipListMap<Long, Double>();
+        for (int i = 0; i < POINTS; i++) {
+            map.put(i * PERIOD, value(i));
+        }
+        final long memory = usedMemory() - before;
+
+        final long start = System.nanoTime();
+        long points = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            points += sum(map.subMap(from(i), true, from(i) + PERIOD * 1000, true));
+        }
+        report("ConcurrentSkipListMap", memory, System.nanoTime() - start, points);
+    }
+
+    @Test
+    public void ring() {
+        bench("RingGaugeHistory", new RingGaugeHistory(POINTS));
+    }
+
+    @Test
+    public void compressed() {
+        bench("CompressedGaugeHistory", new CompressedGaugeHistory(POINTS, 512));
+    }
+
+    private static void bench(final String name, final GaugeHistory history) {
+        final long before = usedMemory();
+        for (int i = 0; i < POINTS; i++) {
+            history.add(i * PERIOD, value(i));
+        }
+        final long memory = usedMemory() - before;
+
+        final long start = System.nanoTime();
+        long points = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            points += sum(history.range(from(i), from(i) + PERIOD * 1000));
+        }
+        report(name, memory, System.nanoTime() - start, points);
+        assertEquals(POINTS, history.size());
+        if (CompressedGaugeHistory.class.isInstance(history)) { // heap delta is in the gc noise
+            System.out.printf("%s : %.2f encoded bytes/point%n", name, CompressedGaugeHistory.class.cast(history).bytes() * 1. / POINTS);
+        }
+    }
+
+    private static double value(final int i) { // a slowly changing gauge
+        return 100 + (i / 60) % 20;
+    }
+
+    private static long from(final int query) {
+        return (query * 4999L % POINTS) * PERIOD;
+    }
+
+    private static long sum(final SortedMap<Long, Double> values) {
+        long n = 0;
+        for (final Map.Entry<Long, Double> entry : values.entrySet()) {
+            if (entry.getValue() > 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static void report(final String name, final long memory, final long duration, final long points) {
+        System.out.printf("%s : %.2f bytes/point, %,d ns/query (%,d points read)%n", name, memory * 1. / POINTS, duration / QUERIES, points);
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.gauges.PeriodicGauge;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+public class PeriodicGaugeTest {
+    @Test
+    public void ownPeriod() throws Exception {
+        final Role role = new Role("periodic", Unit.UNARY);
+        final InMemoryGaugeDataStore store = IoCs.processInstance(new InMemoryGaugeDataStore()); // 1mn store period
+        try {
+            store.createOrNoopGauge(role);
+            store.addGauge(new PeriodicGauge() {
+                @Override
+                public long period() {
+                    return 50;
+                }
+
+                @Override
+                public Role role() {
+                    return role;
+                }
+
+                @Override
+                public double value() {
+                    return 1;
+                }
+            });
+
+            final long start = System.currentTimeMillis();
+            SortedMap<Long, Double> values = null;
+            for (int i = 0; i < 100 && (values == null || values.size() < 3); i++) {
+                Thread.sleep(50);
+                values = store.getGaugeValues(new GaugeValuesRequest(0, System.currentTimeMillis(), role));
+            }
+            final long duration = System.currentTimeMillis() - start;
+
+            // sampled with the gauge period and not the store one (1mn), alignment is TimerWheelTest job
+            assertTrue(values.toString(), values.size() >= 3);
+            assertTrue(values.toString(), values.size() <= duration / 50 + 2);
+        } finally {
+            store.gaugeStopped(role);
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void slowPushDoesntBlockSampling() throws Exception {
+        final Role role = new Role("periodic-slow-push", Unit.UNARY);
+        final AtomicInteger samples = new AtomicInteger();
+        final SlowPushStore store = IoCs.processInstance(new SlowPushStore());
+        try {
+            store.createOrNoopGauge(role);
+            store.addGauge(new PeriodicGauge() {
+                @Override
+                public long period() {
+                    return 50;
+                }
+
+                @Override
+                public Role role() {
+                    return role;
+                }
+
+                @Override
+                public double value() {
+                    samples.incrementAndGet();
+                    return 1;
+                }
+            });
+
+            Thread.sleep(1500);
+
+            // pushes every 200ms each taking 300ms would leave a few samples if they ran on the wheel thread
+            assertTrue(String.valueOf(samples.get()), samples.get() >= 15);
+
+            // all samples queued since last push are sent at once
+            boolean batched = false;
+            for (final Integer size : store.pushedSizes) {
+                batched |= size > 1;
+            }
+            assertTrue(store.pushedSizes.toString(), batched);
+        } finally {
+            store.gaugeStopped(role);
+            store.shutdown();
+        }
+    }
+
+    public static class SlowPushStore extends InMemoryGaugeDataStore {
+        private final List<Integer> pushedSizes = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        protected int getPeriod(final String name) {
+            return 200;
+        }
+
+        @Override
+        protected void pushGauges(final Map<Role, List<Measure>> gauges) {
+            for (final List<Measure> measures : gauges.values()) {
+                pushedSizes.add(measures.size());
+            }
+            try {
+                Thread.sleep(300);
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
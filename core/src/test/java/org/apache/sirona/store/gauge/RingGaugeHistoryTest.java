@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class RingGaugeHistoryTest {
+    @Test
+    public void range() {
+        final RingGaugeHistory history = new RingGaugeHistory(1000);
+        for (int i = 0; i < 500; i++) {
+            history.add(i * 10, i);
+        }
+
+        final SortedMap<Long, Double> values = history.range(95, 140);
+        assertEquals(5, values.size());
+        assertEquals(100, values.firstKey().longValue());
+        assertEquals(140, values.lastKey().longValue());
+        assertEquals(12., values.get(120L), 0);
+        assertNull(values.get(125L));
+
+        long expected = 100;
+        for (final Map.Entry<Long, Double> entry : values.entrySet()) {
+            assertEquals(expected, entry.getKey().longValue());
+            assertEquals(expected / 10., entry.getValue(), 0);
+            expected += 10;
+        }
+
+        final SortedMap<Long, Double> sub = values.subMap(110L, 130L);
+        assertEquals(2, sub.size());
+        assertEquals(110, sub.firstKey().longValue());
+        assertEquals(3, values.tailMap(120L).size());
+        assertEquals(2, values.headMap(120L).size());
+
+        assertEquals(0, history.range(10000, 20000).size());
+        assertEquals(500, history.range(0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void evictsOldest() {
+        final RingGaugeHistory history = new RingGaugeHistory(100);
+        for (int i = 0; i < 250; i++) {
+            history.add(i, i);
+        }
+
+        assertEquals(100, history.size());
+        final SortedMap<Long, Double> values = history.range(0, Long.MAX_VALUE);
+        assertEquals(150, values.firstKey().longValue());
+        assertEquals(249, values.lastKey().longValue());
+
+        // wrapped range
+        final Iterator<Long> keys = history.range(190, 210).keySet().iterator();
+        for (long i = 190; i <= 210; i++) {
+            assertEquals(i, keys.next().longValue());
+        }
+        assertFalse(keys.hasNext());
+    }
+
+    @Test
+    public void outOfOrder() {
+        final RingGaugeHistory history = new RingGaugeHistory(4);
+        history.add(10, 1);
+        history.add(30, 3);
+        history.add(20, 2);
+        history.add(30, 4); // overwrites
+        assertEquals(3, history.size());
+        assertEquals(4., history.range(30, 30).get(30L), 0);
+
+        history.add(40, 5);
+        history.add(5, 0); // full and older than everything
+        assertEquals(10, history.range(0, 100).firstKey().longValue());
+
+        history.add(25, 6); // full, evicts the oldest point
+        final SortedMap<Long, Double> values = history.range(0, 100);
+        assertEquals(4, values.size());
+        assertEquals(20, values.firstKey().longValue());
+        assertEquals(6., values.get(25L), 0);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.store.gauge;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.gauges.Gauge;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollupGaugeDataStoreTest {
+    private static final long MINUTE = 60000;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    public void tiers() {
+        final Role role = new Role("rollup", Unit.UNARY);
+        final RollupGaugeDataStore store = new RollupGaugeDataStore();
+        store.createOrNoopGauge(role);
+
+        final long now = System.currentTimeMillis() / HOUR * HOUR;
+        for (long time = now - 72 * HOUR; time < now; time += MINUTE) {
+            store.addToGauge(role, time, (time / MINUTE) % 60); // 0 -> 59 each hour
+        }
+
+        // raw points
+        final SortedMap<Long, Double> raw = store.getGaugeValues(new GaugeValuesRequest(now - 30 * MINUTE, now, role));
+        assertEquals(30, raw.size());
+        assertEquals(30., raw.get(now - 30 * MINUTE), 0);
+
+        // older than raw retention and too many points for the minute tier
+        final SortedMap<Long, Double> hours = store.getGaugeValues(new GaugeValuesRequest(now - 20 * HOUR, now, role));
+        assertEquals(20, hours.size());
+        for (final Double mean : hours.values()) {
+            assertEquals(29.5, mean, 0);
+        }
+
+        // not kept in minute tier anymore
+        assertEquals(48, store.getGaugeValues(new GaugeValuesRequest(now - 48 * HOUR, now - 1, role)).size());
+
+        // minute tier
+        final SortedMap<Long, Double> minutes = store.getGaugeValues(new GaugeValuesRequest(now - 5 * HOUR, now - 4 * HOUR - 1, role));
+        assertEquals(60, minutes.size());
+
+        final Value value = store.getGaugeRollup(role, HOUR).values(now - HOUR, now - 1).get(now - HOUR);
+        assertEquals(60, value.getN());
+        assertEquals(0, value.getMin(), 0);
+        assertEquals(59, value.getMax(), 0);
+        assertEquals(29.5, value.getMean(), 0);
+    }
+
+    @Test
+    public void truncatedRawPoints() {
+        final Role role = new Role("rollup-truncated", Unit.UNARY);
+        final RollupGaugeDataStore store = new RollupGaugeDataStore();
+        store.createOrNoopGauge(role);
+
+        // a 1s gauge, raw points only keep gauge.max-size (100) of them
+        final long now = System.currentTimeMillis() / MINUTE * MINUTE;
+        for (long time = now - 30 * MINUTE; time < now; time += 1000) {
+            store.addToGauge(role, time, 1);
+        }
+
+        final SortedMap<Long, Double> values = store.getGaugeValues(new GaugeValuesRequest(now - 30 * MINUTE, now, role));
+        assertEquals(30, values.size());
+        assertEquals(now - 30 * MINUTE, values.firstKey().longValue());
+    }
+
+    @Test
+    public void pushedOnce() throws Exception {
+        final Role role = new Role("rollup-pushed", Unit.UNARY);
+        final FastRollupGaugeDataStore store = IoCs.processInstance(new FastRollupGaugeDataStore());
+        try {
+            store.createOrNoopGauge(role);
+            store.addGauge(new Gauge() {
+                @Override
+                public Role role() {
+                    return role;
+                }
+
+                @Override
+                public double value() {
+                    return 2;
+                }
+            });
+
+            for (int i = 0; i < 100 && store.pushes.get() < 3; i++) {
+                Thread.sleep(50);
+            }
+            store.shutdown();
+            assertTrue(store.pushes.get() >= 3);
+
+            final int raw = store.gauges.get(role).size(); // one point per snapshot
+            long n = 0;
+            double sum = 0;
+            for (final Value value : store.getGaugeRollup(role, MINUTE).values(0, Long.MAX_VALUE).values()) {
+                n += value.getN();
+                sum += value.getSum();
+            }
+            assertEquals(raw, n);
+            assertEquals(2. * raw, sum, 0);
+        } finally {
+            store.gaugeStopped(role);
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void roundRobin() {
+        final GaugeRollup rollup = new GaugeRollup(10, 3);
+        for (int i = 0; i < 100; i++) {
+            rollup.add(i, i);
+        }
+        rollup.add(5, 1000); // too old, ignored
+
+        final SortedMap<Long, Double> values = rollup.range(0, Long.MAX_VALUE);
+        assertEquals(3, values.size());
+        assertEquals(70, values.firstKey().longValue());
+        assertEquals(94.5, values.get(90L), 0);
+        assertTrue(rollup.range(0, 50).isEmpty());
+        assertEquals(1, rollup.values(80, 89).size());
+    }
+
+    public static class FastRollupGaugeDataStore extends RollupGaugeDataStore {
+        private final AtomicInteger pushes = new AtomicInteger();
+
+        @Override
+        protected int getPeriod(final String name) {
+            return 100;
+        }
+
+        @Override
+        protected void pushGauges(final Map<Role, List<Measure>> gauges) {
+            super.pushGauges(gauges);
+            pushes.incrementAndGet();
+        }
+    }
+}
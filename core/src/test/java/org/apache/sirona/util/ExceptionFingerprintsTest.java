@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExceptionFingerprintsTest {
+    @After
+    public void clear() {
+        ExceptionFingerprints.clearSamples();
+    }
+
+    @Test
+    public void sameOriginSameFingerprint() {
+        final String[] fingerprints = new String[2];
+        final String[] messages = { "first message", "another message" };
+        for (int i = 0; i < fingerprints.length; i++) { // same frames
+            fingerprints[i] = ExceptionFingerprints.record(fail(messages[i]));
+        }
+
+        final String first = fingerprints[0];
+        assertEquals(first, fingerprints[1]);
+        assertTrue(first.startsWith(IllegalStateException.class.getName() + '#'));
+
+        final String sample = ExceptionFingerprints.sample(first);
+        assertNotNull(sample);
+        assertTrue(sample.contains("first message"));
+        assertFalse(sample.contains("another message"));
+    }
+
+    @Test
+    public void differentOrigin() {
+        final String fingerprint = ExceptionFingerprints.record(fail("message"));
+        assertFalse(fingerprint.equals(ExceptionFingerprints.record(new IllegalStateException("message"))));
+        assertFalse(fingerprint.equals(ExceptionFingerprints.record(new IllegalArgumentException("message"))));
+        assertNull(ExceptionFingerprints.sample("unknown"));
+    }
+
+    private static IllegalStateException fail(final String message) {
+        return new IllegalStateException(message);
+    }
+}
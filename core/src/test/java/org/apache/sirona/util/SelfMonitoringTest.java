@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SelfMonitoringTest {
+    @After
+    public void reset() {
+        Repository.INSTANCE.clearCounters();
+    }
+
+    @Test
+    public void invocationOverhead() {
+        assertTrue(SelfMonitoring.ACTIVE); // see sirona.properties
+
+        final Counter counter = Repository.INSTANCE.getCounter(new Counter.Key(Role.PERFORMANCES, "self"));
+        for (int i = 0; i < 10; i++) {
+            Repository.INSTANCE.stopTimer(counter, Repository.INSTANCE.startTimer(counter));
+        }
+        Repository.INSTANCE.start(counter).stop();
+
+        final Counter invocation = find(Role.SIRONA, "invocation");
+        assertEquals(11, invocation.getHits());
+        assertTrue(invocation.getSum() > 0);
+        assertEquals(11, find(Role.SIRONA, "add-to-counter").getHits());
+    }
+
+    @Test
+    public void record() {
+        SelfMonitoring.record(SelfMonitoring.PAYLOAD, "push", 100);
+        SelfMonitoring.record(SelfMonitoring.PAYLOAD, "push", 300);
+
+        final Counter payload = find(SelfMonitoring.PAYLOAD, "push");
+        assertEquals(2, payload.getHits());
+        assertEquals(200, payload.getMean(), 0);
+        assertEquals(300, payload.getMax(), 0);
+    }
+
+    private static Counter find(final Role role, final String name) {
+        for (final Counter counter : SelfMonitoring.counters()) {
+            if (counter.getKey().equals(new Counter.Key(role, name))) {
+                return counter;
+            }
+        }
+        assertNotNull(null);
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+    @Test
+    public void alignedRuns() {
+        final ManualTimerWheel wheel = new ManualTimerWheel(10, 16); // small wheel to test turns
+        final List<Long> runs = new CopyOnWriteArrayList<Long>();
+        wheel.advance(1000003); // not aligned on the period nor the tick
+        final TimerWheel.Task task = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(wheel.currentTimeMillis());
+            }
+        }, 200);
+
+        wheel.advance(1100);
+        assertEquals(runs.toString(), 5, runs.size());
+        long previous = 0;
+        for (final Long time : runs) {
+            assertTrue(runs.toString(), time % 200 < wheel.getTick()); // first tick after a multiple of the period
+            assertTrue(runs.toString(), time - previous >= 200 - wheel.getTick());
+            previous = time;
+        }
+
+        task.cancel();
+        wheel.advance(500);
+        assertEquals(5, runs.size());
+    }
+
+    @Test
+    public void failingTaskKeepsRunning() {
+        final ManualTimerWheel wheel = new ManualTimerWheel(10, 512);
+        final List<Long> runs = new CopyOnWriteArrayList<Long>();
+        wheel.advance(1000000);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(wheel.currentTimeMillis());
+                throw new IllegalStateException("expected");
+            }
+        }, 50);
+
+        wheel.advance(400);
+        assertEquals(runs.toString(), 8, runs.size());
+    }
+
+    @Test
+    public void wheelThread() throws Exception { // real time, only counts with generous bounds
+        final TimerWheel wheel = new TimerWheel(10, 512);
+        wheel.start();
+        try {
+            final List<Long> runs = new CopyOnWriteArrayList<Long>();
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    runs.add(System.currentTimeMillis());
+                }
+            }, 50);
+
+            for (int i = 0; i < 100 && runs.size() < 3; i++) {
+                Thread.sleep(50);
+            }
+            assertTrue(runs.toString(), runs.size() >= 3);
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    // time only moves when the test advances it, tick by tick as the wheel thread would
+    private static class ManualTimerWheel extends TimerWheel {
+        private long time = 0;
+
+        private ManualTimerWheel(final long tick, final int size) {
+            super(tick, size);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return time;
+        }
+
+        private void advance(final long duration) {
+            final long end = time + duration;
+            while (time < end) {
+                time = Math.min(end, time + getTick());
+                advanceTo(time);
+            }
+        }
+    }
+}
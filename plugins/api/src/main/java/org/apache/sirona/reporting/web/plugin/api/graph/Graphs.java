@@ -56,7 +56,8 @@ public class Graphs {
         final Iterator<Map.Entry<Long,Double>> iterator = data.entrySet().iterator();
         while (iterator.hasNext()) {
             final Map.Entry<Long, Double> entry = iterator.next();
-            builder.append("[").append(entry.getKey()).append(", ").append(entry.getValue()).append("]");
+            final Double value = entry.getValue();
+            builder.append("[").append(entry.getKey()).append(", ").append(value.isNaN() ? "null" : value).append("]"); // null = gap
             if (iterator.hasNext()) {
                 builder.append(", ");
             }
@@ -113,12 +114,12 @@ public class Graphs {
     }
 
     private static SortedMap<Long, Double> aggregate(final SortedMap<Long, Double> gaugeValues) {
-        if (gaugeValues.size() < MAX_POINTS || !TreeMap.class.isInstance(gaugeValues)) {
+        if (gaugeValues.size() < MAX_POINTS) {
             return gaugeValues;
         }
 
-        final long min = gaugeValues.keySet().iterator().next();
-        final long max = Number.class.cast(TreeMap.class.cast(gaugeValues).lastKey()).longValue();
+        final long min = gaugeValues.firstKey();
+        final long max = gaugeValues.lastKey();
         final long step = (long) ((max - min) * 1. / MAX_POINTS);
 
         final SortedMap<Long, Double> aggregation = new TreeMap<Long, Double>();
@@ -127,9 +128,9 @@ public class Graphs {
         long number = 0;
         for (final Map.Entry<Long, Double> entry : gaugeValues.entrySet()) {
             final long key = entry.getKey();
-            double value = entry.getValue();
-            if (value == Double.NaN) {
-                value = 0;
+            final double value = entry.getValue();
+            if (Double.isNaN(value)) { // missing sample
+                continue;
             }
 
             if (key < switchValue) {
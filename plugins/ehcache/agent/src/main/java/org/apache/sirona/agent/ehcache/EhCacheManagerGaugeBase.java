@@ -18,10 +18,13 @@ package org.apache.sirona.agent.ehcache;
 
 import net.sf.ehcache.CacheManager;
 import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.counters.Unit;
-import org.apache.sirona.gauges.Gauge;
+import org.apache.sirona.gauges.PeriodicGauge;
+
+public abstract class EhCacheManagerGaugeBase implements PeriodicGauge {
+    private static final long PERIOD = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.ehcache.period", -1);
 
-public abstract class EhCacheManagerGaugeBase implements Gauge {
     private final Role role;
     protected final CacheManager manager;
 
@@ -34,4 +37,9 @@ public abstract class EhCacheManagerGaugeBase implements Gauge {
     public Role role() {
         return role;
     }
+
+    @Override
+    public long period() {
+        return PERIOD;
+    }
 }
@@ -18,10 +18,13 @@ package org.apache.sirona.plugin.hazelcast.agent.gauge;
 
 import com.hazelcast.core.HazelcastInstance;
 import org.apache.sirona.Role;
+import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.counters.Unit;
-import org.apache.sirona.gauges.Gauge;
+import org.apache.sirona.gauges.PeriodicGauge;
+
+public abstract class HazelcastGaugeBase implements PeriodicGauge {
+    private static final long PERIOD = Configuration.getInteger(Configuration.CONFIG_PROPERTY_PREFIX + "gauge.hazelcast.period", -1);
 
-public abstract class HazelcastGaugeBase implements Gauge {
     private final Role role;
     protected final HazelcastInstance instance;
 
@@ -34,4 +37,9 @@ public abstract class HazelcastGaugeBase implements Gauge {
     public Role role() {
         return role;
     }
+
+    @Override
+    public long period() {
+        return PERIOD;
+    }
 }
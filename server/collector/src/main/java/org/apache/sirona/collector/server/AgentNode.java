@@ -18,12 +18,14 @@ package org.apache.sirona.collector.server;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class AgentNode {
     public static final int DEAD_COUNT = 5;
     private final URL url;
     private final AtomicLong missed = new AtomicLong(0);
+    private final AtomicBoolean collecting = new AtomicBoolean(false);
 
     public AgentNode(final String url) throws MalformedURLException {
         this.url = new URL(url);
@@ -45,6 +47,15 @@ public class AgentNode {
         return missed.get() > DEAD_COUNT;
     }
 
+    // false if a poll is already in flight for this agent
+    public boolean startCollect() {
+        return collecting.compareAndSet(false, true);
+    }
+
+    public void endCollect() {
+        collecting.set(false);
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
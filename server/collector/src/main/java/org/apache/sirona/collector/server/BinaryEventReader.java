@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+// reads the compact format of org.apache.sirona.cube.BinaryEventStream
+class BinaryEventReader implements EventReader {
+    static final String CONTENT_TYPE = "application/x-sirona-events";
+
+    private static final int VERSION = 1;
+    private static final int COUNTER = 1;
+    private static final int GAUGE = 2;
+    private static final int VALIDATION = 3;
+    private static final int STATUS = 4;
+    private static final int MAX_STRING_LENGTH = 64 * 1024; // histograms are the longest strings, far below
+
+    private final DataInputStream input;
+    private final List<String> roles = new ArrayList<String>(); // name, unit pairs by id - 1
+    private String marker;
+    private boolean started = false;
+    private long lastTime = 0;
+
+    BinaryEventReader(final InputStream inputStream) {
+        input = new DataInputStream(new BufferedInputStream(inputStream));
+    }
+
+    @Override
+    public boolean next(final EventData event) throws IOException {
+        if (!started) {
+            started = true;
+            final int s = input.read();
+            if (s < 0) { // empty payload
+                return false;
+            }
+            if (s != 'S' || input.readUnsignedByte() != 'E') {
+                throw new StreamCorruptedException("Not a sirona binary payload");
+            }
+            final int version = input.readUnsignedByte();
+            if (version != VERSION) {
+                throw new StreamCorruptedException("Unsupported binary payload version " + version);
+            }
+            marker = readString();
+        }
+
+        final int type = input.read();
+        if (type < 0) {
+            return false;
+        }
+
+        event.reset();
+        event.marker = marker;
+        lastTime += unzigzag(readVarLong());
+        event.time = lastTime * 1000;
+        switch (type) {
+            case COUNTER:
+                event.type = "counter";
+                readRole(event);
+                event.name = readString();
+                event.concurrency = (int) readVarLong();
+                event.hits = readVarLong();
+                event.mean = input.readDouble();
+                event.variance = input.readDouble();
+                event.max = input.readDouble();
+                event.min = input.readDouble();
+                event.sum = input.readDouble();
+                event.m2 = input.readDouble();
+                event.histogram = readString();
+                event.concurrencyDistribution = readString();
+                break;
+            case GAUGE:
+                event.type = "gauge";
+                readRole(event);
+                event.value = input.readDouble();
+                break;
+            case VALIDATION:
+                event.type = "validation";
+                event.name = readString();
+                event.status = readString();
+                event.message = readString();
+                break;
+            case STATUS:
+                event.type = "status";
+                event.date = readVarLong();
+                break;
+            default: // no length so can't be skipped
+                throw new StreamCorruptedException("Unknown event type " + type);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readRole(final EventData event) throws IOException {
+        final int id = (int) readVarLong();
+        if (id == 0) {
+            event.role = readString();
+            event.unit = readString();
+            roles.add(event.role);
+            roles.add(event.unit);
+            return;
+        }
+
+        final int idx = 2 * (id - 1);
+        if (idx + 1 >= roles.size()) {
+            throw new StreamCorruptedException("Unknown role " + id);
+        }
+        event.role = roles.get(idx);
+        event.unit = roles.get(idx + 1);
+    }
+
+    private String readString() throws IOException {
+        final long length = readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_LENGTH) { // don't let a request size the allocation
+            throw new StreamCorruptedException("String of " + length + " bytes, max is " + MAX_STRING_LENGTH);
+        }
+
+        final byte[] bytes = new byte[(int) length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
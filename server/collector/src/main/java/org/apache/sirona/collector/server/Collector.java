@@ -16,16 +16,17 @@
  */
 package org.apache.sirona.collector.server;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.sirona.Role;
 import org.apache.sirona.SironaException;
 import org.apache.sirona.collector.server.api.SSLSocketFactoryProvider;
 import org.apache.sirona.collector.server.api.SecurityProvider;
 import org.apache.sirona.configuration.Configuration;
 import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.counters.ConcurrencyDistribution;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Histogram;
 import org.apache.sirona.counters.Unit;
 import org.apache.sirona.math.M2AwareStatisticalSummary;
 import org.apache.sirona.repositories.Repository;
@@ -38,12 +39,12 @@ import org.apache.sirona.store.gauge.CollectorGaugeDataStore;
 import org.apache.sirona.store.status.CollectorNodeStatusDataStore;
 import org.apache.sirona.store.status.NodeStatusDataStore;
 import org.apache.sirona.util.DaemonThreadFactory;
+import org.apache.sirona.util.SelfMonitoring;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -55,17 +56,20 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 // should work with cube clients, see cube module for details
 // Note: for this simple need we don't need JAXRS
@@ -80,17 +84,31 @@ public class Collector extends HttpServlet {
     private static final String REGISTRATION = "registration";
 
     private static final String GET = "GET";
+    private static final String ACCEPT = "Accept";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final String IDENTITY = "identity";
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
 
     private final Map<String, Role> roles = new ConcurrentHashMap<String, Role>();
 
     private CollectorCounterStore counterDataStore = null;
     private CollectorGaugeDataStore gaugeDataStore = null;
     private CollectorNodeStatusDataStore statusDataStore;
-    private ObjectMapper mapper;
+    private JsonFactory jsonFactory;
 
     private final Collection<AgentNode> agents = new CopyOnWriteArraySet<AgentNode>();
     private volatile BatchFuture collectionFuture = null;
     private long collectionPeriod;
+    private int collectionThreads;
+    private long collectionJitter;
+    private int connectTimeout;
+    private int readTimeout;
+    private boolean binaryPull;
+    private boolean compressedPull;
     private SecurityProvider securityProvider;
     private SSLSocketFactoryProvider sslSocketFactoryProvider;
 
@@ -125,7 +143,7 @@ public class Collector extends HttpServlet {
             this.statusDataStore = CollectorNodeStatusDataStore.class.cast(nds);
         }
 
-        this.mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+        this.jsonFactory = new JsonFactory().configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
 
         { // pulling
             {
@@ -138,6 +156,68 @@ public class Collector extends HttpServlet {
                 }
             }
 
+            { // agents are polled concurrently by this many threads
+                final String threadsKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.threads";
+                final String threadsStr = sc.getInitParameter(threadsKey);
+                if (threadsStr != null) {
+                    collectionThreads = Integer.parseInt(threadsStr);
+                } else {
+                    collectionThreads = Configuration.getInteger(threadsKey, 8);
+                }
+                collectionThreads = Math.max(1, collectionThreads);
+            }
+
+            { // spread polls over [0, jitter[ to not hit all agents at the same time
+                final String jitterKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.jitter";
+                final String jitterStr = sc.getInitParameter(jitterKey);
+                if (jitterStr != null) {
+                    collectionJitter = Integer.parseInt(jitterStr);
+                } else {
+                    collectionJitter = Configuration.getInteger(jitterKey, (int) (collectionPeriod / 10));
+                }
+                collectionJitter = Math.max(0, Math.min(collectionJitter, collectionPeriod));
+            }
+
+            {
+                final String connectTimeoutKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.connect-timeout";
+                final String connectTimeoutStr = sc.getInitParameter(connectTimeoutKey);
+                if (connectTimeoutStr != null) {
+                    connectTimeout = Integer.parseInt(connectTimeoutStr);
+                } else {
+                    connectTimeout = Configuration.getInteger(connectTimeoutKey, 5000);
+                }
+            }
+
+            {
+                final String readTimeoutKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.read-timeout";
+                final String readTimeoutStr = sc.getInitParameter(readTimeoutKey);
+                if (readTimeoutStr != null) {
+                    readTimeout = Integer.parseInt(readTimeoutStr);
+                } else {
+                    readTimeout = Configuration.getInteger(readTimeoutKey, 30000);
+                }
+            }
+
+            { // agents not supporting it answer in JSON
+                final String binaryKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.binary";
+                final String binaryStr = sc.getInitParameter(binaryKey);
+                if (binaryStr != null) {
+                    binaryPull = Boolean.parseBoolean(binaryStr);
+                } else {
+                    binaryPull = Configuration.is(binaryKey, false);
+                }
+            }
+
+            { // agents send plain payloads if they don't support it
+                final String compressionKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.compression";
+                final String compressionStr = sc.getInitParameter(compressionKey);
+                if (compressionStr != null) {
+                    compressedPull = Boolean.parseBoolean(compressionStr);
+                } else {
+                    compressedPull = Configuration.is(compressionKey, true);
+                }
+            }
+
             {
                 final String agentUrlsKey = Configuration.CONFIG_PROPERTY_PREFIX + "collector.collection.agent-urls";
                 for (final String agents : new String[]{
@@ -170,6 +250,11 @@ public class Collector extends HttpServlet {
         }
     }
 
+    // registered agents, dead ones are removed
+    Collection<AgentNode> getAgents() {
+        return agents;
+    }
+
     @Override
     public void destroy() {
         if (collectionFuture != null) {
@@ -179,9 +264,20 @@ public class Collector extends HttpServlet {
 
     @Override
     protected void doPost(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
-        final ServletInputStream inputStream = req.getInputStream();
+        if (req.getContentLength() >= 0) {
+            SelfMonitoring.record(SelfMonitoring.PAYLOAD, "collector-ingestion", req.getContentLength());
+        }
+
+        final String encoding = req.getHeader(CONTENT_ENCODING);
+        final InputStream inputStream = decode(req.getInputStream(), encoding);
+        if (inputStream == null) {
+            resp.setStatus(HTTP_UNSUPPORTED_MEDIA_TYPE);
+            resp.getWriter().write("{\"error\":\"unsupported content encoding " + encoding.replace('\"', ' ') + "\"}");
+            return;
+        }
+
         try {
-            slurpEvents(inputStream);
+            slurpEvents(inputStream, req.getContentType());
         } catch (final SironaException me) {
             resp.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
             resp.getWriter().write("{\"error\":\"" + me.getCause().getMessage().replace('\"', ' ') + "\"}");
@@ -192,58 +288,88 @@ public class Collector extends HttpServlet {
         resp.getWriter().write(OK);
     }
 
-    private void slurpEvents(final InputStream inputStream) throws IOException {
-        final Event[] events = mapper.readValue(inputStream, Event[].class);
-        if (events != null && events.length > 0) {
-            try {
-                final Collection<Event> validations = new LinkedList<Event>();
-                long date = -1;
-                for (final Event event : events) {
-                    final String type = event.getType();
+    // null if the encoding is not supported
+    private static InputStream decode(final InputStream inputStream, final String encoding) throws IOException {
+        if (encoding == null || IDENTITY.equalsIgnoreCase(encoding.trim())) {
+            return inputStream;
+        }
+        if (GZIP.equalsIgnoreCase(encoding.trim()) || "x-gzip".equalsIgnoreCase(encoding.trim())) {
+            return new GZIPInputStream(inputStream);
+        }
+        if (DEFLATE.equalsIgnoreCase(encoding.trim())) {
+            return new InflaterInputStream(inputStream);
+        }
+        return null;
+    }
+
+    private void slurpEvents(final InputStream inputStream, final String contentType) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            if (contentType != null && contentType.startsWith(BinaryEventReader.CONTENT_TYPE)) {
+                doSlurpEvents(new BinaryEventReader(inputStream));
+            } else {
+                doSlurpEvents(new JsonEventReader(jsonFactory, inputStream));
+            }
+        } finally {
+            SelfMonitoring.record(SelfMonitoring.DURATION, "collector-ingestion", System.nanoTime() - start);
+        }
+    }
+
+    // streams the events straight to the stores, no Event is bound and memory doesn't depend on the payload size
+    private void doSlurpEvents(final EventReader reader) throws IOException {
+        try {
+            final EventData event = new EventData();
+            final Collection<ValidationResult> validations = new LinkedList<ValidationResult>();
+            String marker = null;
+            long date = -1;
+            int items = 0;
+            while (reader.next(event)) {
+                items++;
+                if (items == 1) {
+                    marker = event.marker;
+                }
+
+                try {
+                    final String type = event.type;
                     if (VALIDATION.equals(type)) {
-                        validations.add(event);
+                        validations.add(new ValidationResult(event.name, Status.valueOf(event.status), event.message));
                     } else if (STATUS.equals(type)) {
-                        date = Number.class.cast(event.getData().get("date")).longValue();
+                        date = event.date;
                     } else if (COUNTER.equals(type)) {
                         updateCounter(event);
                     } else if (GAUGE.equals(type)) {
                         updateGauge(event);
                     } else if (REGISTRATION.equals(type)) {
-                        registerNode(event);
+                        registerNode(event.url);
                     } else {
                         LOGGER.info("Unexpected type '" + type + "', skipping");
                     }
+                } catch (final Exception e) {
+                    throw new SironaException(e);
                 }
+            }
 
-                if (validations.size() > 0) {
-                    final Collection<ValidationResult> results = new ArrayList<ValidationResult>(validations.size());
-                    for (final Event event : validations) {
-                        final Map<String, Object> data = event.getData();
-                        results.add(new ValidationResult(
-                            (String) data.get("name"),
-                            Status.valueOf((String) data.get("status")),
-                            (String) data.get("message")));
-                    }
+            SelfMonitoring.record(SelfMonitoring.ITEMS, "collector-ingestion", items);
 
-                    final Date statusDate;
-                    if (date == -1) {
-                        statusDate = new Date();
-                    } else {
-                        statusDate = new Date(date);
-                    }
-                    final NodeStatus status = new NodeStatus(results.toArray(new ValidationResult[results.size()]), statusDate);
-                    statusDataStore.store((String) events[0].getData().get("marker"), status);
+            if (validations.size() > 0) {
+                final Date statusDate;
+                if (date == -1) {
+                    statusDate = new Date();
+                } else {
+                    statusDate = new Date(date);
+                }
+                final NodeStatus status = new NodeStatus(validations.toArray(new ValidationResult[validations.size()]), statusDate);
+                try {
+                    statusDataStore.store(marker, status);
+                } catch (final Exception e) {
+                    throw new SironaException(e);
                 }
-            } catch (final Exception e) {
-                throw new SironaException(e);
             }
+        } finally {
+            reader.close();
         }
     }
 
-    private void registerNode(final Event event) throws MalformedURLException {
-        registerNode(String.class.cast(event.getData().get("url")));
-    }
-
     private void registerNode(final String url) throws MalformedURLException {
         if (url == null) {
             return;
@@ -254,8 +380,9 @@ public class Collector extends HttpServlet {
             if (collectionFuture == null) {
                 synchronized (this) {
                     if (collectionFuture == null) {
-                        final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("collector-pull-schedule"));
-                        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new CollectTask(), collectionPeriod, collectionPeriod, TimeUnit.MILLISECONDS);
+                        // the periodic task only dispatches, polls run on the same bounded pool
+                        final ScheduledExecutorService ses = Executors.newScheduledThreadPool(collectionThreads, new DaemonThreadFactory("collector-pull-"));
+                        final ScheduledFuture<?> future = ses.scheduleAtFixedRate(new CollectTask(ses), collectionPeriod, collectionPeriod, TimeUnit.MILLISECONDS);
                         collectionFuture = new BatchFuture(ses, future);
                     }
                 }
@@ -263,93 +390,149 @@ public class Collector extends HttpServlet {
         }
     }
 
-    private void updateGauge(final Event event) {
-        final Map<String, Object> data = event.getData();
-
-        final long time = event.getTime().getTime();
-        final double value = Number.class.cast(data.get("value")).doubleValue();
-
-        gaugeDataStore.addToGauge(role(data), time, value, String.class.cast(data.get("marker")));
+    private void updateGauge(final EventData event) {
+        gaugeDataStore.addToGauge(role(event), event.time, event.value, event.marker);
     }
 
-    private void updateCounter(final Event event) {
-        final Map<String, Object> data = event.getData();
-
+    private void updateCounter(final EventData event) {
         counterDataStore.update(
-            new Counter.Key(role(data), String.class.cast(data.get("name"))),
-            String.class.cast(data.get("marker")),
-            new M2AwareStatisticalSummary(data),
-            Number.class.cast(data.get("concurrency")).intValue());
+            new Counter.Key(role(event), event.name),
+            event.marker,
+            new M2AwareStatisticalSummary(
+                event.mean, event.variance, event.hits, event.max, event.min, event.sum, event.m2,
+                event.histogram != null ? Histogram.fromCompactString(event.histogram) : null,
+                event.concurrencyDistribution != null ? ConcurrencyDistribution.fromCompactString(event.concurrencyDistribution) : null),
+            event.concurrency);
     }
 
-    private Role role(final Map<String, Object> data) {
-        final String name = String.class.cast(data.get("role"));
+    private Role role(final EventData event) {
+        final String name = event.role;
         final Role existing = roles.get(name);
         if (existing != null) {
             return existing;
         }
 
-        final Role created = new Role(name, Unit.get(String.class.cast(data.get("unit"))));
+        final Role created = new Role(name, Unit.get(event.unit));
         roles.put(name, created);
         return created;
     }
 
     private class CollectTask implements Runnable {
+        private final ScheduledExecutorService executor;
+        private final Random random = new Random(); // only used by the scheduling thread
+
+        private CollectTask(final ScheduledExecutorService executor) {
+            this.executor = executor;
+        }
+
         @Override
         public void run() {
-            final Iterator<AgentNode> nodes = agents.iterator();
-            while (nodes.hasNext()) {
-                final AgentNode agent = nodes.next();
+            for (final AgentNode agent : agents) {
+                if (!agent.startCollect()) { // previous poll still running, don't pile up connections
+                    SelfMonitoring.record(SelfMonitoring.ITEMS, "collector-pull-skipped-" + agent.getUrl().toExternalForm(), 1);
+                    continue;
+                }
+
+                final long delay = collectionJitter > 0 ? (long) (random.nextDouble() * collectionJitter) : 0;
                 try {
-                    final URL url = agent.getUrl();
-                    final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
+                    executor.schedule(new PollTask(agent), delay, TimeUnit.MILLISECONDS);
+                } catch (final RejectedExecutionException ree) { // shutting down
+                    agent.endCollect();
+                    return;
+                }
+            }
+        }
+    }
 
-                    if (sslSocketFactoryProvider != null) {
-                        final SSLSocketFactory sf = sslSocketFactoryProvider.sslSocketFactory(url.toExternalForm());
-                        if (sf != null && "https".equals(agent.getUrl().getProtocol())) {
-                            HttpsURLConnection.class.cast(connection).setSSLSocketFactory(sf);
-                        }
-                    }
+    private class PollTask implements Runnable {
+        private final AgentNode agent;
 
-                    if (securityProvider != null) {
-                        final String auth = securityProvider.basicHeader(url.toExternalForm());
-                        if (auth != null) {
-                            connection.setRequestProperty("Authorization", auth);
-                        }
-                    }
+        private PollTask(final AgentNode agent) {
+            this.agent = agent;
+        }
 
-                    connection.setRequestMethod(GET);
+        @Override
+        public void run() {
+            final String name = "collector-pull-" + agent.getUrl().toExternalForm();
+            final long start = System.nanoTime();
+            boolean ok = false;
+            try {
+                ok = poll(agent);
+            } catch (final IOException e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            } catch (final RuntimeException e) { // unparseable payload (SironaException) or a store failure, still a ko
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            } finally {
+                SelfMonitoring.record(SelfMonitoring.DURATION, name, System.nanoTime() - start);
+                agent.endCollect();
+            }
 
-                    InputStream inputStream = null;
-                    try {
-                        inputStream = connection.getInputStream();
-                        slurpEvents(inputStream);
-                    } finally {
-                        connection.disconnect();
-                        if (inputStream != null) {
-                            try {
-                                inputStream.close();
-                            } catch (final IOException ioe) {
-                                // no-op
-                            }
-                        }
-                    }
+            if (ok) {
+                agent.ok();
+            } else {
+                agent.ko();
+                SelfMonitoring.record(SelfMonitoring.ITEMS, name + "-failure", 1);
+            }
 
-                    final int status = connection.getResponseCode();
-                    if (status / 100 == 2) {
-                        agent.ok();
-                    } else {
-                        agent.ko();
-                    }
-                } catch (final IOException e) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                    agent.ko();
-                }
+            if (agent.isDead()) {
+                agents.remove(agent);
+            }
+        }
+    }
+
+    private boolean poll(final AgentNode agent) throws IOException {
+        final URL url = agent.getUrl();
+        final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        if (sslSocketFactoryProvider != null) {
+            final SSLSocketFactory sf = sslSocketFactoryProvider.sslSocketFactory(url.toExternalForm());
+            if (sf != null && "https".equals(agent.getUrl().getProtocol())) {
+                HttpsURLConnection.class.cast(connection).setSSLSocketFactory(sf);
+            }
+        }
+
+        if (securityProvider != null) {
+            final String auth = securityProvider.basicHeader(url.toExternalForm());
+            if (auth != null) {
+                connection.setRequestProperty("Authorization", auth);
+            }
+        }
+
+        connection.setRequestMethod(GET);
+        if (binaryPull) {
+            connection.setRequestProperty(ACCEPT, BinaryEventReader.CONTENT_TYPE + ", " + APPLICATION_JSON);
+        }
+        if (compressedPull) {
+            connection.setRequestProperty(ACCEPT_ENCODING, GZIP + ", " + DEFLATE);
+        }
 
-                if (agent.isDead()) {
-                    nodes.remove();
+        InputStream inputStream = null;
+        try {
+            inputStream = connection.getInputStream();
+            if (connection.getContentLength() >= 0) {
+                SelfMonitoring.record(SelfMonitoring.PAYLOAD, "collector-ingestion", connection.getContentLength());
+            }
+
+            final InputStream decoded = decode(inputStream, connection.getContentEncoding());
+            if (decoded == null) {
+                throw new IOException("Unsupported content encoding " + connection.getContentEncoding() + " from " + url.toExternalForm());
+            }
+            inputStream = decoded; // closed in finally
+            slurpEvents(inputStream, connection.getContentType());
+        } finally {
+            connection.disconnect();
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException ioe) {
+                    // no-op
                 }
             }
         }
+
+        final int status = connection.getResponseCode();
+        return status / 100 == 2;
     }
 }
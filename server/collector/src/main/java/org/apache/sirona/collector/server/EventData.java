@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+// an event read from a payload, reused for all the events of a payload
+class EventData {
+    String type;
+    long time;
+
+    String marker;
+    String name;
+    String role;
+    String unit;
+    double value;
+
+    int concurrency;
+    double mean;
+    double variance;
+    long hits;
+    double max;
+    double min;
+    double sum;
+    double m2;
+    String histogram;
+    String concurrencyDistribution;
+
+    long date;
+    String status;
+    String message;
+    String url;
+
+    void reset() {
+        type = null;
+        time = 0;
+        marker = null;
+        name = null;
+        role = null;
+        unit = null;
+        value = Double.NaN;
+        concurrency = 0;
+        mean = Double.NaN;
+        variance = Double.NaN;
+        hits = 0;
+        max = Double.NaN;
+        min = Double.NaN;
+        sum = 0;
+        m2 = Double.NaN;
+        histogram = null;
+        concurrencyDistribution = null;
+        date = -1;
+        status = null;
+        message = null;
+        url = null;
+    }
+}
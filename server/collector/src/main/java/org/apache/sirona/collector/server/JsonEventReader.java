@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// reads the JSON array of events sent by cube, one event at a time
+class JsonEventReader implements EventReader {
+    private final JsonParser parser;
+    private boolean started = false;
+
+    JsonEventReader(final JsonFactory factory, final InputStream inputStream) throws IOException {
+        parser = factory.createParser(inputStream);
+    }
+
+    @Override
+    public boolean next(final EventData event) throws IOException {
+        if (!started) {
+            started = true;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                if (parser.getCurrentToken() == null) { // empty payload
+                    return false;
+                }
+                throw new JsonParseException("Expected an array of events", parser.getCurrentLocation());
+            }
+        }
+
+        final JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            try {
+                readEvent(event);
+            } catch (final IllegalArgumentException iae) { // dates and numbers sent as strings
+                throw new JsonParseException(iae.getMessage(), parser.getCurrentLocation());
+            }
+            return true;
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException("Expected an event", parser.getCurrentLocation());
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void readEvent(final EventData event) throws IOException {
+        event.reset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            if ("type".equals(field)) {
+                event.type = parser.getText();
+            } else if ("time".equals(field)) {
+                event.time = parseIsoDate(parser.getText());
+            } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                readData(event);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readData(final EventData event) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            if ("name".equals(field)) {
+                event.name = parser.getText();
+            } else if ("role".equals(field)) {
+                event.role = parser.getText();
+            } else if ("unit".equals(field)) {
+                event.unit = parser.getText();
+            } else if ("marker".equals(field)) {
+                event.marker = parser.getText();
+            } else if ("value".equals(field)) {
+                event.value = toDouble(token);
+            } else if ("concurrency".equals(field)) {
+                event.concurrency = (int) toLong(token);
+            } else if ("mean".equals(field)) {
+                event.mean = toDouble(token);
+            } else if ("variance".equals(field)) {
+                event.variance = toDouble(token);
+            } else if ("hits".equals(field)) {
+                event.hits = toLong(token);
+            } else if ("max".equals(field)) {
+                event.max = toDouble(token);
+            } else if ("min".equals(field)) {
+                event.min = toDouble(token);
+            } else if ("sum".equals(field)) {
+                event.sum = toDouble(token);
+            } else if ("m2".equals(field)) {
+                event.m2 = toDouble(token);
+            } else if ("histogram".equals(field)) {
+                event.histogram = parser.getText();
+            } else if ("concurrencyDistribution".equals(field)) {
+                event.concurrencyDistribution = parser.getText();
+            } else if ("date".equals(field)) {
+                event.date = toLong(token);
+            } else if ("status".equals(field)) {
+                event.status = parser.getText();
+            } else if ("message".equals(field)) {
+                event.message = parser.getText();
+            } else if ("url".equals(field)) {
+                event.url = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // agents send numbers but strings were accepted by the data binding so keep it
+    private double toDouble(final JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return Double.parseDouble(parser.getText());
+        }
+        return parser.getDoubleValue();
+    }
+
+    private long toLong(final JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return Long.parseLong(parser.getText());
+        }
+        return parser.getLongValue();
+    }
+
+    // yyyy-MM-dd'T'HH:mm:ss'Z' in UTC, what cube sends, without a SimpleDateFormat per event
+    static long parseIsoDate(final String date) {
+        if (date == null || date.length() != 20 || date.charAt(4) != '-' || date.charAt(7) != '-'
+            || date.charAt(10) != 'T' || date.charAt(13) != ':' || date.charAt(16) != ':' || date.charAt(19) != 'Z') {
+            throw new IllegalArgumentException("Unparseable date: " + date);
+        }
+
+        final int year = digits(date, 0, 4);
+        final int month = digits(date, 5, 7);
+        final int day = digits(date, 8, 10);
+
+        // days since epoch of a proleptic gregorian date (civil calendar)
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yoe = y - era * 400;
+        final int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        final long days = era * 146097L + doe - 719468;
+
+        final long seconds = days * 86400 + digits(date, 11, 13) * 3600 + digits(date, 14, 16) * 60 + digits(date, 17, 19);
+        return seconds * 1000;
+    }
+
+    private static int digits(final String value, final int start, final int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Unparseable date: " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.cube.BinaryEventStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryEventReaderTest {
+    @Test
+    public void roundTrip() throws IOException {
+        final Role role = new Role("role", Unit.Time.MILLISECOND);
+        final BinaryEventStream stream = new BinaryEventStream("node")
+            .counter(1382689492123L, role, "counter1", 2, 1.5, Double.NaN, 3, 4, -1, 4.5, Double.NaN, "1:3", null)
+            .counter(1382689492123L, role, "counter\u00e9", 0, 0, 0, 0, 0, 0, 0, 0, "", "")
+            .gauge(1382689490000L, new Role("gauge", Unit.UNARY), 5.5)
+            .validation(1382689495000L, "validation", "OK", null)
+            .status(1382689495000L, 1382689495321L);
+        assertEquals(5, stream.events());
+
+        final BinaryEventReader reader = new BinaryEventReader(new ByteArrayInputStream(stream.toByteArray()));
+        final EventData event = new EventData();
+
+        assertTrue(reader.next(event));
+        assertEquals("counter", event.type);
+        assertEquals(1382689492000L, event.time); // second precision as JSON dates
+        assertEquals("node", event.marker);
+        assertEquals("role", event.role);
+        assertEquals("ms", event.unit);
+        assertEquals("counter1", event.name);
+        assertEquals(2, event.concurrency);
+        assertEquals(3, event.hits);
+        assertEquals(1.5, event.mean, 0.);
+        assertTrue(Double.isNaN(event.variance));
+        assertEquals(4., event.max, 0.);
+        assertEquals(-1., event.min, 0.);
+        assertEquals(4.5, event.sum, 0.);
+        assertEquals("1:3", event.histogram);
+        assertNull(event.concurrencyDistribution);
+
+        assertTrue(reader.next(event)); // role from the payload dictionary
+        assertEquals("role", event.role);
+        assertEquals("ms", event.unit);
+        assertEquals("counter\u00e9", event.name);
+        assertEquals("", event.histogram);
+
+        assertTrue(reader.next(event));
+        assertEquals("gauge", event.type);
+        assertEquals(1382689490000L, event.time); // backward delta
+        assertEquals("gauge", event.role);
+        assertEquals("u", event.unit);
+        assertEquals(5.5, event.value, 0.);
+
+        assertTrue(reader.next(event));
+        assertEquals("validation", event.type);
+        assertEquals("validation", event.name);
+        assertEquals("OK", event.status);
+        assertNull(event.message);
+
+        assertTrue(reader.next(event));
+        assertEquals("status", event.type);
+        assertEquals(1382689495321L, event.date);
+
+        assertFalse(reader.next(event));
+    }
+
+    @Test
+    public void empty() throws IOException {
+        assertFalse(new BinaryEventReader(new ByteArrayInputStream(new byte[0])).next(new EventData()));
+        assertFalse(new BinaryEventReader(new ByteArrayInputStream(new BinaryEventStream("node").toByteArray())).next(new EventData()));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void notBinary() throws IOException {
+        new BinaryEventReader(new ByteArrayInputStream("[]".getBytes())).next(new EventData());
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void hugeString() throws IOException {
+        // header then a marker announcing ~2GB, nothing should be allocated for it
+        final byte[] payload = new byte[] { 'S', 'E', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        new BinaryEventReader(new ByteArrayInputStream(payload)).next(new EventData());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.apache.sirona.SironaException;
+import org.apache.sirona.repositories.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// polls are dispatched on a pool, an agent can't delay the others nor pile up connections
+public class CollectorPollTest {
+    private final Collection<AgentServer> agents = new LinkedList<AgentServer>();
+    private Collector collector;
+
+    @Before
+    @After
+    public void reset() {
+        Repository.INSTANCE.reset();
+    }
+
+    @After
+    public void shutdown() {
+        if (collector != null) {
+            collector.destroy();
+        }
+        for (final AgentServer agent : agents) {
+            agent.stop();
+        }
+        agents.clear();
+    }
+
+    @Test
+    public void slowAgentDoesntDelayFastOne() throws Exception {
+        final AgentServer slow = agent(3000);
+        final AgentServer fast = agent(0);
+        collector = collector(30000, slow, fast);
+
+        Thread.sleep(1000);
+
+        assertTrue(fast.requests.get() + " polls", fast.requests.get() >= 4);
+        assertEquals(1, slow.requests.get());
+    }
+
+    @Test
+    public void busyAgentIsSkipped() throws Exception {
+        final AgentServer slow = agent(2000);
+        collector = collector(30000, slow);
+
+        Thread.sleep(1000); // ~10 periods
+
+        assertEquals(1, slow.requests.get()); // not one connection per period
+        assertEquals(1, collector.getAgents().size());
+    }
+
+    @Test
+    public void readTimeoutIsAFailure() throws Exception {
+        final AgentServer hanging = agent(60000);
+        collector = collector(100, hanging);
+
+        // each timeout is a ko, the agent is removed once dead
+        for (int i = 0; i < 100 && !collector.getAgents().isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(collector.getAgents().isEmpty());
+        assertTrue(hanging.requests.get() > AgentNode.DEAD_COUNT);
+    }
+
+    private AgentServer agent(final long delay) {
+        final AgentServer server = new AgentServer(delay).start();
+        agents.add(server);
+        return server;
+    }
+
+    private static Collector collector(final int readTimeout, final AgentServer... agents) throws ServletException {
+        final StringBuilder urls = new StringBuilder();
+        for (final AgentServer agent : agents) {
+            urls.append("http://localhost:").append(agent.port).append(',');
+        }
+        urls.setLength(urls.length() - 1);
+
+        final Collector collector = new Collector();
+        collector.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return null;
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(final String name) {
+                if (name.endsWith("period")) {
+                    return "100";
+                }
+                if (name.endsWith("jitter")) {
+                    return "0";
+                }
+                if (name.endsWith("threads")) {
+                    return "4";
+                }
+                if (name.endsWith("read-timeout")) {
+                    return Integer.toString(readTimeout);
+                }
+                if (name.endsWith("agent-urls")) {
+                    return urls.toString();
+                }
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return null;
+            }
+        });
+        return collector;
+    }
+
+    // an agent answering an empty payload after a delay, without blocking its event loop
+    private static class AgentServer {
+        private final long delay;
+        private final AtomicInteger requests = new AtomicInteger(0);
+        private NioEventLoopGroup workerGroup;
+        private int port;
+
+        private AgentServer(final long delay) {
+            this.delay = delay;
+        }
+
+        public AgentServer start() {
+            workerGroup = new NioEventLoopGroup(2);
+            try {
+                port = InetSocketAddress.class.cast(new ServerBootstrap()
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .group(workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel ch) throws Exception {
+                            ch.pipeline()
+                                .addLast("decoder", new HttpRequestDecoder())
+                                .addLast("aggregator", new HttpObjectAggregator(Integer.MAX_VALUE))
+                                .addLast("encoder", new HttpResponseEncoder())
+                                .addLast("server", new RequestHandler());
+                        }
+                    })
+                    .bind("localhost", 0).sync().channel().localAddress()).getPort();
+            } catch (final InterruptedException e) {
+                throw new SironaException(e);
+            }
+            return this;
+        }
+
+        public void stop() {
+            if (workerGroup != null) {
+                workerGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+            @Override
+            protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) throws Exception {
+                requests.incrementAndGet();
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer("[]".getBytes())))
+                            .addListener(ChannelFutureListener.CLOSE);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -52,7 +52,6 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.ServerSocket;
-import java.nio.charset.Charset;
 import java.util.Enumeration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -182,7 +181,10 @@ public class CollectorServer {
         protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest fullHttpRequest) throws Exception {
             final ChannelFuture future;
             if (HttpMethod.POST.equals(fullHttpRequest.getMethod())) {
-                final InputStream is = new ByteArrayInputStream(fullHttpRequest.content().toString(Charset.defaultCharset()).getBytes());
+                final byte[] content = new byte[fullHttpRequest.content().readableBytes()];
+                fullHttpRequest.content().readBytes(content);
+                final InputStream is = new ByteArrayInputStream(content);
+                final String contentType = fullHttpRequest.headers().get("Content-Type");
 
                 final DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
                 final ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -203,6 +205,15 @@ public class CollectorServer {
                                 }
                             };
                         }
+                        if ("getContentLength".equals(method.getName())) {
+                            return content.length;
+                        }
+                        if ("getContentType".equals(method.getName())) {
+                            return contentType;
+                        }
+                        if ("getHeader".equals(method.getName())) {
+                            return fullHttpRequest.headers().get(String.class.cast(args[0]));
+                        }
 
                         throw new UnsupportedOperationException("not implemented");
                     }
@@ -20,7 +20,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.sirona.Role;
 import org.apache.sirona.configuration.ioc.IoCs;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Histogram;
 import org.apache.sirona.counters.Unit;
+import org.apache.sirona.cube.BinaryEventStream;
 import org.apache.sirona.reporting.web.plugin.api.MapBuilder;
 import org.apache.sirona.repositories.Repository;
 import org.apache.sirona.status.NodeStatus;
@@ -34,6 +36,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
@@ -42,6 +45,8 @@ import java.net.URL;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -104,6 +109,39 @@ public class HttpCollectorTest {
         assertCounter(counter1Client2, 190, 46, 612, 64, 8.83176, 78, 654);
     }
 
+    @Test
+    public void collectPercentiles() throws Exception {
+        final Histogram fast = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            fast.addValue(10);
+        }
+        final Histogram slow = new Histogram();
+        slow.addValue(5000);
+
+        {
+            final Event[] events = new Event[1];
+            events[0] = new Event();
+            events[0].setType("counter");
+            events[0].setData(buildData("counter3", "role3", Unit.UNARY.getName(), "client1", 0, 10, 0, 99, 10, 10, 990, 0));
+            events[0].getData().put("histogram", fast.toCompactString());
+            doPost(events);
+        }
+        {
+            final Event[] events = new Event[1];
+            events[0] = new Event();
+            events[0].setType("counter");
+            events[0].setData(buildData("counter3", "role3", Unit.UNARY.getName(), "client2", 0, 5000, 0, 1, 5000, 5000, 5000, 0));
+            events[0].getData().put("histogram", slow.toCompactString());
+            doPost(events);
+        }
+
+        final CollectorCounterStore store = IoCs.getInstance(CollectorCounterStore.class);
+        final Counter aggregate = store.getOrCreateCounter(new Counter.Key(new Role("role3", Unit.UNARY), "counter3"));
+        assertEquals(100, aggregate.getHits());
+        assertEquals(10., aggregate.getPercentile(99), 1.);
+        assertEquals(5000., aggregate.getPercentile(100), 0.);
+    }
+
     @Test
     public void collectGauges() throws Exception {
         final Date pushDate = new Date(); // we aggregated only if push was done on the exactly same date so ensuring it
@@ -205,22 +243,102 @@ public class HttpCollectorTest {
         assertEquals(1, statuses.get("node2").getResults().length);
     }
 
+    @Test
+    public void collectStreamedPayload() throws Exception {
+        // any field order, unknown (nested) fields, non numeric numbers and numbers as strings
+        doPost("[" +
+            "{\"data\":{\"unknown\":{\"a\":[1,{\"b\":2}]},\"name\":\"counter4\",\"role\":\"role4\",\"unit\":\"u\"," +
+            "\"marker\":\"client1\",\"concurrency\":1,\"mean\":2.0,\"variance\":NaN,\"hits\":\"3\",\"max\":3,\"min\":1," +
+            "\"sum\":6,\"m2\":NaN,\"histogram\":null},\"type\":\"counter\",\"other\":[]}," +
+            "{\"type\":\"gauge\",\"time\":\"2013-10-25T08:24:52Z\",\"data\":{\"value\":5.5,\"role\":\"gauge4\",\"unit\":\"u\",\"marker\":\"client1\"}}" +
+            "]");
+
+        final Counter counter = IoCs.getInstance(CollectorCounterStore.class)
+            .getOrCreateCounter(new Counter.Key(new Role("role4", Unit.UNARY), "counter4"), "client1");
+        assertEquals(3, counter.getHits());
+        assertEquals(1., counter.getMin(), 0.);
+        assertEquals(3., counter.getMax(), 0.);
+        assertEquals(6., counter.getSum(), 0.);
+
+        final Map<Long, Double> gauge = IoCs.getInstance(CollectorGaugeDataStore.class)
+            .getGaugeValues(new GaugeValuesRequest(0, Long.MAX_VALUE, new Role("gauge4", Unit.UNARY)), "client1");
+        assertEquals(1, gauge.size());
+        assertEquals(5.5, gauge.get(1382689492000L), 0.);
+    }
+
+    @Test
+    public void collectBinaryPayload() throws Exception {
+        final Role role = new Role("role5", Unit.UNARY);
+        doPost(new BinaryEventStream("client1")
+            .counter(System.currentTimeMillis(), role, "counter5", 1, 2, 1, 3, 3, 1, 6, 2, null, null)
+            .gauge(1382689492000L, new Role("gauge5", Unit.UNARY), 5.5)
+            .toByteArray(), BinaryEventStream.CONTENT_TYPE);
+
+        final Counter counter = IoCs.getInstance(CollectorCounterStore.class).getOrCreateCounter(new Counter.Key(role, "counter5"), "client1");
+        assertEquals(3, counter.getHits());
+        assertEquals(6., counter.getSum(), 0.);
+
+        final Map<Long, Double> gauge = IoCs.getInstance(CollectorGaugeDataStore.class)
+            .getGaugeValues(new GaugeValuesRequest(0, Long.MAX_VALUE, new Role("gauge5", Unit.UNARY)), "client1");
+        assertEquals(5.5, gauge.get(1382689492000L), 0.);
+    }
+
+    @Test
+    public void collectCompressedPayloads() throws Exception {
+        final Role role = new Role("role6", Unit.UNARY);
+        for (final String encoding : new String[] { "gzip", "deflate" }) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(baos) : new DeflaterOutputStream(baos);
+            final Event[] events = new Event[1];
+            events[0] = new Event();
+            events[0].setType("counter");
+            events[0].setData(buildData("counter6", "role6", Unit.UNARY.getName(), encoding, 0, 2, 0, 5, 2, 2, 10, 0));
+            mapper.writeValue(out, events); // closes out
+            doPost(baos.toByteArray(), "application/json", encoding);
+        }
+
+        final CollectorCounterStore store = IoCs.getInstance(CollectorCounterStore.class);
+        assertEquals(5, store.getOrCreateCounter(new Counter.Key(role, "counter6"), "gzip").getHits());
+        assertEquals(5, store.getOrCreateCounter(new Counter.Key(role, "counter6"), "deflate").getHits());
+        assertEquals(10, store.getOrCreateCounter(new Counter.Key(role, "counter6")).getHits());
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedEncoding() throws Exception {
+        doPost("[]".getBytes(), "application/json", "br");
+    }
+
     private void doPost(final Event[] events) throws Exception {
+        final StringWriter writer = new StringWriter();
+        mapper.writeValue(writer, events);
+        doPost(writer.toString());
+    }
+
+    private void doPost(final String payload) throws Exception {
+        doPost(payload.getBytes(), "application/json");
+    }
+
+    private void doPost(final byte[] payload, final String contentType) throws Exception {
+        doPost(payload, contentType, null);
+    }
+
+    private void doPost(final byte[] payload, final String contentType, final String encoding) throws Exception {
         final URL url = new URL("http://localhost:" + server.getPort());
 
         final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
         connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", contentType);
+        if (encoding != null) {
+            connection.setRequestProperty("Content-Encoding", encoding);
+        }
         connection.setUseCaches(false);
         connection.setDoInput(true);
         connection.setDoOutput(true);
 
-        final StringWriter writer = new StringWriter();
-        mapper.writeValue(writer, events);
-
         try {
             final OutputStream output = connection.getOutputStream();
             try {
-                output.write(writer.toString().getBytes());
+                output.write(payload);
                 output.flush();
 
                 final int status = connection.getResponseCode();
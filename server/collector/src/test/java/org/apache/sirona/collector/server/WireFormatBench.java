@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.collector.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.sirona.Role;
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.DefaultCounter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.cube.BinaryEventStream;
+import org.apache.sirona.cube.Cube;
+import org.apache.sirona.cube.CubeBuilder;
+import org.apache.sirona.store.counter.InMemoryCounterDataStore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+
+// not a *Test to avoid to slow down the build, compares the JSON and binary cube payloads
+public class WireFormatBench {
+    private static final int COUNTERS = 5000;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void compare() throws IOException {
+        final Cube cube = new CubeBuilder().build();
+        final Collection<Counter> counters = counters();
+        final JsonFactory factory = new JsonFactory().configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+
+        byte[] json = null;
+        byte[] binary = null;
+        long jsonEncoding = 0;
+        long binaryEncoding = 0;
+        long jsonDecoding = 0;
+        long binaryDecoding = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            final boolean measure = i >= ROUNDS / 2; // first rounds are warmup
+
+            long start = System.nanoTime();
+            json = cube.globalPayload(cube.counterSnapshot(counters)).getBytes();
+            if (measure) {
+                jsonEncoding += System.nanoTime() - start;
+            }
+
+            start = System.nanoTime();
+            binary = cube.counterSnapshot(cube.newBinaryEventStream(), counters).toByteArray();
+            if (measure) {
+                binaryEncoding += System.nanoTime() - start;
+            }
+
+            start = System.nanoTime();
+            assertEquals(COUNTERS, read(new JsonEventReader(factory, new ByteArrayInputStream(json))));
+            if (measure) {
+                jsonDecoding += System.nanoTime() - start;
+            }
+
+            start = System.nanoTime();
+            assertEquals(COUNTERS, read(new BinaryEventReader(new ByteArrayInputStream(binary))));
+            if (measure) {
+                binaryDecoding += System.nanoTime() - start;
+            }
+        }
+
+        final int measured = ROUNDS - ROUNDS / 2;
+        report("json", json.length, jsonEncoding / measured, jsonDecoding / measured);
+        report("binary", binary.length, binaryEncoding / measured, binaryDecoding / measured);
+    }
+
+    private static int read(final EventReader reader) throws IOException {
+        final EventData event = new EventData();
+        int events = 0;
+        while (reader.next(event)) {
+            events++;
+        }
+        reader.close();
+        return events;
+    }
+
+    private static Collection<Counter> counters() {
+        final InMemoryCounterDataStore store = new InMemoryCounterDataStore();
+        final Role[] roles = { Role.WEB, Role.JDBC, Role.PERFORMANCES, new Role("custom", Unit.UNARY) };
+        final Collection<Counter> counters = new ArrayList<Counter>(COUNTERS);
+        for (int i = 0; i < COUNTERS; i++) {
+            final Counter counter = new DefaultCounter(new Counter.Key(roles[i % roles.length], "org.apache.sirona.Service" + (i / 10) + ".method" + (i % 10)), store);
+            for (int j = 0; j < 1 + i % 50; j++) {
+                counter.add(1000000 + 17 * j * i);
+            }
+            counters.add(counter);
+        }
+        return counters;
+    }
+
+    private static void report(final String format, final int bytes, final long encoding, final long decoding) {
+        System.out.println(String.format("%-7s %8.1f bytes/counter, encoding %6.0f ns/counter, decoding %6.0f ns/counter",
+            format, bytes / (double) COUNTERS, encoding / (double) COUNTERS, decoding / (double) COUNTERS));
+    }
+}
@@ -17,7 +17,10 @@
 package org.apache.sirona.reporting.web.plugin.jvm;
 
 import org.apache.sirona.gauges.jvm.ActiveThreadGauge;
+import org.apache.sirona.gauges.jvm.AllocationRateGauge;
 import org.apache.sirona.gauges.jvm.CPUGauge;
+import org.apache.sirona.gauges.jvm.GCTimeGauge;
+import org.apache.sirona.gauges.jvm.PromotionRateGauge;
 import org.apache.sirona.gauges.jvm.UsedMemoryGauge;
 import org.apache.sirona.gauges.jvm.UsedNonHeapMemoryGauge;
 import org.apache.sirona.reporting.web.plugin.api.Regex;
@@ -71,4 +74,19 @@ public class JVMEndpoints {
     public String activeThreads(final long start, final long end) {
         return generateReport("Active Thread Count", ActiveThreadGauge.ACTIVE_THREAD, start, end);
     }
+
+    @Regex("/allocationrate/([0-9]*)/([0-9]*)")
+    public String allocationRate(final long start, final long end) {
+        return generateReport("Allocation Rate", AllocationRateGauge.ALLOCATION_RATE, start, end);
+    }
+
+    @Regex("/promotionrate/([0-9]*)/([0-9]*)")
+    public String promotionRate(final long start, final long end) {
+        return generateReport("Promotion Rate", PromotionRateGauge.PROMOTION_RATE, start, end);
+    }
+
+    @Regex("/gctime/([0-9]*)/([0-9]*)")
+    public String gcTime(final long start, final long end) {
+        return generateReport("GC Time", GCTimeGauge.GC_TIME, start, end);
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.reporting.web.plugin.overhead;
+
+import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Unit;
+import org.apache.sirona.reporting.web.plugin.api.Regex;
+import org.apache.sirona.reporting.web.plugin.api.Template;
+import org.apache.sirona.reporting.web.plugin.report.format.HTMLFormat;
+import org.apache.sirona.util.SelfMonitoring;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.sirona.reporting.web.plugin.report.format.MapFormat.format;
+import static org.apache.sirona.reporting.web.plugin.report.format.MapFormat.generateLine;
+import static org.apache.sirona.reporting.web.plugin.report.format.MapFormat.timeUnit;
+
+public class OverheadEndpoints {
+    @Regex
+    public Template home(final HttpServletRequest request) {
+        final Template template = new Template("overhead/home.vm").set("active", SelfMonitoring.ACTIVE);
+        if (!SelfMonitoring.ACTIVE) {
+            return template;
+        }
+
+        final Map<String, String[]> params = request.getParameterMap();
+        final Unit timeUnit = timeUnit(params);
+        final String format = format(params, HTMLFormat.NUMBER_FORMAT);
+
+        final Map<String, Collection<String>> lines = new TreeMap<String, Collection<String>>();
+        for (final Counter counter : SelfMonitoring.counters()) {
+            lines.put(counter.getKey().getRole().getName() + '/' + counter.getKey().getName(), generateLine(counter, timeUnit, format));
+        }
+
+        return template
+            .set("headers", HTMLFormat.ATTRIBUTES_ORDERED_LIST)
+            .set("lines", lines.values());
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.sirona.reporting.web.plugin.report;
 
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.sirona.Role;
 import org.apache.sirona.SironaException;
 import org.apache.sirona.counters.AggregatedCounter;
@@ -28,6 +29,7 @@ import org.apache.sirona.reporting.web.plugin.report.format.Format;
 import org.apache.sirona.reporting.web.plugin.report.format.HTMLFormat;
 import org.apache.sirona.reporting.web.plugin.report.format.MapFormat;
 import org.apache.sirona.repositories.Repository;
+import org.apache.sirona.util.ExceptionFingerprints;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -65,11 +67,20 @@ public class ReportEndpoints {
             counters.put("", generateLine(counter, timeUnit, format));
         }
 
+        String sample = null;
+        if (Role.FAILURES.equals(counter.getKey().getRole())) {
+            sample = ExceptionFingerprints.sample(counter.getKey().getName());
+            if (sample != null) {
+                sample = StringEscapeUtils.escapeHtml4(sample);
+            }
+        }
+
         return new Template("report/counter.vm",
             new MapBuilder<String, Object>()
                 .set("headers", HTMLFormat.ATTRIBUTES_ORDERED_LIST)
                 .set("counter", counter)
                 .set("counters", counters)
+                .set("sample", sample)
                 .build());
     }
 
@@ -32,7 +32,7 @@ public class HTMLFormat extends MapFormat implements Format {
             new MapBuilder<String, Object>()
                 .set(Map.class.cast(params))
                 .set("headers", ATTRIBUTES_ORDERED_LIST)
-                .set("data", snapshotByPath(timeUnit, format(params, NUMBER_FORMAT)))
+                .set("data", snapshotByPath(counters(params), timeUnit, format(params, NUMBER_FORMAT)))
                 .build());
     }
 
@@ -20,7 +20,6 @@ package org.apache.sirona.reporting.web.plugin.report.format;
 import org.apache.sirona.counters.MetricData;
 import org.apache.sirona.reporting.web.plugin.api.MapBuilder;
 import org.apache.sirona.reporting.web.plugin.api.Template;
-import org.apache.sirona.repositories.Repository;
 
 import java.util.Map;
 
@@ -30,7 +29,7 @@ public class JSONFormat implements Format {
         return new Template("/templates/report/report-json.vm",
             new MapBuilder<String, Object>()
                 .set("MetricData", MetricData.class)
-                .set("counters", Repository.INSTANCE.counters())
+                .set("counters", MapFormat.counters(params))
                 .build(), false);
     }
 
@@ -18,8 +18,10 @@ package org.apache.sirona.reporting.web.plugin.report.format;
 
 import org.apache.sirona.Role;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.CounterSnapshot;
 import org.apache.sirona.counters.MetricData;
 import org.apache.sirona.counters.Unit;
+import org.apache.sirona.counters.WindowedCounter;
 import org.apache.sirona.repositories.Repository;
 
 import java.io.UnsupportedEncodingException;
@@ -100,9 +102,35 @@ public abstract class MapFormat {
         return Unit.Time.MILLISECOND;
     }
 
-    protected static Map<String, Collection<String>> snapshotByPath(final Unit timeUnit, final String format) {
+    // window parameter is in seconds and only affects windowed counters, returned counters are snapshots
+    public static Collection<Counter> counters(final Map<String, ?> params) {
+        return CounterSnapshot.of(liveCounters(params), false);
+    }
+
+    private static Collection<Counter> liveCounters(final Map<String, ?> params) {
+        final Collection<Counter> counters = Repository.INSTANCE.counters();
+        if (params == null) {
+            return counters;
+        }
+
+        Object w = params.get("window");
+        if (String[].class.isInstance(w)) {
+            final String[] array = String[].class.cast(w);
+            w = array.length > 0 ? array[0] : null;
+        }
+        if (String.class.isInstance(w)) {
+            try {
+                return WindowedCounter.window(counters, 1000L * Long.parseLong(String.class.cast(w).trim()));
+            } catch (final NumberFormatException nfe) {
+                // no-op: use cumulative values
+            }
+        }
+        return counters;
+    }
+
+    protected static Map<String, Collection<String>> snapshotByPath(final Collection<Counter> counters, final Unit timeUnit, final String format) {
         final Map<String, Collection<String>> data = new TreeMap<String, Collection<String>>();
-        for (final Counter counter : Repository.INSTANCE.counters()) {
+        for (final Counter counter : counters) {
             final Counter.Key key = counter.getKey();
             data.put(generateCounterKeyString(key), generateLine(counter, timeUnit, format));
         }
@@ -118,15 +146,16 @@ public abstract class MapFormat {
         }
     }
 
-    protected static Collection<Collection<String>> snapshot(final Unit timeUnit, final String format) {
+    protected static Collection<Collection<String>> snapshot(final Collection<Counter> counters, final Unit timeUnit, final String format) {
         final Collection<Collection<String>> data = new ArrayList<Collection<String>>();
-        for (final Counter counter : Repository.INSTANCE.counters()) {
+        for (final Counter counter : counters) {
             data.add(generateLine(counter, timeUnit, format));
         }
         return data;
     }
 
-    public static Collection<String> generateLine(final Counter counter, final Unit timeUnit, final String format) {
+    public static Collection<String> generateLine(final Counter instance, final Unit timeUnit, final String format) {
+        final Counter counter = instance.snapshot();
         final Unit counterUnit = counter.getKey().getRole().getUnit();
         final boolean compatible = timeUnit.isCompatible(counterUnit);
 
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sirona.reporting.web.plugin.sampling;
+
+import org.apache.sirona.configuration.Configuration;
+import org.apache.sirona.reporting.web.plugin.api.Regex;
+import org.apache.sirona.reporting.web.plugin.api.Template;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class SamplingEndpoints {
+    // read through JMX to not depend on the interceptors, see org.apache.sirona.aop.OverheadBudgetSampler
+    private static final String OBJECT_NAME = Configuration.CONFIG_PROPERTY_PREFIX + "performance:type=sampling";
+
+    @Regex
+    public Template home() {
+        final Template template = new Template("sampling/home.vm");
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                return template.set("active", false);
+            }
+
+            final Map<String, Long> intervals = new TreeMap<String, Long>(); // 1 measure every N invocations
+            for (final Object row : TabularData.class.cast(server.getAttribute(name, "Rates")).values()) {
+                final CompositeData data = CompositeData.class.cast(row);
+                intervals.put(String.valueOf(data.get("key")), Math.round(1. / Number.class.cast(data.get("value")).doubleValue()));
+            }
+
+            return template
+                .set("active", true)
+                .set("budget", server.getAttribute(name, "Budget"))
+                .set("overhead", String.format(Locale.ENGLISH, "%.3f", Number.class.cast(server.getAttribute(name, "Overhead")).doubleValue()))
+                .set("intervals", intervals);
+        } catch (final Exception e) {
+            return template.set("active", false);
+        }
+    }
+}
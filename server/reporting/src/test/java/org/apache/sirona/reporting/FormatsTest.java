@@ -59,7 +59,9 @@ public class FormatsTest {
 
         assertEquals("<?xml version=\"1.0\"?> <repository> " +
             "<counter name=\"RendererTest\" role=\"failures\" unit=\"u\" Hits=\"1.0\" Max=\"1.0\" Mean=\"1.0\" Min=\"1.0\" " +
-            "StandardDeviation=\"0.0\" Sum=\"1.0\" Variance=\"0.0\" Value=\"1.0\" Concurrency=\"0.0\" MaxConcurrency=\"1.0\" />" +
+            "StandardDeviation=\"0.0\" Sum=\"1.0\" Variance=\"0.0\" Value=\"1.0\" Concurrency=\"0.0\" MaxConcurrency=\"1.0\" " +
+            "P50=\"1.0\" P90=\"1.0\" P99=\"1.0\" P999=\"1.0\" " +
+            "AverageConcurrency=\"0.0\" ConcurrencyP50=\"0.0\" ConcurrencyP90=\"0.0\" ConcurrencyP99=\"0.0\" />" +
             " </repository>", inline(out));
     }
 
@@ -73,7 +75,9 @@ public class FormatsTest {
         assertEquals("{\"counters\":[" +
             " {\"name\":\"RendererTest\", \"role\":\"failures\",\"unit\":\"u\",\"Hits\":\"1.0\",\"Max\":\"1.0\",\"Mean\":\"1.0\",\"Min\":\"1.0\"," +
             "\"StandardDeviation\":\"0.0\",\"Sum\":\"1.0\",\"Variance\":\"0.0\"," +
-            "\"Value\":\"1.0\",\"Concurrency\":\"0.0\",\"MaxConcurrency\":\"1.0\"} ]}", inline(out));
+            "\"Value\":\"1.0\",\"Concurrency\":\"0.0\",\"MaxConcurrency\":\"1.0\"," +
+            "\"P50\":\"1.0\",\"P90\":\"1.0\",\"P99\":\"1.0\",\"P999\":\"1.0\"," +
+            "\"AverageConcurrency\":\"0.0\",\"ConcurrencyP50\":\"0.0\",\"ConcurrencyP90\":\"0.0\",\"ConcurrencyP99\":\"0.0\"} ]}", inline(out));
     }
 
     @Test
@@ -84,7 +88,7 @@ public class FormatsTest {
         helper.renderPlain(template.getTemplate(), template.getUserParams());
 
         assertEquals(CSVFormat.HEADER +
-            "RendererTest;failures (u);1.0;1.0;1.0;1.0;0.0;1.0;0.0;1.0;0.0;1.0\n",
+            "RendererTest;failures (u);1.0;1.0;1.0;1.0;0.0;1.0;0.0;1.0;0.0;1.0;1.0;1.0;1.0;1.0;0.0;0.0;0.0;0.0\n",
             out.toString());
     }
 
@@ -71,8 +71,8 @@ public class ReportTest extends SironaReportingTestBase {
         WebAssert.assertElementPresent(page, "report-table");
 
         final String text = page.getElementById("report-table").asText();
-        assertEquals("Counter\tRole\tHits\tMax\tMean\tMin\tStandardDeviation\tSum\tVariance\tValue\tConcurrency\tMaxConcurrency" + lineSeparator +
-            "counter\trole(u)\t1.00\t55.00\t55.00\t55.00\t0.00\t55.00\t0.00\t55.00\t0.00\t0.00", text.replace(" ", ""));
+        assertEquals("Counter\tRole\tHits\tMax\tMean\tMin\tStandardDeviation\tSum\tVariance\tValue\tConcurrency\tMaxConcurrency\tP50\tP90\tP99\tP999\tAverageConcurrency\tConcurrencyP50\tConcurrencyP90\tConcurrencyP99" + lineSeparator +
+            "counter\trole(u)\t1.00\t55.00\t55.00\t55.00\t0.00\t55.00\t0.00\t55.00\t0.00\t0.00\t55.00\t55.00\t55.00\t55.00\t0.00\t0.00\t0.00\t0.00", text.replace(" ", ""));
     }
 
     @Test
@@ -82,7 +82,7 @@ public class ReportTest extends SironaReportingTestBase {
         WebAssert.assertElementPresent(page, "counter");
 
         final String text = page.getElementById("counter").asText();
-        assertEquals("Counter\tRole\tHits\tMax\tMean\tMin\tStandardDeviation\tSum\tVariance\tValue\tConcurrency\tMaxConcurrency" + lineSeparator +
-            "counter\trole (u)\t1.00\t55.00\t55.00\t55.00\t0.00\t55.00\t0.00\t55.00\t0.00\t0.00", text);
+        assertEquals("Counter\tRole\tHits\tMax\tMean\tMin\tStandardDeviation\tSum\tVariance\tValue\tConcurrency\tMaxConcurrency\tP50\tP90\tP99\tP999\tAverageConcurrency\tConcurrencyP50\tConcurrencyP90\tConcurrencyP99" + lineSeparator +
+            "counter\trole (u)\t1.00\t55.00\t55.00\t55.00\t0.00\t55.00\t0.00\t55.00\t0.00\t0.00\t55.00\t55.00\t55.00\t55.00\t0.00\t0.00\t0.00\t0.00", text);
     }
 }
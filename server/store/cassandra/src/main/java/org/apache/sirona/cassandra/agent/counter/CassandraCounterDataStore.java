@@ -42,11 +42,13 @@ public class CassandraCounterDataStore extends BatchCounterDataStore {
 
     @Override
     protected void pushCountersByBatch(final Collection<Counter> instances) {
-        for (final Counter counter : instances) {
+        for (final Counter instance : instances) {
+            final Counter counter = instance.snapshot();
             delegate.getOrCreateCounter(counter.getKey(), marker)
                 .update(new M2AwareStatisticalSummary(
                         counter.getMean(), counter.getVariance(), counter.getHits(),
-                        counter.getMax(), counter.getMin(), counter.getSum(), counter.getSecondMoment()),
+                        counter.getMax(), counter.getMin(), counter.getSum(), counter.getSecondMoment(),
+                        counter.getHistogram(), counter.getConcurrencyDistribution()),
                     counter.currentConcurrency().get());
         }
     }
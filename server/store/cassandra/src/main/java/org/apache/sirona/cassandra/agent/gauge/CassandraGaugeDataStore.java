@@ -26,6 +26,7 @@ import org.apache.sirona.util.Localhosts;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -43,13 +44,14 @@ public class CassandraGaugeDataStore extends BatchGaugeDataStoreAdapter {
     }
 
     @Override
-    protected void pushGauges(final Map<Role, Measure> gauges) {
-        for (final Map.Entry<Role, Measure> entry : gauges.entrySet()) {
+    protected void pushGauges(final Map<Role, List<Measure>> gauges) {
+        for (final Map.Entry<Role, List<Measure>> entry : gauges.entrySet()) {
             final Role role = entry.getKey();
-            final Measure measure = entry.getValue();
 
             delegate.createOrNoopGauge(role, marker);
-            delegate.addToGauge(role, measure.getTime(), measure.getValue(), marker);
+            for (final Measure measure : entry.getValue()) {
+                delegate.addToGauge(role, measure.getTime(), measure.getValue(), marker);
+            }
         }
     }
 
@@ -31,7 +31,9 @@ import org.apache.sirona.Role;
 import org.apache.sirona.cassandra.DynamicDelegatedSerializer;
 import org.apache.sirona.cassandra.collector.CassandraSirona;
 import org.apache.sirona.configuration.ioc.IoCs;
+import org.apache.sirona.counters.ConcurrencyDistribution;
 import org.apache.sirona.counters.Counter;
+import org.apache.sirona.counters.Histogram;
 import org.apache.sirona.counters.Unit;
 import org.apache.sirona.math.M2AwareStatisticalSummary;
 import org.apache.sirona.store.counter.AggregatedCollectorCounter;
@@ -167,26 +169,31 @@ public class CassandraCollectorCounterDataStore extends InMemoryCollectorCounter
                 getOrDefault(serializer, map.getColumnByName("max"), DoubleSerializer.get()).doubleValue(),
                 getOrDefault(serializer, map.getColumnByName("min"), DoubleSerializer.get()).doubleValue(),
                 getOrDefault(serializer, map.getColumnByName("sum"), DoubleSerializer.get()).doubleValue(),
-                getOrDefault(serializer, map.getColumnByName("m2"), DoubleSerializer.get()).doubleValue()),
+                getOrDefault(serializer, map.getColumnByName("m2"), DoubleSerializer.get()).doubleValue(),
+                histogram(serializer, map.getColumnByName("histogram")),
+                concurrencyDistribution(serializer, map.getColumnByName("concurrencyDistribution"))),
                 getOrDefault(serializer, map.getColumnByName("maxConcurrency"), IntegerSerializer.get()).intValue());
     }
 
     protected CassandraLeafCounter save(final CassandraLeafCounter counter, final String marker) {
         final Counter.Key key = counter.getKey();
         final String id = id(key, marker);
+        final Counter snapshot = counter.snapshot();
 
         HFactory.createMutator(keyspace, StringSerializer.get())
             // counter values
             .addInsertion(id, family, column("role", key.getRole().getName()))
             .addInsertion(id, family, column("key", key.getName()))
-            .addInsertion(id, family, column("maxConcurrency", counter.getMaxConcurrency()))
-            .addInsertion(id, family, column("variance", counter.getVariance()))
-            .addInsertion(id, family, column("n", counter.getHits()))
-            .addInsertion(id, family, column("max", counter.getMax()))
-            .addInsertion(id, family, column("min", counter.getMin()))
-            .addInsertion(id, family, column("sum", counter.getSum()))
-            .addInsertion(id, family, column("m2", counter.getSecondMoment()))
-            .addInsertion(id, family, column("mean", counter.getMean()))
+            .addInsertion(id, family, column("maxConcurrency", snapshot.getMaxConcurrency()))
+            .addInsertion(id, family, column("variance", snapshot.getVariance()))
+            .addInsertion(id, family, column("n", snapshot.getHits()))
+            .addInsertion(id, family, column("max", snapshot.getMax()))
+            .addInsertion(id, family, column("min", snapshot.getMin()))
+            .addInsertion(id, family, column("sum", snapshot.getSum()))
+            .addInsertion(id, family, column("m2", snapshot.getSecondMoment()))
+            .addInsertion(id, family, column("mean", snapshot.getMean()))
+            .addInsertion(id, family, column("histogram", snapshot.getHistogram().toCompactString()))
+            .addInsertion(id, family, column("concurrencyDistribution", snapshot.getConcurrencyDistribution().toCompactString()))
             // counter in marker
             .addInsertion(marker, markerFamily, emptyColumn(id))
             //save it
@@ -203,6 +210,22 @@ public class CassandraCollectorCounterDataStore extends InMemoryCollectorCounter
         return cassandra;
     }
 
+    protected static Histogram histogram(final DynamicDelegatedSerializer delegatedSerializer, final HColumn<?, ?> col) {
+        delegatedSerializer.setDelegate(StringSerializer.get());
+        if (col == null || col.getValue() == null) {
+            return null;
+        }
+        return Histogram.fromCompactString(String.class.cast(col.getValue()));
+    }
+
+    protected static ConcurrencyDistribution concurrencyDistribution(final DynamicDelegatedSerializer delegatedSerializer, final HColumn<?, ?> col) {
+        delegatedSerializer.setDelegate(StringSerializer.get());
+        if (col == null || col.getValue() == null) {
+            return null;
+        }
+        return ConcurrencyDistribution.fromCompactString(String.class.cast(col.getValue()));
+    }
+
     protected static Number getOrDefault(final DynamicDelegatedSerializer delegatedSerializer, final HColumn<?, ?> col, final Serializer<?> serializer) {
         delegatedSerializer.setDelegate(serializer);
         if (col == null || col.getValue() == null) {